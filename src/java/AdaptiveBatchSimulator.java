@@ -0,0 +1,291 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simulates a batch of scenario lines under a shared budget of trials,
+ * spending the trials where the estimates are least certain.
+ *
+ * Every line first gets a small pilot round. After that, the remaining
+ * trials are handed out a chunk at a time to whichever line is furthest
+ * from being resolved, until either every line is resolved or the budget
+ * runs out. A line is resolved once every strategy's average earnings are
+ * known to within the target precision, since those averages are what get
+ * reported, and once it is also clear which way each strategy differs from
+ * the first strategy, or the difference is known to within the target
+ * precision, which covers strategies that differ by about nothing. The
+ * differences are paired over the same tables, so they usually settle
+ * before the averages do.
+ */
+public class AdaptiveBatchSimulator {
+
+    /**
+     * The number of standard errors a difference must be away from zero
+     * before its sign is considered settled.
+     */
+    private static final double confidenceZ = 3.0;
+
+    /**
+     * The strategies to compare on each line. Differences are measured against the first one.
+     */
+    private final List<IPlayerStrategy> playerStrategies;
+
+    /**
+     * The number of other players (excluding the dealer and player 1) on each line.
+     */
+    private final int numOtherPlayers;
+
+    /**
+     * The total number of trials to spend across all of the lines.
+     */
+    private final long trialBudget;
+
+    /**
+     * The standard error below which an estimate is considered precise enough.
+     */
+    private final double targetPrecision;
+
+    /**
+     * The number of trials every line gets before any are allocated adaptively.
+     */
+    private final int pilotTrials;
+
+    /**
+     * The number of trials allocated to a line at a time after the pilot round.
+     */
+    private final int chunkTrials;
+
+    /**
+     * Constructs a simulator for batches of scenario lines.
+     *
+     * @param playerStrategies the strategies to compare on each line
+     * @param numOtherPlayers the number of other players (excluding the dealer and player 1) on each line
+     * @param trialBudget the total number of trials to spend across all of the lines
+     * @param targetPrecision the standard error below which an estimate is considered precise enough
+     * @param pilotTrials the number of trials every line gets before any are allocated adaptively
+     * @param chunkTrials the number of trials allocated to a line at a time after the pilot round
+     */
+    public AdaptiveBatchSimulator(List<IPlayerStrategy> playerStrategies, int numOtherPlayers, long trialBudget,
+                                  double targetPrecision, int pilotTrials, int chunkTrials) {
+        this.playerStrategies = List.copyOf(playerStrategies);
+        this.numOtherPlayers = numOtherPlayers;
+        this.trialBudget = trialBudget;
+        this.targetPrecision = targetPrecision;
+        this.pilotTrials = pilotTrials;
+        this.chunkTrials = chunkTrials;
+    }
+
+    /**
+     * Estimates the average earnings of each strategy on each of the input lines.
+     *
+     * @param inputCSVLines lines of CSV, each holding the cards on one table
+     * @return an estimate for each line, in the order of the input lines
+     * @throws IllegalArgumentException if the budget or the pilot round is too small to give each line 2 pilot trials
+     */
+    public List<LineEstimate> run(List<String> inputCSVLines) {
+        List<LineEstimate> estimates = new ArrayList<>(inputCSVLines.size());
+        if (inputCSVLines.isEmpty()) {
+            return estimates;
+        }
+        long remaining = this.trialBudget;
+
+        // Pilot round: every line gets the same small number of trials.
+        int pilot = (int) Math.min(this.pilotTrials, remaining / inputCSVLines.size());
+        if (pilot < 2) {
+            throw new IllegalArgumentException("Each line needs at least 2 pilot trials to estimate its error, but "
+                    + inputCSVLines.size() + " lines under a budget of " + this.trialBudget + " trials get " + pilot);
+        }
+        for (String inputCSVLine: inputCSVLines) {
+            LineEstimate estimate = new LineEstimate(inputCSVLine, this.playerStrategies.size());
+            this.simulate(estimate, pilot);
+            remaining -= pilot;
+            estimates.add(estimate);
+        }
+
+        // Hand the rest of the budget to the lines that are furthest from being resolved.
+        while (remaining > 0) {
+            LineEstimate neediest = null;
+            double maxPriority = 1.0;
+            for (LineEstimate estimate: estimates) {
+                double priority = estimate.priority(this.targetPrecision);
+                if (priority > maxPriority) {
+                    neediest = estimate;
+                    maxPriority = priority;
+                }
+            }
+            if (neediest == null) {
+                break; // every line is resolved
+            }
+            int chunk = (int) Math.min(this.chunkTrials, remaining);
+            this.simulate(neediest, chunk);
+            remaining -= chunk;
+        }
+
+        return estimates;
+    }
+
+    /**
+     * Plays the input number of random tables for the input line with every
+     * strategy, recording the earnings in the line's estimate.
+     *
+     * @param estimate the estimate for a line
+     * @param numTrials the number of random tables to play
+     */
+    private void simulate(LineEstimate estimate, int numTrials) {
+        for (int i = 0; i < numTrials; i++) {
+            Table randomTable = new Table(estimate.getInputCSVLine(), this.numOtherPlayers);
+            estimate.record(MetricComputer.playTrial(this.playerStrategies, randomTable));
+        }
+    }
+
+    /**
+     * The running estimate of each strategy's average earnings on one line,
+     * along with the paired differences between each strategy and the first.
+     */
+    public static class LineEstimate {
+
+        /**
+         * The line of CSV holding the cards on the table.
+         */
+        private final String inputCSVLine;
+
+        /**
+         * The number of trials played so far.
+         */
+        private long numTrials;
+
+        /**
+         * The sum, and sum of squares, of each strategy's earnings.
+         */
+        private final double[] sums, sumSquares;
+
+        /**
+         * The sum, and sum of squares, of each strategy's earnings minus the first
+         * strategy's earnings on the same table. Index 0 is unused.
+         */
+        private final double[] differenceSums, differenceSumSquares;
+
+        /**
+         * Constructs an empty estimate for the input line.
+         *
+         * @param inputCSVLine the line of CSV holding the cards on the table
+         * @param numStrategies the number of strategies being compared
+         */
+        private LineEstimate(String inputCSVLine, int numStrategies) {
+            this.inputCSVLine = inputCSVLine;
+            this.sums = new double[numStrategies];
+            this.sumSquares = new double[numStrategies];
+            this.differenceSums = new double[numStrategies];
+            this.differenceSumSquares = new double[numStrategies];
+        }
+
+        /**
+         * Records the earnings of every strategy on one table.
+         *
+         * @param earnings the earnings of each strategy on the same table
+         */
+        private void record(double[] earnings) {
+            this.numTrials++;
+            for (int i = 0; i < earnings.length; i++) {
+                this.sums[i] += earnings[i];
+                this.sumSquares[i] += earnings[i] * earnings[i];
+                double difference = earnings[i] - earnings[0];
+                this.differenceSums[i] += difference;
+                this.differenceSumSquares[i] += difference * difference;
+            }
+        }
+
+        /**
+         * Returns how far this line is from being resolved, as a multiple of what
+         * would resolve it: the largest of each average's standard error over
+         * the target precision, and for each difference from the first
+         * strategy, the lesser of how far its sign is from being settled and
+         * its standard error over the target precision. The line is resolved
+         * iff the result is at most 1.
+         *
+         * @param targetPrecision the standard error below which an estimate is considered precise enough
+         * @return how far this line is from being resolved
+         */
+        private double priority(double targetPrecision) {
+            double priority = 0.0;
+            for (int i = 0; i < this.sums.length; i++) {
+                priority = Math.max(priority, this.getStdError(i) / targetPrecision);
+            }
+            for (int i = 1; i < this.sums.length; i++) {
+                double stdError = this.getDifferenceStdError(i);
+                if (stdError > targetPrecision) {
+                    // Unresolved until either the sign is settled or the difference itself is precise.
+                    double signUncertainty = confidenceZ * stdError / Math.abs(this.getDifferenceMean(i));
+                    priority = Math.max(priority, Math.min(signUncertainty, stdError / targetPrecision));
+                }
+            }
+            return priority;
+        }
+
+        public String getInputCSVLine() {
+            return this.inputCSVLine;
+        }
+
+        public long getNumTrials() {
+            return this.numTrials;
+        }
+
+        /**
+         * Returns the average earnings of the input strategy.
+         *
+         * @param strategyIdx the index of a strategy
+         * @return the average earnings of the strategy
+         */
+        public double getMean(int strategyIdx) {
+            return this.sums[strategyIdx] / this.numTrials;
+        }
+
+        /**
+         * Returns the standard error of the average earnings of the input strategy.
+         *
+         * @param strategyIdx the index of a strategy
+         * @return the standard error of the average earnings of the strategy
+         */
+        public double getStdError(int strategyIdx) {
+            return stdError(this.sums[strategyIdx], this.sumSquares[strategyIdx], this.numTrials);
+        }
+
+        /**
+         * Returns the average amount by which the input strategy out-earned the first strategy.
+         *
+         * @param strategyIdx the index of a strategy
+         * @return the average difference in earnings from the first strategy
+         */
+        public double getDifferenceMean(int strategyIdx) {
+            return this.differenceSums[strategyIdx] / this.numTrials;
+        }
+
+        /**
+         * Returns the standard error of the average amount by which the input
+         * strategy out-earned the first strategy.
+         *
+         * @param strategyIdx the index of a strategy
+         * @return the standard error of the average difference in earnings from the first strategy
+         */
+        public double getDifferenceStdError(int strategyIdx) {
+            return stdError(this.differenceSums[strategyIdx], this.differenceSumSquares[strategyIdx], this.numTrials);
+        }
+
+        /**
+         * Returns the standard error of the mean of a sample.
+         *
+         * @param sum the sum of the sample
+         * @param sumSquares the sum of the squares of the sample
+         * @param n the size of the sample
+         * @return the standard error of the mean, or infinity if it can't be estimated yet
+         */
+        private static double stdError(double sum, double sumSquares, long n) {
+            if (n < 2) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double variance = Math.max(0.0, (sumSquares - sum * sum / n) / (n - 1));
+            return Math.sqrt(variance / n);
+        }
+
+    }
+
+}
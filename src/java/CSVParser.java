@@ -1,4 +1,7 @@
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 /**
  * An abstract class capable of reading each line from an input CSV file,
@@ -47,6 +50,106 @@ public abstract class CSVParser {
         writer.close();
     }
 
+    /**
+     * Reads every line from the input CSV file, processes all of the lines at once according
+     * to getOutputCSVLines(), and writes the output CSV lines to the specified output file.
+     * This lets subclasses plan their work across the whole file rather than line by line.
+     *
+     * @param inputCSVFile a file containing lines of CSV, with cards represented in unicode
+     * @param containsComments indicates whether the input CSV file contains comments on every other line
+     * @param outputCSVFile the output file to write the converted CSV lines to
+     */
+    protected void computeBatchResults(String inputCSVFile, boolean containsComments, String outputCSVFile) throws IOException {
+
+        // Reads every line from the input CSV file, skipping the comments.
+        BufferedReader reader = new BufferedReader(new FileReader(csvDir + File.separator + inputCSVFile));
+        List<String> inputCSVLines = new ArrayList<>();
+        String inputCSVLine;
+        while ((inputCSVLine = reader.readLine()) != null) {
+            inputCSVLines.add(inputCSVLine);
+            if (containsComments) {
+                reader.readLine();
+            }
+        }
+        reader.close();
+
+        List<String> outputCSVLines = this.getOutputCSVLines(inputCSVLines);
+
+        // Writes each output CSV line to the output file, in the order of the input lines.
+        BufferedWriter writer = new BufferedWriter(new FileWriter(csvDir + File.separator + outputCSVFile));
+        for (String outputCSVLine: outputCSVLines) {
+            writer.write(outputCSVLine + "\n");
+        }
+        writer.close();
+    }
+
+    /**
+     * Processes all of the input CSV lines. By default, each line is processed
+     * on its own according to getOutputCSVLine().
+     *
+     * @param inputCSVLines the lines of CSV containing card unicodes, in file order
+     * @return the output lines of CSV, in the order of the input lines
+     */
+    protected List<String> getOutputCSVLines(List<String> inputCSVLines) {
+        List<String> outputCSVLines = new ArrayList<>(inputCSVLines.size());
+        for (String inputCSVLine: inputCSVLines) {
+            outputCSVLines.add(this.getOutputCSVLine(inputCSVLine));
+        }
+        return outputCSVLines;
+    }
+
+    /**
+     * Prefixes each input CSV line with the input strategy's decision on player 1's
+     * hand, asking the strategy for every line's decision in a single batch.
+     *
+     * @param inputCSVLines the lines of CSV containing card unicodes, in file order
+     * @param numOtherPlayers the number of other players (excluding the dealer and player 1) on each line
+     * @param playerStrategy the strategy that decides what to do with player 1's hand
+     * @return the output lines of CSV, in the order of the input lines
+     */
+    protected static List<String> getDecisionCSVLines(List<String> inputCSVLines, int numOtherPlayers, IPlayerStrategy playerStrategy) {
+        DecisionBatch batch = new DecisionBatch(inputCSVLines.size());
+        for (String inputCSVLine: inputCSVLines) {
+            Table table = new Table(inputCSVLine, numOtherPlayers);
+            batch.add(table, table.getHandList(1).get(0));
+        }
+
+        Decision[] decisions = new Decision[batch.size()];
+        playerStrategy.getDecisions(batch, decisions);
+
+        List<String> outputCSVLines = new ArrayList<>(inputCSVLines.size());
+        for (int i = 0; i < decisions.length; i++) {
+            outputCSVLines.add(decisions[i].toString() + inputCSVLines.get(i));
+        }
+        return outputCSVLines;
+    }
+
+    /**
+     * Processes all of the input CSV lines concurrently according to
+     * getOutputCSVLine(String, Random), giving each line its own random number
+     * generator derived from the seed and the line's index.
+     *
+     * @param inputCSVLines the lines of CSV containing card unicodes, in file order
+     * @param seed the seed from which each line's random number generator is derived
+     * @return the output lines of CSV, in the order of the input lines
+     */
+    protected List<String> getOutputCSVLinesInParallel(List<String> inputCSVLines, long seed) {
+        return new ScenarioBatchExecutor().process(inputCSVLines, seed, this::getOutputCSVLine);
+    }
+
+    /**
+     * Processes the input CSV line using the input random number generator for
+     * anything random, so that the result is reproducible. By default, the
+     * generator is ignored and the line is processed by getOutputCSVLine(String).
+     *
+     * @param inputCSVLine a line of CSV containing card unicodes
+     * @param random the source of randomness for processing the line
+     * @return the output line of CSV after the input CSV is processed
+     */
+    protected String getOutputCSVLine(String inputCSVLine, Random random) {
+        return this.getOutputCSVLine(inputCSVLine);
+    }
+
     /**
      * Processes the input CSV line.
      *
@@ -1,4 +1,5 @@
 import java.awt.*;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,6 +26,11 @@ public class Card {
             Map.entry(Rank.QUEEN, 10),
             Map.entry(Rank.KING, 10));
 
+    /**
+     * The hard value of each rank, indexed by the rank's ordinal.
+     */
+    private static final int[] hardValuesByOrdinal = Arrays.stream(Rank.values()).mapToInt(hardValues::get).toArray();
+
     /**
      * Mapping of single-letter string representations 2-10, J, Q, K, A to their ranks.
      */
@@ -136,7 +142,7 @@ public class Card {
      * @return an integer representing the hard value of the card.
      */
     public int hardValue() {
-        return hardValues.get(this.rank);
+        return hardValuesByOrdinal[this.rank.ordinal()];
     }
 
     /**
@@ -0,0 +1,522 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Derives a basic strategy chart for a shoe of any number of decks by
+ * improving a chart one cell at a time until no cell can be improved.
+ *
+ * Each cell (an upcard against a pair, a soft total, or a hard total, for a
+ * hand of two cards or of more) is evaluated by dealing many random hands
+ * that fall in the cell and playing every legal decision from the same deal,
+ * with every later decision made by the current chart. Since all of a cell's
+ * decisions are played against the same cards (common random numbers), and
+ * every sweep replays the same deals, a decision is only adopted when it
+ * beats the current one by a clear margin, so the sweeps settle instead of
+ * chasing noise. Within a sweep, every cell is evaluated in parallel against
+ * the chart from the end of the previous sweep.
+ *
+ * Hands of more than two cards are represented by three-card hands. The
+ * ten-valued upcards and pairs are dealt identically, so each is evaluated
+ * once and copied to the J, Q, and K columns and rows of the chart.
+ */
+public class ChartOptimizer {
+
+    /**
+     * A complete file path to the folder of csv files. This will work
+     * on anyone's machine since System.getProperty("user.dir") locates
+     * the path of this repository on their machine.
+     */
+    private static final String csvDir = System.getProperty("user.dir") + File.separator +
+                                                            "src" + File.separator +
+                                                            "csv";
+
+    /**
+     * The number of standard errors by which a decision must beat the
+     * current decision on the same deals before it's adopted.
+     */
+    private static final double adoptionStdErrors = 2.0;
+
+    /**
+     * The ranks which are dealt differently from one another. The other
+     * ranks (J, Q, and K) are dealt the same as a TEN.
+     */
+    private static final List<Rank> distinctRanks = List.of(Rank.ACE, Rank.TWO, Rank.THREE, Rank.FOUR, Rank.FIVE,
+            Rank.SIX, Rank.SEVEN, Rank.EIGHT, Rank.NINE, Rank.TEN);
+
+    /**
+     * The number of standard decks in the shoe.
+     */
+    private final int numDecks;
+
+    /**
+     * The number of hands dealt to evaluate each cell.
+     */
+    private final int dealsPerCell;
+
+    /**
+     * The most sweeps over the cells before giving up on the chart settling.
+     */
+    private final int maxSweeps;
+
+    /**
+     * The seed from which each cell's deals are derived.
+     */
+    private final long seed;
+
+    /**
+     * The chart being optimized, in the same format as WikiStrategy's tables.
+     */
+    private final Map<Rank, Map<Rank, String>> pairMap;
+    private final Map<Rank, Map<Integer, String>> softMap;
+    private final Map<Rank, Map<Integer, String>> hardMap;
+
+    /**
+     * Constructs an optimizer which starts from the Wikipedia blackjack tables.
+     *
+     * @param numDecks the number of standard decks in the shoe
+     * @param dealsPerCell the number of hands dealt to evaluate each cell
+     * @param maxSweeps the most sweeps over the cells before giving up on the chart settling
+     * @param seed the seed from which each cell's deals are derived
+     */
+    public ChartOptimizer(int numDecks, int dealsPerCell, int maxSweeps, long seed) {
+        this.numDecks = numDecks;
+        this.dealsPerCell = dealsPerCell;
+        this.maxSweeps = maxSweeps;
+        this.seed = seed;
+        this.pairMap = WikiStrategy.copyTable(WikiStrategy.pairMap);
+        this.softMap = WikiStrategy.copyTable(WikiStrategy.softMap);
+        this.hardMap = WikiStrategy.copyTable(WikiStrategy.hardMap);
+    }
+
+    /**
+     * The tables of a chart.
+     */
+    private enum CellKind {
+        PAIR, SOFT, HARD
+    }
+
+    /**
+     * One cell of the chart, along with every starting hand that falls in it.
+     *
+     * @param kind the table which the cell is in
+     * @param upcard the rank of the dealer's upcard
+     * @param key the row of the cell: the pair rank's ordinal, the soft total minus 11, or the hard total
+     * @param twoCards whether the cell is for hands of two cards, rather than more
+     * @param hands the ordinals of the ranks of each hand that falls in the cell
+     * @param cumulativeWeights the probability of being dealt each hand or any hand before it,
+     *                          scaled so the last is 1
+     * @param seed the seed of the cell's deals
+     */
+    private record Cell(CellKind kind, Rank upcard, int key, boolean twoCards, int[][] hands,
+                        double[] cumulativeWeights, long seed) {
+    }
+
+    /**
+     * Sweeps over every cell of the chart, adopting the improvements found in
+     * each sweep, until a sweep finds none or the sweeps run out.
+     *
+     * @return the number of sweeps made
+     */
+    public int optimize() {
+        List<Cell> cells = this.buildCells();
+        for (int sweep = 1; sweep <= this.maxSweeps; sweep++) {
+            DecisionChart policy = this.getChart();
+
+            // Evaluate every cell against the same chart, spread across every processor.
+            List<Decision> bestDecisions = cells.parallelStream()
+                    .map(cell -> this.bestDecision(cell, policy))
+                    .toList();
+
+            int numChanged = 0;
+            for (int i = 0; i < cells.size(); i++) {
+                if (bestDecisions.get(i) != this.getDecision(cells.get(i))) {
+                    this.setDecision(cells.get(i), bestDecisions.get(i));
+                    numChanged++;
+                }
+            }
+            System.out.println("Sweep " + sweep + ": changed " + numChanged + " of " + cells.size() + " cells");
+            if (numChanged == 0) {
+                return sweep;
+            }
+        }
+        return this.maxSweeps;
+    }
+
+    /**
+     * Returns the chart as it stands, compiled for play.
+     *
+     * @return the chart as it stands
+     */
+    public DecisionChart getChart() {
+        return new DecisionChart(this.pairMap, this.softMap, this.hardMap);
+    }
+
+    /**
+     * Writes the chart as three csv files in the same format as the Wikipedia
+     * tables, named with the input prefix followed by _pairs.csv, _soft.csv,
+     * and _hard.csv.
+     *
+     * @param filePrefix the start of the name of each csv file
+     * @throws IOException if a file can't be written
+     */
+    public void writeCSVFiles(String filePrefix) throws IOException {
+        writeCSVFiles(filePrefix, this.pairMap, this.softMap, this.hardMap);
+    }
+
+    /**
+     * Writes the input chart as three csv files in the same format as the
+     * Wikipedia tables, named with the input prefix followed by _pairs.csv,
+     * _soft.csv, and _hard.csv.
+     *
+     * @param filePrefix the start of the name of each csv file
+     * @param pairMap the decision on each pair, by upcard and then by pair rank
+     * @param softMap the decision on each soft hand, by upcard and then by soft total minus 11
+     * @param hardMap the decision on each hard hand, by upcard and then by hard total
+     * @throws IOException if a file can't be written
+     */
+    static void writeCSVFiles(String filePrefix, Map<Rank, Map<Rank, String>> pairMap,
+                              Map<Rank, Map<Integer, String>> softMap,
+                              Map<Rank, Map<Integer, String>> hardMap) throws IOException {
+        Map<Rank, String> rankLabels = rankLabels();
+        String header = "," + String.join(",", Arrays.stream(Rank.values()).map(rankLabels::get).toList());
+
+        List<String> pairLines = new ArrayList<>(List.of(header));
+        for (Rank pairRank: List.of(Rank.ACE, Rank.KING, Rank.QUEEN, Rank.JACK, Rank.TEN, Rank.NINE, Rank.EIGHT,
+                Rank.SEVEN, Rank.SIX, Rank.FIVE, Rank.FOUR, Rank.THREE, Rank.TWO)) {
+            String label = rankLabels.get(pairRank) + "+" + rankLabels.get(pairRank);
+            pairLines.add(csvRow(label, pairMap, pairRank));
+        }
+
+        List<String> softLines = new ArrayList<>(List.of(header));
+        for (int key: descendingKeys(softMap)) {
+            softLines.add(csvRow("A+" + key, softMap, key));
+        }
+
+        List<String> hardLines = new ArrayList<>(List.of(header));
+        for (int key: descendingKeys(hardMap)) {
+            hardLines.add(csvRow(Integer.toString(key), hardMap, key));
+        }
+
+        writeCSVFile(filePrefix + "_pairs.csv", pairLines);
+        writeCSVFile(filePrefix + "_soft.csv", softLines);
+        writeCSVFile(filePrefix + "_hard.csv", hardLines);
+    }
+
+    /**
+     * Returns the label of each rank in the csv files, such as "A" or "10".
+     *
+     * @return the label of each rank
+     */
+    static Map<Rank, String> rankLabels() {
+        Map<Rank, String> rankLabels = new EnumMap<>(Rank.class);
+        for (Map.Entry<String, Rank> entry: Card.string2RankMap.entrySet()) {
+            rankLabels.put(entry.getValue(), entry.getKey());
+        }
+        return rankLabels;
+    }
+
+    /**
+     * Finds the best decision for the input cell by dealing the cell's hands
+     * and playing every legal decision from each deal.
+     *
+     * @param cell a cell of the chart
+     * @param policy the chart which makes every later decision
+     * @return the decision to adopt for the cell, which is the current
+     *         decision unless another beats it by a clear margin
+     */
+    private Decision bestDecision(Cell cell, DecisionChart policy) {
+        Random random = new Random(cell.seed());
+        Decision current = this.getDecision(cell);
+        List<Decision> candidates = null;
+        int currentIdx = -1;
+        double[] earnings = null;
+        double[] sums = null;
+        double[] differenceSums = null;
+        double[] differenceSumSquares = null;
+
+        for (int deal = 0; deal < this.dealsPerCell; deal++) {
+            Table dealt = this.deal(cell, random);
+            if (candidates == null) {
+                // Every hand in a cell has the same legal decisions.
+                candidates = new ArrayList<>(dealt.getHandList(1).get(0).getPossibleDecisions());
+                if (!candidates.contains(current)) {
+                    candidates.add(current);
+                }
+                currentIdx = candidates.indexOf(current);
+                earnings = new double[candidates.size()];
+                sums = new double[candidates.size()];
+                differenceSums = new double[candidates.size()];
+                differenceSumSquares = new double[candidates.size()];
+            }
+
+            // Play every decision against the same deal.
+            for (int c = 0; c < candidates.size(); c++) {
+                Table table = dealt.copy();
+                earnings[c] = table.playFrom(1, table.getHandList(1).get(0), candidates.get(c), policy);
+            }
+            for (int c = 0; c < candidates.size(); c++) {
+                double difference = earnings[c] - earnings[currentIdx];
+                sums[c] += earnings[c];
+                differenceSums[c] += difference;
+                differenceSumSquares[c] += difference * difference;
+            }
+        }
+
+        int best = currentIdx;
+        for (int c = 0; c < candidates.size(); c++) {
+            if (sums[c] > sums[best]) {
+                best = c;
+            }
+        }
+        int n = this.dealsPerCell;
+        double meanDifference = differenceSums[best] / n;
+        double variance = Math.max(0.0, (differenceSumSquares[best] - differenceSums[best] * meanDifference) / (n - 1));
+        return (meanDifference > adoptionStdErrors * Math.sqrt(variance / n)) ? candidates.get(best) : current;
+    }
+
+    /**
+     * Deals a random hand that falls in the input cell from a freshly shuffled
+     * shoe, on a table with only the dealer and player 1.
+     *
+     * @param cell a cell of the chart
+     * @param random the source of randomness for the deal
+     * @return a table with the cell's upcard and a hand that falls in the cell
+     */
+    private Table deal(Cell cell, Random random) {
+        double u = random.nextDouble();
+        int handIdx = Arrays.binarySearch(cell.cumulativeWeights(), u);
+        handIdx = Math.min(cell.hands().length - 1, handIdx < 0 ? -handIdx - 1 : handIdx);
+
+        Deck shoe = Deck.shuffledShoe(this.numDecks, random);
+        DealerHand dealerHand = new DealerHand(shoe.removeCard(cell.upcard()));
+        PlayerHand playerHand = new PlayerHand();
+        for (int rank: cell.hands()[handIdx]) {
+            playerHand.addCard(shoe.removeCard(Rank.values()[rank]));
+        }
+
+        List<PlayerHand> player1HandList = new ArrayList<>();
+        player1HandList.add(playerHand);
+        List<List<PlayerHand>> playerHands = new ArrayList<>();
+        playerHands.add(player1HandList);
+        return new Table(shoe, dealerHand, playerHands);
+    }
+
+    /**
+     * Lists every cell of the chart that some hand can fall in, for every
+     * distinct upcard, along with the hands that fall in each.
+     *
+     * @return the cells of the chart
+     */
+    private List<Cell> buildCells() {
+        List<Cell> cells = new ArrayList<>();
+        for (Rank upcard: distinctRanks) {
+            for (Rank pairRank: distinctRanks) {
+                this.addCell(cells, CellKind.PAIR, upcard, pairRank.ordinal(), true);
+            }
+            for (boolean twoCards: List.of(true, false)) {
+                for (int key: descendingKeys(this.softMap)) {
+                    this.addCell(cells, CellKind.SOFT, upcard, key, twoCards);
+                }
+                for (int key: descendingKeys(this.hardMap)) {
+                    this.addCell(cells, CellKind.HARD, upcard, key, twoCards);
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Adds the input cell to the list of cells, unless no hand falls in it.
+     *
+     * @param cells the list of cells
+     * @param kind the table which the cell is in
+     * @param upcard the rank of the dealer's upcard
+     * @param key the row of the cell
+     * @param twoCards whether the cell is for hands of two cards, rather than three
+     */
+    private void addCell(List<Cell> cells, CellKind kind, Rank upcard, int key, boolean twoCards) {
+        int[] counts = new int[Rank.values().length];
+        Arrays.fill(counts, 4 * this.numDecks);
+        counts[upcard.ordinal()]--;
+        int numCards = Deck.CARDS_PER_DECK * this.numDecks - 1;
+
+        // Enumerate every ordered hand of the cell's size with its probability of being dealt.
+        List<int[]> hands = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        int handSize = twoCards ? 2 : 3;
+        int[] hand = new int[handSize];
+        int numHands = (int) Math.pow(Rank.values().length, handSize);
+        for (int code = 0; code < numHands; code++) {
+            double weight = 1.0;
+            for (int i = 0, rest = code; i < handSize; i++, rest /= Rank.values().length) {
+                hand[i] = rest % Rank.values().length;
+                weight *= (double) counts[hand[i]] / (numCards - i);
+                counts[hand[i]]--;
+            }
+            for (int i = 0; i < handSize; i++) {
+                counts[hand[i]]++;
+            }
+            if (weight > 0.0 && fallsIn(kind, key, hand)) {
+                hands.add(hand.clone());
+                weights.add(weight);
+            }
+        }
+        if (hands.isEmpty()) {
+            return;
+        }
+
+        double totalWeight = weights.stream().mapToDouble(Double::doubleValue).sum();
+        double[] cumulativeWeights = new double[weights.size()];
+        double cumulative = 0.0;
+        for (int i = 0; i < weights.size(); i++) {
+            cumulative += weights.get(i);
+            cumulativeWeights[i] = cumulative / totalWeight;
+        }
+        long cellSeed = this.seed ^ (0x9E3779B97F4A7C15L * (cells.size() + 1));
+        cells.add(new Cell(kind, upcard, key, twoCards, hands.toArray(new int[0][]), cumulativeWeights, cellSeed));
+    }
+
+    /**
+     * Returns whether a hand of the input ranks falls in the input row of the input table.
+     *
+     * @param kind a table of the chart
+     * @param key a row of the table
+     * @param hand the ordinals of the ranks of the cards in a hand
+     * @return true iff the hand falls in the row
+     */
+    private static boolean fallsIn(CellKind kind, int key, int[] hand) {
+        int hardTotal = 0;
+        boolean containsAce = false;
+        for (int rank: hand) {
+            hardTotal += Card.hardValues.get(Rank.values()[rank]);
+            containsAce |= (rank == Rank.ACE.ordinal());
+        }
+        boolean pair = hand.length == 2 && hand[0] == hand[1];
+        boolean soft = containsAce && hardTotal + 10 <= 21;
+        return switch (kind) {
+            case PAIR -> pair && hand[0] == key;
+            case SOFT -> !pair && soft && hardTotal + 10 - 11 == key;
+            case HARD -> !pair && !soft && hardTotal == key;
+        };
+    }
+
+    /**
+     * Returns the current decision in the input cell.
+     *
+     * @param cell a cell of the chart
+     * @return the current decision in the cell
+     */
+    private Decision getDecision(Cell cell) {
+        String text = switch (cell.kind()) {
+            case PAIR -> this.pairMap.get(cell.upcard()).get(Rank.values()[cell.key()]);
+            case SOFT -> this.softMap.get(cell.upcard()).get(cell.key());
+            case HARD -> this.hardMap.get(cell.upcard()).get(cell.key());
+        };
+        int slashIdx = text.indexOf('/');
+        if (slashIdx >= 0) {
+            text = cell.twoCards() ? text.substring(0, slashIdx) : text.substring(slashIdx + 1);
+        }
+        return Decision.valueOf(text);
+    }
+
+    /**
+     * Sets the decision in the input cell, and in the cells of every rank
+     * that's dealt the same as its upcard and pair rank.
+     *
+     * @param cell a cell of the chart
+     * @param decision the decision to set
+     */
+    private void setDecision(Cell cell, Decision decision) {
+        for (Rank upcard: sameRanks(cell.upcard())) {
+            switch (cell.kind()) {
+                case PAIR -> {
+                    for (Rank pairRank: sameRanks(Rank.values()[cell.key()])) {
+                        this.pairMap.get(upcard).put(pairRank, decision.toString());
+                    }
+                }
+                case SOFT -> this.softMap.get(upcard).compute(cell.key(), (key, text) -> withDecision(text, cell.twoCards(), decision));
+                case HARD -> this.hardMap.get(upcard).compute(cell.key(), (key, text) -> withDecision(text, cell.twoCards(), decision));
+            }
+        }
+    }
+
+    /**
+     * Returns the text of a chart cell with the two-card or multi-card decision replaced.
+     *
+     * @param text the text of a chart cell, such as "HIT" or "DOUBLE/HIT"
+     * @param twoCards whether to replace the two-card decision, rather than the multi-card one
+     * @param decision the decision to put in the cell
+     * @return the text of the cell with the decision replaced
+     */
+    private static String withDecision(String text, boolean twoCards, Decision decision) {
+        int slashIdx = text.indexOf('/');
+        String twoCardText = (slashIdx >= 0) ? text.substring(0, slashIdx) : text;
+        String multiCardText = (slashIdx >= 0) ? text.substring(slashIdx + 1) : text;
+        if (twoCards) {
+            twoCardText = decision.toString();
+        } else {
+            multiCardText = decision.toString();
+        }
+        return twoCardText.equals(multiCardText) ? twoCardText : twoCardText + "/" + multiCardText;
+    }
+
+    /**
+     * Returns every rank that's dealt the same as the input rank: every
+     * ten-valued rank for a TEN, and otherwise just the rank itself.
+     *
+     * @param rank a rank
+     * @return the ranks dealt the same as the rank
+     */
+    private static List<Rank> sameRanks(Rank rank) {
+        if (rank == Rank.TEN) {
+            return List.of(Rank.TEN, Rank.JACK, Rank.QUEEN, Rank.KING);
+        }
+        return List.of(rank);
+    }
+
+    /**
+     * Returns the rows of the input table, from highest to lowest.
+     *
+     * @param table a table of decisions, by upcard and then by total
+     * @return the rows of the table, from highest to lowest
+     */
+    private static List<Integer> descendingKeys(Map<Rank, Map<Integer, String>> table) {
+        List<Integer> keys = new ArrayList<>(table.get(Rank.ACE).keySet());
+        keys.sort(Comparator.reverseOrder());
+        return keys;
+    }
+
+    /**
+     * Returns a row of a csv file of the input table.
+     *
+     * @param label the label of the row
+     * @param table a table of decisions, by upcard and then by row
+     * @param key the row
+     * @return the row of csv
+     */
+    private static <K> String csvRow(String label, Map<Rank, Map<K, String>> table, K key) {
+        StringBuilder sb = new StringBuilder(label);
+        for (Rank upcard: Rank.values()) {
+            sb.append(',').append(table.get(upcard).get(key));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the input lines to a csv file in the folder of csv files,
+     * with no newline after the last line, like the Wikipedia tables.
+     *
+     * @param csvFile the name of the file
+     * @param lines the lines of the file
+     * @throws IOException if the file can't be written
+     */
+    static void writeCSVFile(String csvFile, List<String> lines) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(csvDir + File.separator + csvFile));
+        writer.write(String.join("\n", lines));
+        writer.close();
+    }
+
+}
@@ -0,0 +1,25 @@
+import java.io.IOException;
+
+/**
+ * Derives a basic strategy chart for a two-deck shoe, starting from the
+ * Wikipedia tables, and writes it in the same csv format.
+ */
+public class ChartOptimizerMain {
+
+    private static final int numDecks = 2;
+
+    private static final int dealsPerCell = 20_000;
+
+    private static final int maxSweeps = 8;
+
+    private static final long seed = 2023;
+
+    private static final String outputFilePrefix = "optimized_strategy_2deck";
+
+    public static void main(String[] args) throws IOException {
+        ChartOptimizer optimizer = new ChartOptimizer(numDecks, dealsPerCell, maxSweeps, seed);
+        int numSweeps = optimizer.optimize();
+        System.out.println("Settled after " + numSweeps + " sweeps");
+        optimizer.writeCSVFiles(outputFilePrefix);
+    }
+}
@@ -0,0 +1,421 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Derives IdealStrategy's chart for a shoe of up to PositionKey.MAX_DECKS
+ * decks by solving every starting position, a dealer upcard against player
+ * 1's first two cards, and writes it in the same csv format as the Wikipedia
+ * tables, along with the expected earnings of every decision in every cell.
+ *
+ * The starting positions are solved concurrently, all against the solver's
+ * one memo, so a position reached from several starting hands is solved by
+ * whichever thread gets to it first and looked up by the rest. Positions
+ * with different upcards never share a subtree, so the work is ordered by
+ * upcard, which keeps the threads on the subtrees of one upcard at a time
+ * while they're still in the memo. Within an upcard, the pairs go first,
+ * since their splits take longest, and the other hands fill in around them.
+ * Under a split mode which solves split hands independently, a LevelSolver
+ * can instead solve every starting position at once, bottom-up.
+ *
+ * A soft or hard cell holds several starting hands, such as 10+6 and 9+7 for
+ * a hard 16, so the expected earnings of each of the cell's decisions are
+ * averaged over its hands, weighted by the probability of each being dealt,
+ * and the cell takes the decision which is best on average. A cell whose best
+ * decision is DOUBLE or SURRENDER falls back to the better of HIT and STAY on
+ * hands of more than two cards, as judged on the cell's two-card hands. The
+ * ten-valued upcards and pairs are solved as TENs and copied to the J, Q, and
+ * K columns and rows, and a hard 21, which two cards can't make, always stays.
+ */
+public class ChartSolver {
+
+    /**
+     * The ranks which are dealt differently from one another. The other
+     * ranks (J, Q, and K) are dealt the same as a TEN.
+     */
+    private static final List<Rank> distinctRanks = List.of(Rank.ACE, Rank.TWO, Rank.THREE, Rank.FOUR, Rank.FIVE,
+            Rank.SIX, Rank.SEVEN, Rank.EIGHT, Rank.NINE, Rank.TEN);
+
+    /**
+     * The hard totals of the rows of the hard chart, and the soft totals minus
+     * 11 of the rows of the soft chart, as in the Wikipedia tables.
+     */
+    private static final int minHardTotal = 5, maxHardTotal = 21, minSoftKey = 2, maxSoftKey = 10;
+
+    /**
+     * The label of each rank in the csv files.
+     */
+    private static final Map<Rank, String> rankLabels = ChartOptimizer.rankLabels();
+
+    /**
+     * The number of progress reports over a solve.
+     */
+    private static final int numProgressReports = 20;
+
+    /**
+     * A starting position: the dealer's upcard and player 1's two cards, all
+     * of distinct ranks, with the lower rank first. Two ten-valued cards of
+     * different ranks are a TEN and a JACK, which can't be split.
+     *
+     * @param upcard the rank of the dealer's upcard
+     * @param first the lower rank of player 1's cards
+     * @param second the higher rank of player 1's cards
+     */
+    private record Position(Rank upcard, Rank first, Rank second) {
+
+        /**
+         * Returns the starting position which the input cards are solved as.
+         *
+         * @param upcard the rank of the dealer's upcard
+         * @param first the rank of one of player 1's cards
+         * @param second the rank of the other of player 1's cards
+         * @return the starting position
+         */
+        static Position of(Rank upcard, Rank first, Rank second) {
+            if (first != second && first.compareTo(Rank.TEN) >= 0 && second.compareTo(Rank.TEN) >= 0) {
+                return new Position(distinct(upcard), Rank.TEN, Rank.JACK);
+            }
+            Rank low = distinct(first.compareTo(second) <= 0 ? first : second);
+            Rank high = distinct(first.compareTo(second) <= 0 ? second : first);
+            return new Position(distinct(upcard), low, high);
+        }
+    }
+
+    /**
+     * The strategy whose positions are solved, and whose memo they share, or
+     * null if the positions are solved bottom-up.
+     */
+    private final IdealStrategy solver;
+
+    /**
+     * The solver of every starting position at once, bottom-up, or null if the
+     * positions are solved by the strategy.
+     */
+    private final LevelSolver levelSolver;
+
+    /**
+     * The number of standard decks in the shoe.
+     */
+    private final int numDecks;
+
+    /**
+     * The number of starting positions solved at once.
+     */
+    private final int numThreads;
+
+    /**
+     * The expected earnings of each decision in each starting position solved
+     * so far, indexed by the decision's ordinal, with NaN for decisions which
+     * aren't possible.
+     */
+    private final Map<Position, double[]> positionEarnings = new ConcurrentHashMap<>();
+
+    /**
+     * The chart, in the same format as WikiStrategy's tables.
+     */
+    private final Map<Rank, Map<Rank, String>> pairMap = new HashMap<>();
+    private final Map<Rank, Map<Integer, String>> softMap = new HashMap<>();
+    private final Map<Rank, Map<Integer, String>> hardMap = new HashMap<>();
+
+    /**
+     * The lines of csv holding the expected earnings of each decision in each
+     * cell, in the order the cells were filled in.
+     */
+    private final List<String> earningsLines = new ArrayList<>();
+
+    /**
+     * Constructs a chart solver.
+     *
+     * @param solver the strategy whose positions are solved
+     * @param numDecks the number of standard decks in the shoe, from 1 to PositionKey.MAX_DECKS
+     * @param numThreads the number of starting positions solved at once
+     * @throws IllegalArgumentException if the number of decks is out of range
+     */
+    public ChartSolver(IdealStrategy solver, int numDecks, int numThreads) {
+        if (numDecks < 1 || numDecks > PositionKey.MAX_DECKS) {
+            throw new IllegalArgumentException("ChartSolver() FAILED: " + numDecks
+                    + " decks, but PositionKey can only key the positions of 1 to " + PositionKey.MAX_DECKS);
+        }
+        this.solver = solver;
+        this.levelSolver = null;
+        this.numDecks = numDecks;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Constructs a chart solver which solves every starting position at once,
+     * bottom-up, with the same decisions as IdealStrategy under the level
+     * solver's split mode, in about half the time.
+     *
+     * @param levelSolver the solver of the starting positions
+     * @param numDecks the number of standard decks in the shoe, from 1 to PositionKey.MAX_DECKS
+     * @throws IllegalArgumentException if the number of decks is out of range
+     */
+    public ChartSolver(LevelSolver levelSolver, int numDecks) {
+        if (numDecks < 1 || numDecks > PositionKey.MAX_DECKS) {
+            throw new IllegalArgumentException("ChartSolver() FAILED: " + numDecks
+                    + " decks, but PositionKey can only key the positions of 1 to " + PositionKey.MAX_DECKS);
+        }
+        this.solver = null;
+        this.levelSolver = levelSolver;
+        this.numDecks = numDecks;
+        this.numThreads = 1;
+    }
+
+    /**
+     * Solves every starting position, reporting progress as positions are
+     * solved, then fills in every cell of the chart.
+     */
+    public void solve() {
+        List<Position> positions = startingPositions();
+        if (this.levelSolver != null) {
+            this.solveBottomUp(positions);
+        } else {
+            this.solveTopDown(positions);
+        }
+
+        this.earningsLines.clear();
+        this.earningsLines.add("chart,hand,upcard," + String.join(",",
+                Arrays.stream(Decision.values()).map(Decision::name).toList()));
+        for (Rank upcard: Rank.values()) {
+            this.pairMap.put(upcard, new HashMap<>());
+            this.softMap.put(upcard, new HashMap<>());
+            this.hardMap.put(upcard, new HashMap<>());
+            for (Rank pairRank: Rank.values()) {
+                String label = rankLabels.get(pairRank) + "+" + rankLabels.get(pairRank);
+                this.pairMap.get(upcard).put(pairRank, this.fillCell("pairs", label, upcard,
+                        Map.of(Position.of(upcard, pairRank, pairRank), 1.0)));
+            }
+            for (int key = minSoftKey; key <= maxSoftKey; key++) {
+                Rank otherRank = distinctRanks.get(key - 1);
+                this.softMap.get(upcard).put(key, this.fillCell("soft", "A+" + key, upcard,
+                        Map.of(Position.of(upcard, Rank.ACE, otherRank), 1.0)));
+            }
+            for (int total = minHardTotal; total <= maxHardTotal; total++) {
+                Map<Position, Double> weights = this.hardWeights(upcard, total);
+                this.hardMap.get(upcard).put(total, weights.isEmpty() ? Decision.STAY.name()
+                        : this.fillCell("hard", Integer.toString(total), upcard, weights));
+            }
+        }
+    }
+
+    /**
+     * Solves every starting position with the strategy, several at once,
+     * reporting progress as positions are solved.
+     *
+     * @param positions the starting positions, in the order to solve them
+     */
+    private void solveTopDown(List<Position> positions) {
+        ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+        AtomicInteger numSolved = new AtomicInteger();
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> solves = new ArrayList<>(positions.size());
+            for (Position position: positions) {
+                solves.add(pool.submit(() -> {
+                    this.positionEarnings.put(position, this.solver.getDecisionEarnings(this.startingTable(position)));
+                    int solved = numSolved.incrementAndGet();
+                    if (solved * numProgressReports / positions.size() > (solved - 1) * numProgressReports / positions.size()) {
+                        System.out.println("Solved " + solved + " of " + positions.size() + " starting positions in "
+                                + (System.nanoTime() - start) / 1_000_000 + " ms");
+                    }
+                }));
+            }
+            for (Future<?> solve: solves) {
+                solve.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ChartSolver.solve() FAILED", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("ChartSolver.solve() FAILED", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Solves every starting position at once with the level solver, and
+     * reports how long it took.
+     *
+     * @param positions the starting positions
+     */
+    private void solveBottomUp(List<Position> positions) {
+        long start = System.nanoTime();
+        List<double[]> earnings = this.levelSolver.getDecisionEarnings(positions.stream().map(this::startingTable).toList());
+        for (int i = 0; i < positions.size(); i++) {
+            this.positionEarnings.put(positions.get(i), earnings.get(i));
+        }
+        System.out.println("Solved " + positions.size() + " starting positions bottom-up in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Returns the chart as solved, compiled for play.
+     *
+     * @return the chart as solved
+     */
+    public DecisionChart getChart() {
+        return new DecisionChart(this.pairMap, this.softMap, this.hardMap);
+    }
+
+    /**
+     * Writes the chart as three csv files in the same format as the Wikipedia
+     * tables, named with the input prefix followed by _pairs.csv, _soft.csv,
+     * and _hard.csv, and the expected earnings of each decision in each cell
+     * to a fourth, named with the prefix followed by _earnings.csv, in which
+     * decisions which aren't possible are left empty.
+     *
+     * @param filePrefix the start of the name of each csv file
+     * @throws IOException if a file can't be written
+     */
+    public void writeCSVFiles(String filePrefix) throws IOException {
+        ChartOptimizer.writeCSVFiles(filePrefix, this.pairMap, this.softMap, this.hardMap);
+        ChartOptimizer.writeCSVFile(filePrefix + "_earnings.csv", this.earningsLines);
+    }
+
+    /**
+     * Returns every starting position with a distinct upcard and distinct
+     * hand, grouped by upcard, with the pairs first.
+     *
+     * @return the starting positions, in the order to solve them
+     */
+    private static List<Position> startingPositions() {
+        List<Position> positions = new ArrayList<>();
+        for (Rank upcard: distinctRanks) {
+            for (Rank pairRank: distinctRanks) {
+                positions.add(new Position(upcard, pairRank, pairRank));
+            }
+            for (int i = 0; i < distinctRanks.size(); i++) {
+                for (int j = i + 1; j < distinctRanks.size(); j++) {
+                    positions.add(new Position(upcard, distinctRanks.get(i), distinctRanks.get(j)));
+                }
+            }
+            positions.add(new Position(upcard, Rank.TEN, Rank.JACK));
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the table of a starting position, dealt from a full shoe.
+     *
+     * @param position the starting position
+     * @return the table of the position
+     */
+    private Table startingTable(Position position) {
+        int[] rankCounts = new int[Rank.values().length];
+        Arrays.fill(rankCounts, this.numDecks * Deck.CARDS_PER_DECK / rankCounts.length);
+        rankCounts[position.upcard().ordinal()]--;
+        rankCounts[position.first().ordinal()]--;
+        rankCounts[position.second().ordinal()]--;
+
+        Suit[] suits = Suit.values();
+        List<List<PlayerHand>> playerHands = new ArrayList<>();
+        playerHands.add(new ArrayList<>(List.of(new PlayerHand(new Card(suits[0], position.first()),
+                new Card(suits[1], position.second())))));
+        for (int i = 0; i < 3; i++) {
+            playerHands.add(new ArrayList<>());
+        }
+        return new Table(Deck.withComposition(this.numDecks, rankCounts),
+                new DealerHand(new Card(suits[2], position.upcard())), playerHands);
+    }
+
+    /**
+     * Returns the probability of being dealt each starting position in the
+     * input cell of the hard chart, up to a common factor: each hand of two
+     * cards of different ranks, without an ace, which has the input total.
+     *
+     * @param upcard the rank of the dealer's upcard
+     * @param total the hard total of the cell
+     * @return the weight of each starting position in the cell, which is empty if two cards can't make the total
+     */
+    private Map<Position, Double> hardWeights(Rank upcard, int total) {
+        Map<Position, Double> weights = new LinkedHashMap<>();
+        int perRank = this.numDecks * Deck.CARDS_PER_DECK / Rank.values().length;
+        for (Rank first: Rank.values()) {
+            for (Rank second: Rank.values()) {
+                if (first.compareTo(second) < 0 && first != Rank.ACE
+                        && Card.hardValues.get(first) + Card.hardValues.get(second) == total) {
+                    double weight = (double) (perRank - (first == upcard ? 1 : 0)) * (perRank - (second == upcard ? 1 : 0));
+                    weights.merge(Position.of(upcard, first, second), weight, Double::sum);
+                }
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Averages the expected earnings of each decision over the input starting
+     * positions, records them as a line of the earnings csv, and returns the
+     * text of the cell.
+     *
+     * @param chart the name of the chart the cell is in
+     * @param label the label of the cell's row
+     * @param upcard the rank of the dealer's upcard
+     * @param weights the weight of each starting position in the cell
+     * @return the text of the cell, such as "HIT" or "DOUBLE/HIT"
+     */
+    private String fillCell(String chart, String label, Rank upcard, Map<Position, Double> weights) {
+        double[] cellEarnings = new double[Decision.values().length];
+        double totalWeight = 0.0;
+        for (Map.Entry<Position, Double> weight: weights.entrySet()) {
+            double[] earnings = this.positionEarnings.get(weight.getKey());
+            for (int decision = 0; decision < cellEarnings.length; decision++) {
+                cellEarnings[decision] += weight.getValue() * earnings[decision];
+            }
+            totalWeight += weight.getValue();
+        }
+
+        StringBuilder line = new StringBuilder(chart).append(',').append(label).append(',')
+                .append(rankLabels.get(upcard));
+        for (int decision = 0; decision < cellEarnings.length; decision++) {
+            cellEarnings[decision] /= totalWeight;
+            line.append(',');
+            if (!Double.isNaN(cellEarnings[decision])) {
+                line.append(cellEarnings[decision]);
+            }
+        }
+        this.earningsLines.add(line.toString());
+
+        Decision best = bestDecision(cellEarnings, IdealStrategy.decisionOrder);
+        if (best == Decision.DOUBLE || best == Decision.SURRENDER) {
+            return best + "/" + bestDecision(cellEarnings, List.of(Decision.HIT, Decision.STAY));
+        }
+        return best.name();
+    }
+
+    /**
+     * Returns the decision among the input ones with the highest expected
+     * earnings, with ties going to the one listed first.
+     *
+     * @param earnings the expected earnings of each decision, indexed by ordinal, NaN if not possible
+     * @param decisions the decisions to choose from, in order of preference on ties
+     * @return the best decision
+     */
+    private static Decision bestDecision(double[] earnings, List<Decision> decisions) {
+        Decision best = null;
+        for (Decision decision: decisions) {
+            if (!Double.isNaN(earnings[decision.ordinal()])
+                    && (best == null || earnings[decision.ordinal()] > earnings[best.ordinal()])) {
+                best = decision;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the rank which the input rank is dealt the same as.
+     *
+     * @param rank a rank
+     * @return TEN for a ten-valued rank, and the rank itself otherwise
+     */
+    private static Rank distinct(Rank rank) {
+        return (rank.compareTo(Rank.TEN) >= 0) ? Rank.TEN : rank;
+    }
+
+}
@@ -0,0 +1,43 @@
+import java.io.IOException;
+
+/**
+ * Solves IdealStrategy's chart for a single deck, and writes it in the same
+ * csv format as the Wikipedia tables, along with the expected earnings of
+ * every decision in every cell. Splits are solved independently, since
+ * solving every pair's splits exactly would take hours, which also lets the
+ * whole chart be solved bottom-up by LevelSolver rather than one starting
+ * position at a time by IdealStrategy.
+ */
+public class ChartSolverMain {
+
+    private static final int numDecks = 1;
+
+    private static final SplitMode splitMode = SplitMode.INDEPENDENT;
+
+    private static final long memoBytes = 256L << 20;
+
+    private static final int parallelDepth = 2;
+
+    private static final int numThreads = Runtime.getRuntime().availableProcessors();
+
+    private static final boolean bottomUp = true;
+
+    private static final String outputFilePrefix = "ideal_strategy_1deck";
+
+    public static void main(String[] args) throws IOException {
+        ChartSolver chartSolver;
+        if (bottomUp) {
+            chartSolver = new ChartSolver(new LevelSolver(splitMode), numDecks);
+            chartSolver.solve();
+        } else {
+            IdealStrategy solver = new IdealStrategy(memoBytes, parallelDepth, splitMode);
+            chartSolver = new ChartSolver(solver, numDecks, numThreads);
+            chartSolver.solve();
+            SolverMemo.Stats memoStats = solver.getMemoStats();
+            System.out.println("Solver memo: " + memoStats.entries() + " entries, hit rate " + memoStats.hitRate());
+            DealerOutcomes.Stats dealerStats = DealerOutcomes.singleton().stats();
+            System.out.println("Dealer memo: " + dealerStats.entries() + " entries, hit rate " + dealerStats.hitRate());
+        }
+        chartSolver.writeCSVFiles(outputFilePrefix);
+    }
+}
@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a file of hand results written by ColumnarResultWriter by
+ * memory-mapping it, so that scans only touch the columns they read.
+ *
+ * The file header consists of little-endian ints: the magic number, the format
+ * version, the number of rows per block, the number of bytes per block, and the
+ * number of strategies, followed by each strategy's name as a length-prefixed
+ * UTF-8 string, padded to a multiple of 8 bytes.
+ */
+public class ColumnarResultReader implements AutoCloseable {
+
+    /**
+     * The maximum number of bytes mapped by a single buffer.
+     */
+    private static final long MAX_MAPPING_BYTES = 1L << 30;
+
+    /**
+     * The channel to the input file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The names of the strategies, indexed by strategy id.
+     */
+    private final List<String> strategyNames;
+
+    /**
+     * The number of rows in each block.
+     */
+    private final int rowsPerBlock;
+
+    /**
+     * The number of bytes in each block.
+     */
+    private final int blockBytes;
+
+    /**
+     * The offset of the first block in the file.
+     */
+    private final long firstBlockOffset;
+
+    /**
+     * The number of blocks in the file.
+     */
+    private final int numBlocks;
+
+    /**
+     * The number of whole blocks mapped by each mapping.
+     */
+    private final int blocksPerMapping;
+
+    /**
+     * The mappings of the blocks, created as they are first needed.
+     */
+    private final MappedByteBuffer[] mappings;
+
+    /**
+     * Opens the input file and reads its header.
+     *
+     * @param path a file written by ColumnarResultWriter
+     * @throws IOException if the file can't be read or isn't a file of columnar hand results
+     */
+    public ColumnarResultReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        MappedByteBuffer header = this.channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                Math.min(this.channel.size(), 1 << 16));
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.remaining() < 5 * Integer.BYTES || header.getInt() != ColumnarResultWriter.MAGIC) {
+            this.channel.close();
+            throw new IOException(path + " is not a file of columnar hand results");
+        }
+        int version = header.getInt();
+        if (version != ColumnarResultWriter.VERSION) {
+            this.channel.close();
+            throw new IOException(path + " has unsupported format version " + version);
+        }
+        this.rowsPerBlock = header.getInt();
+        this.blockBytes = header.getInt();
+        int numStrategies = header.getInt();
+        List<String> names = new ArrayList<>(numStrategies);
+        for (int i = 0; i < numStrategies; i++) {
+            byte[] name = new byte[header.getInt()];
+            header.get(name);
+            names.add(new String(name, StandardCharsets.UTF_8));
+        }
+        this.strategyNames = List.copyOf(names);
+        this.firstBlockOffset = (header.position() + 7) & ~7;
+
+        this.numBlocks = (int) ((this.channel.size() - this.firstBlockOffset) / this.blockBytes);
+        this.blocksPerMapping = (int) Math.max(1, MAX_MAPPING_BYTES / this.blockBytes);
+        this.mappings = new MappedByteBuffer[(this.numBlocks + this.blocksPerMapping - 1) / this.blocksPerMapping];
+    }
+
+    /**
+     * Returns the names of the strategies, indexed by strategy id.
+     *
+     * @return the names of the strategies, indexed by strategy id
+     */
+    public List<String> getStrategyNames() {
+        return this.strategyNames;
+    }
+
+    /**
+     * Returns the number of blocks in the file.
+     *
+     * @return the number of blocks in the file
+     */
+    public int numBlocks() {
+        return this.numBlocks;
+    }
+
+    /**
+     * Returns a view of the input block's columns.
+     *
+     * @param blockIdx the index of a block, from 0 to numBlocks() - 1
+     * @return a view of the block's columns
+     * @throws IOException if the block can't be mapped
+     */
+    public Block block(int blockIdx) throws IOException {
+        int mappingIdx = blockIdx / this.blocksPerMapping;
+        MappedByteBuffer mapping = this.mappings[mappingIdx];
+        if (mapping == null) {
+            long start = this.firstBlockOffset + (long) mappingIdx * this.blocksPerMapping * this.blockBytes;
+            int blocks = Math.min(this.blocksPerMapping, this.numBlocks - mappingIdx * this.blocksPerMapping);
+            mapping = this.channel.map(FileChannel.MapMode.READ_ONLY, start, (long) blocks * this.blockBytes);
+            mapping.order(ByteOrder.LITTLE_ENDIAN);
+            this.mappings[mappingIdx] = mapping;
+        }
+        return new Block(mapping, (blockIdx % this.blocksPerMapping) * this.blockBytes);
+    }
+
+    /**
+     * Sums the earnings of the input strategy over the whole file, reading
+     * only the strategy and earnings columns.
+     *
+     * @param strategyId the index of a strategy
+     * @return the total earnings of the strategy
+     * @throws IOException if the file can't be mapped
+     */
+    public double totalEarnings(int strategyId) throws IOException {
+        long totalHalfUnits = 0;
+        for (int blockIdx = 0; blockIdx < this.numBlocks; blockIdx++) {
+            Block block = this.block(blockIdx);
+            for (int row = 0; row < block.getRowCount(); row++) {
+                if (block.getStrategyId(row) == strategyId) {
+                    totalHalfUnits += block.getEarningsHalfUnits(row);
+                }
+            }
+        }
+        return totalHalfUnits / 2.0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * A view of the columns of one block.
+     */
+    public class Block {
+
+        /**
+         * The mapping holding the block.
+         */
+        private final MappedByteBuffer mapping;
+
+        /**
+         * The offset of each column within the mapping.
+         */
+        private final int trialOffset, decisionOffset, earningsOffset, handOffset, strategyOffset, upcardOffset;
+
+        /**
+         * The number of rows in the block.
+         */
+        private final int rowCount;
+
+        /**
+         * Locates the columns of the block starting at the input offset.
+         *
+         * @param mapping the mapping holding the block
+         * @param offset the offset of the block within the mapping
+         */
+        private Block(MappedByteBuffer mapping, int offset) {
+            int rows = ColumnarResultReader.this.rowsPerBlock;
+            this.mapping = mapping;
+            this.rowCount = mapping.getInt(offset);
+            this.trialOffset = offset + ColumnarResultWriter.BLOCK_HEADER_BYTES;
+            this.decisionOffset = this.trialOffset + 8 * rows;
+            this.earningsOffset = this.decisionOffset + 8 * rows;
+            this.handOffset = this.earningsOffset + 2 * rows;
+            this.strategyOffset = this.handOffset + 2 * rows;
+            this.upcardOffset = this.strategyOffset + rows;
+        }
+
+        public int getRowCount() {
+            return this.rowCount;
+        }
+
+        public long getTrial(int row) {
+            return this.mapping.getLong(this.trialOffset + 8 * row);
+        }
+
+        public long getDecisionCode(int row) {
+            return this.mapping.getLong(this.decisionOffset + 8 * row);
+        }
+
+        public short getEarningsHalfUnits(int row) {
+            return this.mapping.getShort(this.earningsOffset + 2 * row);
+        }
+
+        public short getInitialHandCode(int row) {
+            return this.mapping.getShort(this.handOffset + 2 * row);
+        }
+
+        public byte getStrategyId(int row) {
+            return this.mapping.get(this.strategyOffset + row);
+        }
+
+        public Rank getUpcard(int row) {
+            return Rank.values()[this.mapping.get(this.upcardOffset + row)];
+        }
+
+    }
+
+}
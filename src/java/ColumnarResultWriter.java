@@ -0,0 +1,347 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+
+/**
+ * Exports every hand result from a stream of hand results to a binary file
+ * of fixed-width columns, which ColumnarResultReader can memory-map.
+ *
+ * The file starts with a header (see ColumnarResultReader) and is followed by
+ * blocks of a fixed number of rows. Within a block, each column is stored
+ * contiguously:
+ *
+ *     trial id         8 bytes   the index of the trial
+ *     decision code    8 bytes   the decisions made, packed as in Table.getDecisionCode()
+ *     earnings         2 bytes   player 1's earnings, in half-units of the bet
+ *     initial hand     2 bytes   13 * (first card's rank ordinal) + second card's rank ordinal
+ *     strategy id      1 byte    the index of the strategy in the list given to the writer
+ *     upcard           1 byte    the ordinal of the dealer's upcard rank
+ *
+ * Rows are gathered into one of two block-sized buffers while the other one
+ * is written to disk on a background thread, so the stream only waits on the
+ * disk if a whole block is filled before the previous one has been written.
+ */
+public class ColumnarResultWriter implements Flow.Subscriber<List<HandResult>> {
+
+    /**
+     * Identifies a file of columnar hand results ("BJCR").
+     */
+    static final int MAGIC = 0x424A4352;
+
+    /**
+     * The version of the file format written by this class.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The default number of rows in each block.
+     */
+    public static final int DEFAULT_ROWS_PER_BLOCK = 1 << 16;
+
+    /**
+     * The number of bytes in one row, summed over all of the columns.
+     */
+    static final int BYTES_PER_ROW = 8 + 8 + 2 + 2 + 1 + 1;
+
+    /**
+     * The number of bytes before the first column of a block (the row count and padding).
+     */
+    static final int BLOCK_HEADER_BYTES = 8;
+
+    /**
+     * The strategies whose results are exported, indexed by strategy id.
+     */
+    private final List<IPlayerStrategy> strategies;
+
+    /**
+     * The number of rows in each block.
+     */
+    private final int rowsPerBlock;
+
+    /**
+     * The channel to the output file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Writes full blocks to the channel in the background.
+     */
+    private final ExecutorService diskWriter;
+
+    /**
+     * The block being filled by the stream.
+     */
+    private ByteBuffer fillingBlock;
+
+    /**
+     * The block most recently handed to the disk writer, which may still be being written.
+     */
+    private ByteBuffer writingBlock;
+
+    /**
+     * The write of writingBlock, or null if nothing has been written yet.
+     */
+    private Future<?> pendingWrite;
+
+    /**
+     * The number of rows in fillingBlock so far.
+     */
+    private int rowsInBlock;
+
+    /**
+     * The subscription to the stream of hand results.
+     */
+    private Flow.Subscription subscription;
+
+    /**
+     * Counts down once the file has been completely written (or has failed to be).
+     */
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    /**
+     * The error that ended the export, if any.
+     */
+    private volatile Throwable error;
+
+    /**
+     * Creates the output file and writes its header.
+     *
+     * @param path the file to export the results to
+     * @param strategies the strategies whose results are exported; results of any
+     *                   other strategy are ignored
+     * @param rowsPerBlock the number of rows in each block
+     * @throws IOException if the file can't be created
+     */
+    public ColumnarResultWriter(Path path, List<IPlayerStrategy> strategies, int rowsPerBlock) throws IOException {
+        if (strategies.size() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("At most " + Byte.MAX_VALUE + " strategies can be exported");
+        }
+        this.strategies = List.copyOf(strategies);
+        this.rowsPerBlock = rowsPerBlock;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.diskWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "columnar-result-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.fillingBlock = newBlock();
+        this.writingBlock = newBlock();
+        this.writeFully(this.fileHeader());
+    }
+
+    /**
+     * Returns the number of bytes in each block for the input number of rows per block.
+     *
+     * @param rowsPerBlock the number of rows in each block
+     * @return the number of bytes in each block, a multiple of 8
+     */
+    static int blockBytes(int rowsPerBlock) {
+        return BLOCK_HEADER_BYTES + ((rowsPerBlock * BYTES_PER_ROW + 7) & ~7);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<HandResult> results) {
+        try {
+            for (HandResult result: results) {
+                int strategyId = this.strategies.indexOf(result.strategy());
+                if (strategyId >= 0) {
+                    this.addRow(result, strategyId);
+                }
+            }
+            this.subscription.request(1);
+        } catch (IOException | ExecutionException | InterruptedException e) {
+            this.subscription.cancel();
+            this.fail(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        this.fail(error);
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            if (this.rowsInBlock > 0) {
+                this.handOffBlock();
+            }
+            this.awaitPendingWrite();
+            this.channel.force(false);
+            this.channel.close();
+        } catch (IOException | ExecutionException | InterruptedException e) {
+            this.fail(e);
+            return;
+        } finally {
+            this.diskWriter.shutdown();
+        }
+        this.done.countDown();
+    }
+
+    /**
+     * Blocks until every result in the stream has been written to the file.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the export failed
+     */
+    public void awaitCompletion() throws InterruptedException {
+        this.done.await();
+        if (this.error != null) {
+            throw new IllegalStateException("Exporting the hand results failed", this.error);
+        }
+    }
+
+    /**
+     * Writes the input result into the next row of the block being filled,
+     * handing the block off to the disk writer once it is full.
+     *
+     * @param result the hand result to write
+     * @param strategyId the index of the result's strategy
+     */
+    private void addRow(HandResult result, int strategyId) throws IOException, ExecutionException, InterruptedException {
+        int row = this.rowsInBlock;
+        int trialOffset = BLOCK_HEADER_BYTES;
+        int decisionOffset = trialOffset + 8 * this.rowsPerBlock;
+        int earningsOffset = decisionOffset + 8 * this.rowsPerBlock;
+        int handOffset = earningsOffset + 2 * this.rowsPerBlock;
+        int strategyOffset = handOffset + 2 * this.rowsPerBlock;
+        int upcardOffset = strategyOffset + this.rowsPerBlock;
+
+        ByteBuffer block = this.fillingBlock;
+        block.putLong(trialOffset + 8 * row, result.trial());
+        block.putLong(decisionOffset + 8 * row, result.decisionCode());
+        block.putShort(earningsOffset + 2 * row, (short) Math.round(2 * result.earnings()));
+        block.putShort(handOffset + 2 * row,
+                (short) (13 * result.firstCard().ordinal() + result.secondCard().ordinal()));
+        block.put(strategyOffset + row, (byte) strategyId);
+        block.put(upcardOffset + row, (byte) result.dealerUpcard().ordinal());
+
+        if (++this.rowsInBlock == this.rowsPerBlock) {
+            this.handOffBlock();
+        }
+    }
+
+    /**
+     * Hands the block being filled to the disk writer and starts filling the other
+     * block, first waiting for the other block's previous write to finish.
+     */
+    private void handOffBlock() throws ExecutionException, InterruptedException {
+        this.awaitPendingWrite();
+
+        ByteBuffer fullBlock = this.fillingBlock;
+        fullBlock.putInt(0, this.rowsInBlock);
+        fullBlock.clear();
+        this.pendingWrite = this.diskWriter.submit(() -> {
+            this.writeFully(fullBlock);
+            return null;
+        });
+
+        // Swap the buffers; the one just written out is now free to fill.
+        this.fillingBlock = this.writingBlock;
+        this.writingBlock = fullBlock;
+        this.rowsInBlock = 0;
+        zero(this.fillingBlock);
+    }
+
+    /**
+     * Waits for the block most recently handed to the disk writer to be written.
+     */
+    private void awaitPendingWrite() throws ExecutionException, InterruptedException {
+        if (this.pendingWrite != null) {
+            this.pendingWrite.get();
+            this.pendingWrite = null;
+        }
+    }
+
+    /**
+     * Writes the whole input buffer to the channel.
+     *
+     * @param buffer the bytes to write
+     */
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+    }
+
+    /**
+     * Records the input error and releases the file.
+     *
+     * @param error the reason the export failed
+     */
+    private void fail(Throwable error) {
+        this.error = error;
+        this.diskWriter.shutdownNow();
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            error.addSuppressed(e);
+        }
+        this.done.countDown();
+    }
+
+    /**
+     * Returns the file header: the magic number, the format version, the number of
+     * rows per block, the block size in bytes, and the names of the strategies by id,
+     * padded to a multiple of 8 bytes.
+     *
+     * @return the file header, ready to be written
+     */
+    private ByteBuffer fileHeader() {
+        byte[][] names = new byte[this.strategies.size()][];
+        int size = 5 * Integer.BYTES;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = this.strategies.get(i).toString().getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + names[i].length;
+        }
+        size = (size + 7) & ~7;
+
+        ByteBuffer header = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(this.rowsPerBlock).putInt(blockBytes(this.rowsPerBlock));
+        header.putInt(names.length);
+        for (byte[] name: names) {
+            header.putInt(name.length).put(name);
+        }
+        header.clear();
+        return header;
+    }
+
+    /**
+     * Allocates an empty block-sized buffer.
+     *
+     * @return an empty block-sized buffer
+     */
+    private ByteBuffer newBlock() {
+        return ByteBuffer.allocateDirect(blockBytes(this.rowsPerBlock)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Zeroes the input buffer, so that the unused rows of a partial block are empty.
+     *
+     * @param buffer the buffer to zero
+     */
+    private static void zero(ByteBuffer buffer) {
+        for (int i = 0; i + 8 <= buffer.capacity(); i += 8) {
+            buffer.putLong(i, 0L);
+        }
+    }
+
+}
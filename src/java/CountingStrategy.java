@@ -0,0 +1,245 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A strategy for a player to make a decision with their hand based on the
+ * Wikipedia blackjack tables, deviating from them when the Hi-Lo true count
+ * of the remaining deck crosses an index, in the style of the Illustrious 18.
+ *
+ * The deviations are read from a csv file with a header row and one row per
+ * deviation: the player's hand (as labelled in the Wikipedia tables), the
+ * dealer's upcard, the integer index, whether the deviation applies when the
+ * true count is AT_OR_ABOVE or BELOW the index, and the decision to make
+ * instead, in the same format as the Wikipedia tables. An upcard or pair of
+ * 10 stands for every ten-valued card. Insurance isn't offered by the table,
+ * so the insurance index isn't among the deviations.
+ *
+ * Since every index is an integer, the decisions only change where the
+ * floor of the true count changes. One chart is compiled for each floor
+ * between the lowest and highest index when the class is loaded, so a
+ * decision costs the same few array reads as WikiStrategy.
+ */
+public class CountingStrategy implements IPlayerStrategy {
+
+    /**
+     * A complete file path to the folder of csv files. This will work
+     * on anyone's machine since System.getProperty("user.dir") locates
+     * the path of this repository on their machine.
+     */
+    private static final String csvDir = System.getProperty("user.dir") + File.separator +
+                                                            "src" + File.separator +
+                                                            "csv";
+
+    /**
+     * The name of the csv file of deviations.
+     */
+    private static final String deviationsCSVFile = "illustrious18_deviations.csv";
+
+    /**
+     * The floor of the true count which the first chart is for. Every lower true count uses the first chart.
+     */
+    private static final int minTrueCount;
+
+    /**
+     * The chart for each floor of the true count, starting from minTrueCount.
+     * Every true count above the last chart's uses the last chart.
+     */
+    private static final DecisionChart[] charts;
+
+    /**
+     * The singleton instance of this class, since only one instance
+     * is ever needed.
+     */
+    private static final CountingStrategy SINGLETON = new CountingStrategy();
+
+    /**
+     * A private constructor to prevent users of this class from
+     * creating additional instances of the class.
+     */
+    private CountingStrategy() {
+
+    }
+
+    /**
+     * Returns the singleton instance of this class.
+     *
+     * @return the singleton instance of this class
+     */
+    public static CountingStrategy singleton() {
+        return SINGLETON;
+    }
+
+    /**
+     * A play which replaces the Wikipedia decision on one hand against one upcard
+     * when the true count is on one side of an index.
+     *
+     * @param handLabel the hand, as labelled in the Wikipedia tables
+     * @param upcard the rank of the dealer's upcard
+     * @param index the true count at which the deviation starts or stops applying
+     * @param atOrAbove true iff the deviation applies at or above the index, rather than below it
+     * @param decision the decision to make instead, in the same format as the Wikipedia tables
+     */
+    private record Deviation(String handLabel, Rank upcard, int index, boolean atOrAbove, String decision) {
+
+        /**
+         * Returns whether this deviation applies when the floor of the true count is the input value.
+         *
+         * @param trueCount the floor of the true count
+         * @return true iff this deviation applies
+         */
+        public boolean appliesAt(int trueCount) {
+            return this.atOrAbove ? trueCount >= this.index : trueCount < this.index;
+        }
+    }
+
+    /*
+     * Compile a chart for every floor of the true count from the Wikipedia tables and the deviations.
+     */
+    static {
+        try {
+            List<Deviation> deviations = readDeviations();
+            int minIndex = 0;
+            int maxIndex = 0;
+            for (Deviation deviation: deviations) {
+                minIndex = Math.min(minIndex, deviation.index());
+                maxIndex = Math.max(maxIndex, deviation.index());
+            }
+
+            // Below the lowest index every BELOW deviation applies, and at the highest every AT_OR_ABOVE one does.
+            minTrueCount = minIndex - 1;
+            charts = new DecisionChart[maxIndex - minTrueCount + 1];
+            for (int i = 0; i < charts.length; i++) {
+                charts[i] = compileChart(deviations, minTrueCount + i);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns a Decision for the player to make based on the Wikipedia
+     * blackjack tables and the true count of the deck.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @param handInPlay the hand being played
+     * @return a decision for the player to make with their hand
+     */
+    @Override
+    public Decision getDecision(Table table, PlayerHand handInPlay) {
+        Rank dealerRank = table.getDealerHand().getCards().get(0).getRank();
+        return chartFor(table.getDeck().getTrueCount()).getDecision(dealerRank, handInPlay);
+    }
+
+    /**
+     * Fills in the decision for every query in the input batch based on the
+     * Wikipedia blackjack tables and the true count of each query's deck.
+     *
+     * @param batch the queries, each holding a table and the hand being played on it
+     * @param decisions the array to fill, which must hold at least batch.size() decisions
+     */
+    @Override
+    public void getDecisions(DecisionBatch batch, Decision[] decisions) {
+        for (int i = 0; i < batch.size(); i++) {
+            decisions[i] = chartFor(batch.getTable(i).getDeck().getTrueCount()).getDecision(batch.getUpcard(i),
+                    batch.getPairRank(i), batch.getHardTotal(i), batch.containsAce(i), batch.getNumCards(i));
+        }
+    }
+
+    /**
+     * Returns the chart to use at the input true count.
+     *
+     * @param trueCount the Hi-Lo true count of the deck
+     * @return the chart to use at the true count
+     */
+    private static DecisionChart chartFor(double trueCount) {
+        double chartIdx = Math.floor(trueCount) - minTrueCount;
+        return charts[(int) Math.max(0, Math.min(charts.length - 1, chartIdx))];
+    }
+
+    /**
+     * Compiles the chart to use when the floor of the true count is the input value,
+     * by applying every deviation that applies there to a copy of the Wikipedia tables.
+     *
+     * @param deviations the deviations from the Wikipedia tables
+     * @param trueCount the floor of the true count
+     * @return the chart to use at the true count
+     */
+    private static DecisionChart compileChart(List<Deviation> deviations, int trueCount) {
+        Map<Rank, Map<Rank, String>> pairMap = WikiStrategy.copyTable(WikiStrategy.pairMap);
+        Map<Rank, Map<Integer, String>> softMap = WikiStrategy.copyTable(WikiStrategy.softMap);
+        Map<Rank, Map<Integer, String>> hardMap = WikiStrategy.copyTable(WikiStrategy.hardMap);
+
+        for (Deviation deviation: deviations) {
+            if (!deviation.appliesAt(trueCount)) {
+                continue;
+            }
+            String handLabel = deviation.handLabel();
+            String playerCard = handLabel.substring(handLabel.indexOf("+") + 1);
+            if (handLabel.equals("A+A") || (handLabel.contains("+") && !handLabel.startsWith("A+"))) {
+                for (Rank pairRank: ranksFor(playerCard)) {
+                    pairMap.get(deviation.upcard()).put(pairRank, deviation.decision());
+                }
+            } else if (handLabel.startsWith("A+")) {
+                softMap.get(deviation.upcard()).put(Integer.parseInt(playerCard), deviation.decision());
+            } else {
+                hardMap.get(deviation.upcard()).put(Integer.parseInt(playerCard), deviation.decision());
+            }
+        }
+
+        return new DecisionChart(pairMap, softMap, hardMap);
+    }
+
+    /**
+     * Returns the ranks which the input card label stands for: every
+     * ten-valued rank for "10", and otherwise the single rank.
+     *
+     * @param cardLabel a single card, labelled as in the Wikipedia tables
+     * @return the ranks which the label stands for
+     */
+    private static List<Rank> ranksFor(String cardLabel) {
+        if (cardLabel.equals("10")) {
+            return List.of(Rank.TEN, Rank.JACK, Rank.QUEEN, Rank.KING);
+        }
+        return List.of(Card.string2RankMap.get(cardLabel));
+    }
+
+    /**
+     * Parses the csv file of deviations, expanding each deviation against
+     * a 10 into one deviation for each ten-valued upcard.
+     *
+     * @return the deviations from the Wikipedia tables
+     */
+    private static List<Deviation> readDeviations() throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(csvDir + File.separator + deviationsCSVFile));
+        String csvLine;
+        while ((csvLine = reader.readLine()) != null) {
+            lines.add(csvLine);
+        }
+        reader.close();
+
+        List<Deviation> deviations = new ArrayList<>();
+        for (int lineIdx = 1; lineIdx < lines.size(); lineIdx++) { // skip the header row
+            String[] fields = lines.get(lineIdx).split(",");
+            int index = Integer.parseInt(fields[2]);
+            if (!fields[3].equals("AT_OR_ABOVE") && !fields[3].equals("BELOW")) {
+                throw new IllegalArgumentException("Expected AT_OR_ABOVE or BELOW on line " + (lineIdx + 1)
+                        + " of " + deviationsCSVFile + ": " + fields[3]);
+            }
+            boolean atOrAbove = fields[3].equals("AT_OR_ABOVE");
+            for (Rank upcard: ranksFor(fields[1])) {
+                deviations.add(new Deviation(fields[0], upcard, index, atOrAbove, fields[4]));
+            }
+        }
+        return deviations;
+    }
+
+    @Override
+    public String toString() {
+        return "Counting";
+    }
+
+}
@@ -0,0 +1,47 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A strategy which looks up each starting position in a StrategyDatabase,
+ * so that the positions the database covers are answered with one index
+ * computation and one read of the mapped file, and falls back to solving
+ * the positions it doesn't cover with an IdealStrategy.
+ */
+public class DatabaseStrategy implements IPlayerStrategy {
+
+    /**
+     * The precomputed solutions of the starting positions.
+     */
+    private final StrategyDatabase database;
+
+    /**
+     * The strategy which decides the positions the database doesn't cover.
+     */
+    private final IdealStrategy fallback;
+
+    /**
+     * Constructs a strategy which looks up positions in the input database.
+     *
+     * @param path a file written by StrategyDatabase.build()
+     * @param fallback the strategy which decides the positions the database doesn't cover
+     * @throws IOException if the database can't be read, is corrupted, or was
+     *           solved under other rules than the fallback's
+     */
+    public DatabaseStrategy(Path path, IdealStrategy fallback) throws IOException {
+        this.database = new StrategyDatabase(path, fallback);
+        this.fallback = fallback;
+    }
+
+    /**
+     * @param table holds the deck, player hands, and dealer hand
+     * @param handInPlay the hand being played
+     * @return a decision for the player to make with their hand
+     */
+    @Override
+    public Decision getDecision(Table table, PlayerHand handInPlay) {
+        long entry = this.database.indexOf(table, handInPlay);
+        Decision decision = (entry < 0) ? null : this.database.getDecision(entry);
+        return (decision != null) ? decision : this.fallback.getDecision(table, handInPlay);
+    }
+
+}
@@ -0,0 +1,345 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Computes the exact probability distribution of the dealer's final outcome
+ * for a dealer hand and the cards left in the deck, following
+ * Table.hitDealer(): the dealer draws until busting, reaching a soft total
+ * above 17, or reaching a hard total of at least 17.
+ *
+ * The outcomes are a final total of 17 to 21, at index total - 17, a bust at
+ * index BUST, and a Blackjack at index BLACKJACK. Every distribution solved is
+ * memoized by the number of cards of each value left in the deck and the
+ * dealer's hand, so the dealer's draws are expanded once for each
+ * composition, however many player hands are compared against them. The
+ * expected earnings of a final player hand are then a dot product of the
+ * distribution with the hand's earnings against each outcome.
+ *
+ * The memo has a fixed number of slots, MEMO_SLOTS, so a long run can't grow
+ * it past about 100 megabytes of the heap. A distribution's slot is picked by its
+ * key, and a distribution solved for a key whose slot is taken evicts the
+ * one there, which is solved again if it's needed again. Since a
+ * distribution is solved from those of the hands it can draw to, which are
+ * returned rather than looked up again, an eviction partway through a solve
+ * costs time but never changes its result.
+ */
+public class DealerOutcomes {
+
+    /**
+     * The indices of the dealer's final outcomes after those of a total of
+     * 17 to 21, and the number of outcomes.
+     */
+    public static final int BUST = 5, BLACKJACK = 6, NUM_OUTCOMES = 7;
+
+    /**
+     * The number of card ranks.
+     */
+    private static final int numRanks = Rank.values().length;
+
+    /**
+     * The hard value of each rank, indexed by the rank's ordinal.
+     */
+    private static final int[] rankValues = Arrays.stream(Rank.values()).mapToInt(Card.hardValues::get).toArray();
+
+    /**
+     * The number of slots of the memo, a power of 2. A slot costs about 100
+     * bytes of the heap once filled, including its distribution. Solving
+     * the single-deck chart fills about 70% of them, in less time than with
+     * a memo four times smaller.
+     */
+    private static final int MEMO_SLOTS = 1 << 20;
+
+    /**
+     * The singleton instance of this class, so that every solver shares one memo.
+     */
+    private static final DealerOutcomes SINGLETON = new DealerOutcomes();
+
+    /**
+     * A distribution in the memo, along with the key it was solved for.
+     *
+     * @param key the mixed bits of the composition and dealer hand
+     * @param outcomes the probability of each final outcome, which mustn't be changed
+     */
+    private record Entry(long key, double[] outcomes) {
+
+    }
+
+    /**
+     * The distributions over the dealer's final outcomes solved most recently
+     * for each slot, indexed by the low bits of their keys.
+     */
+    private final AtomicReferenceArray<Entry> memo = new AtomicReferenceArray<>(MEMO_SLOTS);
+
+    /**
+     * Counts the slots which have ever been filled, none of which become empty again.
+     */
+    private final LongAdder numEntries = new LongAdder();
+
+    /**
+     * Counts the lookups of distributions which were in the memo.
+     */
+    private final LongAdder numHits = new LongAdder();
+
+    /**
+     * Counts the lookups of distributions which weren't in the memo.
+     */
+    private final LongAdder numMisses = new LongAdder();
+
+    /**
+     * Counts the distributions evicted to make room for others.
+     */
+    private final LongAdder numEvictions = new LongAdder();
+
+    /**
+     * A snapshot of the memo's statistics.
+     *
+     * @param entries the number of slots in use
+     * @param capacity the number of slots
+     * @param hits the number of lookups of distributions which were in the memo
+     * @param misses the number of lookups of distributions which weren't in the memo
+     * @param evictions the number of distributions evicted to make room for others
+     */
+    public record Stats(long entries, long capacity, long hits, long misses, long evictions) {
+
+        /**
+         * Returns the fraction of lookups which found their distribution in the memo.
+         *
+         * @return the hit rate, or 0 if nothing has been looked up
+         */
+        public double hitRate() {
+            long lookups = this.hits + this.misses;
+            return (lookups == 0) ? 0.0 : (double) this.hits / lookups;
+        }
+    }
+
+    /**
+     * A private constructor to prevent users of this class from
+     * creating additional instances of the class.
+     */
+    private DealerOutcomes() {
+
+    }
+
+    /**
+     * Returns the singleton instance of this class.
+     *
+     * @return the singleton instance of this class
+     */
+    public static DealerOutcomes singleton() {
+        return DealerOutcomes.SINGLETON;
+    }
+
+    /**
+     * Returns the probability of each of the dealer's final outcomes on the
+     * input table. If the dealer's hand is already final, its outcome has
+     * probability 1.
+     *
+     * @param table holds the deck and dealer hand, and isn't changed
+     * @return the probability of each final outcome, indexed as BUST etc., which mustn't be changed
+     */
+    public double[] distribution(Table table) {
+        DealerHand dealerHand = table.getDealerHand();
+        boolean ace = dealerHand.getCards().stream().anyMatch(card -> card.getRank() == Rank.ACE);
+        if (dealerHand.isFinal()) {
+            double[] outcomes = new double[NUM_OUTCOMES];
+            outcomes[outcome(dealerHand.getHard(), ace, dealerHand.handSize())] = 1.0;
+            return outcomes;
+        }
+        int[] deck = table.getDeck().rankCounts();
+        return this.distribution(deck, Arrays.stream(deck).sum(), dealerHand.getHard(), ace, dealerHand.handSize());
+    }
+
+    /**
+     * Returns the probability of each of the dealer's final outcomes when the
+     * dealer has only the input upcard.
+     *
+     * @param deck the number of cards of each rank in the deck, indexed by the rank's ordinal
+     * @param upcard the ordinal of the rank of the dealer's upcard
+     * @return the probability of each final outcome, indexed as BUST etc., which mustn't be changed
+     */
+    public double[] distribution(int[] deck, int upcard) {
+        return this.distribution(deck.clone(), Arrays.stream(deck).sum(), rankValues[upcard],
+                upcard == Rank.ACE.ordinal(), 1);
+    }
+
+    /**
+     * Returns the probability of each of the dealer's final outcomes, from the
+     * input dealer hand which isn't final and the input deck.
+     *
+     * @param deck the number of cards of each rank in the deck, which is restored before returning
+     * @param deckSize the number of cards in the deck
+     * @param hard the hard total of the dealer's hand
+     * @param ace whether the dealer's hand has an ace
+     * @param numCards the number of cards in the dealer's hand
+     * @return the probability of each final outcome, indexed as BUST etc., which mustn't be changed
+     */
+    public double[] distribution(int[] deck, int deckSize, int hard, boolean ace, int numCards) {
+        long key = PositionKey.mix(PositionKey.valueBits(deck) | (long) hard << 53 | (ace ? 1L : 0L) << 58
+                | (numCards >= 2 ? 1L : 0L) << 59);
+        int slot = (int) key & (MEMO_SLOTS - 1);
+        Entry memoized = this.memo.get(slot);
+        if (memoized != null && memoized.key() == key) {
+            this.numHits.increment();
+            return memoized.outcomes();
+        }
+        this.numMisses.increment();
+
+        double[] outcomes = new double[NUM_OUTCOMES];
+        for (int rank = 0; rank < numRanks; rank++) {
+            if (deck[rank] == 0) {
+                continue;
+            }
+            double probability = (double) deck[rank] / deckSize;
+            int nextHard = hard + rankValues[rank];
+            boolean nextAce = ace || rank == Rank.ACE.ordinal();
+            if (isFinal(nextHard, nextAce)) {
+                outcomes[outcome(nextHard, nextAce, numCards + 1)] += probability;
+            } else {
+                deck[rank]--;
+                double[] nextOutcomes = this.distribution(deck, deckSize - 1, nextHard, nextAce, numCards + 1);
+                deck[rank]++;
+                for (int outcome = 0; outcome < NUM_OUTCOMES; outcome++) {
+                    outcomes[outcome] += probability * nextOutcomes[outcome];
+                }
+            }
+        }
+
+        Entry evicted = this.memo.getAndSet(slot, new Entry(key, outcomes));
+        if (evicted == null) {
+            this.numEntries.increment();
+        } else if (evicted.key() != key) {
+            this.numEvictions.increment();
+        }
+        return outcomes;
+    }
+
+    /**
+     * Returns the exact expected earnings of the input player's hands on the
+     * input table, all of which must be final, over the dealer's final outcomes.
+     * If every hand has busted or surrendered, no outcome of the dealer's can
+     * change the earnings, so the dealer's draws aren't expanded at all.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @param playerNumber the number of the player whose hands are all final
+     * @return the expected earnings of the player's hands
+     */
+    public double expectedEarnings(Table table, int playerNumber) {
+        double lostEarnings = 0.0;
+        for (PlayerHand playerHand: table.getHandList(playerNumber)) {
+            if (playerHand.surrendered()) {
+                lostEarnings -= playerHand.getBet() / 2.0;
+            } else if (playerHand.isBust()) {
+                lostEarnings -= playerHand.getBet();
+            } else {
+                lostEarnings = Double.NaN;
+                break;
+            }
+        }
+        if (!Double.isNaN(lostEarnings)) {
+            return lostEarnings;
+        }
+
+        double[] outcomes = this.distribution(table);
+        double earnings = 0.0;
+        for (PlayerHand playerHand: table.getHandList(playerNumber)) {
+            earnings += expectedEarnings(outcomes, playerHand.bestValue(), playerHand.isBlackJack(),
+                    playerHand.getBet(), playerHand.surrendered());
+        }
+        return earnings;
+    }
+
+    /**
+     * Returns the expected earnings of a final player hand against the input
+     * distribution over the dealer's final outcomes: the dot product of the
+     * distribution with the hand's earnings against each outcome.
+     *
+     * @param outcomes the probability of each final outcome
+     * @param bestValue the best value of the player's hand
+     * @param blackJack whether the player's hand is a Blackjack
+     * @param bet the bet on the player's hand
+     * @param surrendered whether the player's hand was surrendered
+     * @return the expected earnings of the player's hand
+     */
+    public static double expectedEarnings(double[] outcomes, int bestValue, boolean blackJack,
+                                          double bet, boolean surrendered) {
+        double earnings = 0.0;
+        for (int outcome = 0; outcome < NUM_OUTCOMES; outcome++) {
+            if (outcomes[outcome] > 0.0) {
+                earnings += outcomes[outcome] * earningsAgainst(outcome, bestValue, blackJack, bet, surrendered);
+            }
+        }
+        return earnings;
+    }
+
+    /**
+     * Returns the earnings of a final player hand against the input dealer
+     * outcome, following Table.calculateEarnings().
+     *
+     * @param outcome the index of a final dealer outcome
+     * @param bestValue the best value of the player's hand
+     * @param blackJack whether the player's hand is a Blackjack
+     * @param bet the bet on the player's hand
+     * @param surrendered whether the player's hand was surrendered
+     * @return the earnings of the player's hand
+     */
+    public static double earningsAgainst(int outcome, int bestValue, boolean blackJack, double bet, boolean surrendered) {
+        boolean dealerBlackJack = (outcome == BLACKJACK);
+        if (surrendered) {
+            return -bet / 2.0;
+        } else if (blackJack) {
+            return dealerBlackJack ? 0.0 : 1.5 * bet;
+        } else if (dealerBlackJack || bestValue > 21) {
+            return -bet;
+        } else if (outcome == BUST) {
+            return bet;
+        }
+        return Integer.signum(bestValue - (outcome + 17)) * bet;
+    }
+
+    /**
+     * Returns whether the dealer stops drawing with the input hand.
+     *
+     * @param hard the hard total of the dealer's hand
+     * @param ace whether the dealer's hand has an ace
+     * @return true iff the dealer stops drawing
+     */
+    public static boolean isFinal(int hard, boolean ace) {
+        if (hard > 21) {
+            return true;
+        }
+        boolean soft = ace && hard + 10 <= 21;
+        return soft ? hard + 10 > 17 : hard >= 17;
+    }
+
+    /**
+     * Returns the outcome of the input final dealer hand.
+     *
+     * @param hard the hard total of the dealer's hand
+     * @param ace whether the dealer's hand has an ace
+     * @param numCards the number of cards in the dealer's hand
+     * @return the index of the outcome
+     */
+    public static int outcome(int hard, boolean ace, int numCards) {
+        if (hard > 21) {
+            return BUST;
+        }
+        int best = (ace && hard + 10 <= 21) ? hard + 10 : hard;
+        if (numCards == 2 && best == 21 && ace) {
+            return BLACKJACK;
+        }
+        return best - 17;
+    }
+
+    /**
+     * Returns a snapshot of the memo's statistics, which may be slightly out
+     * of date while other threads are solving.
+     *
+     * @return the memo's statistics
+     */
+    public Stats stats() {
+        return new Stats(this.numEntries.sum(), MEMO_SLOTS, this.numHits.sum(), this.numMisses.sum(),
+                this.numEvictions.sum());
+    }
+
+}
@@ -0,0 +1,155 @@
+import java.util.Arrays;
+
+/**
+ * A batch of decision queries, each asking what a strategy would do with
+ * one hand on one table.
+ *
+ * Alongside each query's table and hand, the batch stores what basic
+ * strategy needs to know about the hand in primitive arrays: the dealer's
+ * upcard, the pair rank, the hard total, whether there's an ace, and the
+ * number of cards. Chart strategies can answer a whole batch from those
+ * arrays in a tight loop, while other strategies still have the full
+ * table and hand for each query.
+ */
+public class DecisionBatch {
+
+    /**
+     * The number of queries the batch holds room for before it first grows.
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The number of queries in the batch.
+     */
+    private int size;
+
+    /**
+     * The table and hand of each query.
+     */
+    private Table[] tables;
+    private PlayerHand[] hands;
+
+    /**
+     * The ordinal of the rank of the dealer's upcard in each query.
+     */
+    private byte[] upcards;
+
+    /**
+     * The ordinal of the rank of each query's hand if it's a pair, otherwise -1.
+     */
+    private byte[] pairRanks;
+
+    /**
+     * The hard total of each query's hand.
+     */
+    private byte[] hardTotals;
+
+    /**
+     * Whether each query's hand contains at least one ace.
+     */
+    private boolean[] containsAces;
+
+    /**
+     * The number of cards in each query's hand.
+     */
+    private byte[] numCards;
+
+    /**
+     * Constructs an empty batch.
+     */
+    public DecisionBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty batch with room for the input number of queries.
+     *
+     * @param capacity the number of queries to hold room for
+     */
+    public DecisionBatch(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.tables = new Table[capacity];
+        this.hands = new PlayerHand[capacity];
+        this.upcards = new byte[capacity];
+        this.pairRanks = new byte[capacity];
+        this.hardTotals = new byte[capacity];
+        this.containsAces = new boolean[capacity];
+        this.numCards = new byte[capacity];
+    }
+
+    /**
+     * Adds a query asking for the decision on the input hand on the input table.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @param hand the hand being played
+     * @return the index of the query within the batch
+     */
+    public int add(Table table, PlayerHand hand) {
+        if (this.size == this.tables.length) {
+            this.grow();
+        }
+        int hardTotal = 0;
+        boolean containsAce = false;
+        for (Card card: hand.getCards()) {
+            hardTotal += card.hardValue();
+            containsAce |= card.isAce();
+        }
+
+        int idx = this.size++;
+        this.tables[idx] = table;
+        this.hands[idx] = hand;
+        this.upcards[idx] = (byte) table.getDealerHand().getCards().get(0).getRank().ordinal();
+        this.pairRanks[idx] = (byte) (hand.isPair() ? hand.getCards().get(0).getRank().ordinal() : -1);
+        this.hardTotals[idx] = (byte) Math.min(hardTotal, Byte.MAX_VALUE);
+        this.containsAces[idx] = containsAce;
+        this.numCards[idx] = (byte) Math.min(hand.handSize(), Byte.MAX_VALUE);
+        return idx;
+    }
+
+    /**
+     * Doubles the room in the batch.
+     */
+    private void grow() {
+        int capacity = 2 * this.tables.length;
+        this.tables = Arrays.copyOf(this.tables, capacity);
+        this.hands = Arrays.copyOf(this.hands, capacity);
+        this.upcards = Arrays.copyOf(this.upcards, capacity);
+        this.pairRanks = Arrays.copyOf(this.pairRanks, capacity);
+        this.hardTotals = Arrays.copyOf(this.hardTotals, capacity);
+        this.containsAces = Arrays.copyOf(this.containsAces, capacity);
+        this.numCards = Arrays.copyOf(this.numCards, capacity);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public Table getTable(int idx) {
+        return this.tables[idx];
+    }
+
+    public PlayerHand getHand(int idx) {
+        return this.hands[idx];
+    }
+
+    public int getUpcard(int idx) {
+        return this.upcards[idx];
+    }
+
+    public int getPairRank(int idx) {
+        return this.pairRanks[idx];
+    }
+
+    public int getHardTotal(int idx) {
+        return this.hardTotals[idx];
+    }
+
+    public boolean containsAce(int idx) {
+        return this.containsAces[idx];
+    }
+
+    public int getNumCards(int idx) {
+        return this.numCards[idx];
+    }
+
+}
@@ -0,0 +1,207 @@
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A basic strategy chart compiled into dense arrays of decisions, so that
+ * looking up a decision costs one or two array reads.
+ *
+ * Each table is indexed by the ordinal of the dealer's upcard rank and either
+ * the player's pair rank or the player's total. Chart cells such as
+ * "DOUBLE/HIT", whose decision depends on whether the hand still has two cards,
+ * are resolved when the chart is compiled into a two-card table and a
+ * multi-card table.
+ *
+ * A chart is also a strategy in its own right, which plays every hand
+ * by the chart against the dealer's upcard.
+ */
+public class DecisionChart implements IPlayerStrategy {
+
+    /**
+     * The number of card ranks, and so the number of upcards and pair ranks.
+     */
+    private static final int numRanks = Rank.values().length;
+
+    /**
+     * The number of totals in each row of the soft and hard tables, from 0 to 21.
+     */
+    private static final int numTotals = 22;
+
+    /**
+     * Marks a cell which the chart doesn't hold.
+     */
+    private static final byte NO_DECISION = -1;
+
+    /**
+     * The decisions, indexed by the values stored in the tables.
+     */
+    private static final Decision[] decisions = Decision.values();
+
+    /**
+     * The decision on a pair, indexed by upcard * numRanks + pair rank.
+     */
+    private final byte[] pairTable;
+
+    /**
+     * The decision on a soft hand of two cards, and of more than two cards,
+     * indexed by upcard * numTotals + soft total.
+     */
+    private final byte[] softTwoCardTable, softMultiCardTable;
+
+    /**
+     * The decision on a hard hand of two cards, and of more than two cards,
+     * indexed by upcard * numTotals + hard total.
+     */
+    private final byte[] hardTwoCardTable, hardMultiCardTable;
+
+    /**
+     * Compiles a chart from the input tables of decisions, in the format
+     * parsed from the Wikipedia csv files by WikiStrategy.
+     *
+     * @param pairMap the decision on each pair, by upcard and then by pair rank
+     * @param softMap the decision on each soft hand, by upcard and then by soft total minus 11
+     * @param hardMap the decision on each hard hand, by upcard and then by hard total
+     */
+    public DecisionChart(Map<Rank, Map<Rank, String>> pairMap,
+                         Map<Rank, Map<Integer, String>> softMap,
+                         Map<Rank, Map<Integer, String>> hardMap) {
+        this.pairTable = emptyTable(numRanks);
+        this.softTwoCardTable = emptyTable(numTotals);
+        this.softMultiCardTable = emptyTable(numTotals);
+        this.hardTwoCardTable = emptyTable(numTotals);
+        this.hardMultiCardTable = emptyTable(numTotals);
+
+        for (Map.Entry<Rank, Map<Rank, String>> column: pairMap.entrySet()) {
+            for (Map.Entry<Rank, String> cell: column.getValue().entrySet()) {
+                // A pair always has two cards.
+                this.pairTable[column.getKey().ordinal() * numRanks + cell.getKey().ordinal()] = compileCell(cell.getValue(), true);
+            }
+        }
+        for (Map.Entry<Rank, Map<Integer, String>> column: softMap.entrySet()) {
+            for (Map.Entry<Integer, String> cell: column.getValue().entrySet()) {
+                int idx = column.getKey().ordinal() * numTotals + cell.getKey() + 11;
+                this.softTwoCardTable[idx] = compileCell(cell.getValue(), true);
+                this.softMultiCardTable[idx] = compileCell(cell.getValue(), false);
+            }
+        }
+        for (Map.Entry<Rank, Map<Integer, String>> column: hardMap.entrySet()) {
+            for (Map.Entry<Integer, String> cell: column.getValue().entrySet()) {
+                int idx = column.getKey().ordinal() * numTotals + cell.getKey();
+                this.hardTwoCardTable[idx] = compileCell(cell.getValue(), true);
+                this.hardMultiCardTable[idx] = compileCell(cell.getValue(), false);
+            }
+        }
+    }
+
+    /**
+     * Returns the decision which the chart gives for the input hand
+     * against the dealer's upcard on the input table.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @param handInPlay the hand being played
+     * @return the decision which the chart gives for the hand
+     * @throws IllegalStateException if the chart has no decision for the hand
+     */
+    @Override
+    public Decision getDecision(Table table, PlayerHand handInPlay) {
+        return this.getDecision(table.getDealerHand().getCards().get(0).getRank(), handInPlay);
+    }
+
+    /**
+     * Returns the decision which the chart gives for the input hand against the input upcard.
+     *
+     * @param upcard the rank of the dealer's upcard
+     * @param hand the hand being played
+     * @return the decision which the chart gives for the hand
+     * @throws IllegalStateException if the chart has no decision for the hand
+     */
+    public Decision getDecision(Rank upcard, PlayerHand hand) {
+        // Compute everything the lookup needs in a single pass over the cards.
+        int hardTotal = 0;
+        boolean containsAce = false;
+        for (Card card: hand.getCards()) {
+            hardTotal += card.hardValue();
+            containsAce |= card.isAce();
+        }
+        int pairRank = hand.isPair() ? hand.getCards().get(0).getRank().ordinal() : -1;
+        return this.getDecision(upcard.ordinal(), pairRank, hardTotal, containsAce, hand.handSize());
+    }
+
+    /**
+     * Returns the decision which the chart gives for a hand described by the
+     * input primitives against the input upcard.
+     *
+     * @param upcard the ordinal of the rank of the dealer's upcard
+     * @param pairRank the ordinal of the rank of the hand's cards if the hand is a pair, otherwise -1
+     * @param hardTotal the hard total of the hand
+     * @param containsAce whether the hand contains at least one ace
+     * @param numCards the number of cards in the hand
+     * @return the decision which the chart gives for the hand
+     * @throws IllegalStateException if the chart has no decision for the hand
+     */
+    public Decision getDecision(int upcard, int pairRank, int hardTotal, boolean containsAce, int numCards) {
+        byte decision;
+        if (pairRank >= 0) {
+            decision = this.pairTable[upcard * numRanks + pairRank];
+        } else if (containsAce && hardTotal + 10 <= 21) {
+            byte[] softTable = (numCards == 2) ? this.softTwoCardTable : this.softMultiCardTable;
+            decision = softTable[upcard * numTotals + hardTotal + 10];
+        } else {
+            byte[] hardTable = (numCards == 2) ? this.hardTwoCardTable : this.hardMultiCardTable;
+            decision = (hardTotal < numTotals) ? hardTable[upcard * numTotals + hardTotal] : NO_DECISION;
+        }
+        if (decision == NO_DECISION) {
+            throw new IllegalStateException("The chart has no decision for a hand with hard total " + hardTotal
+                    + " against upcard " + Rank.values()[upcard]);
+        }
+        return decisions[decision];
+    }
+
+    /**
+     * Fills in the decision which the chart gives for every query in the input batch.
+     *
+     * @param batch the queries to answer
+     * @param decisions the array to fill, which must hold at least batch.size() decisions
+     * @throws IllegalStateException if the chart has no decision for one of the hands
+     */
+    @Override
+    public void getDecisions(DecisionBatch batch, Decision[] decisions) {
+        for (int i = 0; i < batch.size(); i++) {
+            decisions[i] = this.getDecision(batch.getUpcard(i), batch.getPairRank(i), batch.getHardTotal(i),
+                    batch.containsAce(i), batch.getNumCards(i));
+        }
+    }
+
+    /**
+     * Returns a table of the input row width for every upcard with no decisions in it.
+     *
+     * @param rowWidth the number of cells for each upcard
+     * @return a table with no decisions in it
+     */
+    private static byte[] emptyTable(int rowWidth) {
+        byte[] table = new byte[numRanks * rowWidth];
+        Arrays.fill(table, NO_DECISION);
+        return table;
+    }
+
+    /**
+     * Compiles a chart cell, such as "HIT" or "DOUBLE/HIT", to the decision
+     * it gives for a hand of two cards or of more than two cards.
+     *
+     * @param cell the text of a chart cell
+     * @param twoCards whether the hand has exactly two cards
+     * @return the ordinal of the decision the cell gives
+     */
+    private static byte compileCell(String cell, boolean twoCards) {
+        int slashIdx = cell.indexOf('/');
+        if (slashIdx >= 0) {
+            cell = twoCards ? cell.substring(0, slashIdx) : cell.substring(slashIdx + 1);
+        }
+        return (byte) Decision.valueOf(cell).ordinal();
+    }
+
+    @Override
+    public String toString() {
+        return "Chart";
+    }
+
+}
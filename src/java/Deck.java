@@ -1,20 +1,49 @@
 import java.util.*;
 
 /**
- * Represents the standard 52-card deck.
+ * Represents the standard 52-card deck, or a shoe of several of them.
+ *
+ * The deck keeps a running Hi-Lo count of every card taken out of it,
+ * updated in constant time on each draw, so the count never has to be
+ * recomputed from the cards that remain.
  */
 public class Deck {
 
+    /**
+     * The number of cards in one standard deck.
+     */
+    public static final int CARDS_PER_DECK = 52;
+
+    /**
+     * The Hi-Lo tag of each rank, indexed by ordinal: +1 for 2-6, 0 for 7-9,
+     * and -1 for tens and aces.
+     */
+    private static final int[] hiLoTags = {-1, 1, 1, 1, 1, 1, 0, 0, 0, -1, -1, -1, -1};
+
     /**
      * Holds the cards in the deck.
      */
     private final List<Card> cards;
 
+    /**
+     * The number of standard decks the deck started with.
+     */
+    private final int numDecks;
+
+    /**
+     * The sum of the Hi-Lo tags of every card taken out of the deck so far.
+     */
+    private int runningCount;
+
     /**
      * A private constructor only for use within this class.
+     *
+     * @param numDecks the number of standard decks the deck starts with
      */
-    private Deck() {
+    private Deck(int numDecks) {
         this.cards = new LinkedList<>();
+        this.numDecks = numDecks;
+        this.runningCount = 0;
     }
 
     /**
@@ -23,21 +52,72 @@ public class Deck {
      * @return a shuffled deck
      */
     public static Deck shuffledDeck() {
-        Deck deck = sortedDeck();
+        Deck deck = sortedDeck(1);
         deck.shuffle();
         return deck;
     }
 
     /**
-     * Returns a sorted deck of the 52 cards.
+     * Returns a deck of the 52 cards shuffled with the input random
+     * number generator, so the same generator state gives the same deck.
+     *
+     * @param random the source of randomness for the shuffle
+     * @return a shuffled deck
+     */
+    public static Deck shuffledDeck(Random random) {
+        return shuffledShoe(1, random);
+    }
+
+    /**
+     * Returns a shoe of the input number of standard decks, shuffled together
+     * with the input random number generator.
+     *
+     * @param numDecks the number of standard decks in the shoe
+     * @param random the source of randomness for the shuffle
+     * @return a shuffled shoe
+     */
+    public static Deck shuffledShoe(int numDecks, Random random) {
+        Deck deck = sortedDeck(numDecks);
+        Collections.shuffle(deck.cards, random);
+        return deck;
+    }
+
+    /**
+     * Returns a sorted deck holding the input number of cards of each rank, as
+     * what remains of a shoe of the input number of standard decks. The running
+     * count reflects every card missing from the full shoe, as if each had
+     * been drawn.
      *
-     * @return a sorted deck
+     * @param numDecks the number of standard decks the shoe started with
+     * @param rankCounts the number of cards of each rank, indexed by the rank's ordinal
+     * @return a sorted deck with the input composition
      */
-    private static Deck sortedDeck() {
-        Deck deck = new Deck();
-        for (Suit suit: Suit.values()) {
-            for (Rank rank: Rank.values()) {
-                deck.cards.add(new Card(suit, rank));
+    public static Deck withComposition(int numDecks, int[] rankCounts) {
+        Deck deck = new Deck(numDecks);
+        Suit[] suits = Suit.values();
+        for (Rank rank: Rank.values()) {
+            int count = rankCounts[rank.ordinal()];
+            for (int i = 0; i < count; i++) {
+                deck.cards.add(new Card(suits[i % suits.length], rank));
+            }
+            deck.runningCount += (4 * numDecks - count) * hiLoTags[rank.ordinal()];
+        }
+        return deck;
+    }
+
+    /**
+     * Returns a sorted shoe of the input number of standard decks.
+     *
+     * @param numDecks the number of standard decks in the shoe
+     * @return a sorted shoe
+     */
+    private static Deck sortedDeck(int numDecks) {
+        Deck deck = new Deck(numDecks);
+        for (int i = 0; i < numDecks; i++) {
+            for (Suit suit: Suit.values()) {
+                for (Rank rank: Rank.values()) {
+                    deck.cards.add(new Card(suit, rank));
+                }
             }
         }
         return deck;
@@ -49,10 +129,11 @@ public class Deck {
      * @return a deep copy of this deck
      */
     public Deck copy() {
-        Deck deckCopy = new Deck();
+        Deck deckCopy = new Deck(this.numDecks);
         for (Card card: this.cards) {
             deckCopy.cards.add(card.copy());
         }
+        deckCopy.runningCount = this.runningCount;
         return deckCopy;
     }
 
@@ -75,7 +156,9 @@ public class Deck {
      * @return the card that was drawn
      */
     public Card draw() {
-        return cards.remove(0);
+        Card card = cards.remove(0);
+        this.runningCount += hiLoTags[card.getRank().ordinal()];
+        return card;
     }
 
     /**
@@ -93,7 +176,10 @@ public class Deck {
                 break;
             }
         }
-        this.cards.remove(toRemove);
+        if (toRemove != null) {
+            this.cards.remove(toRemove);
+            this.runningCount += hiLoTags[rank.ordinal()];
+        }
         return toRemove;
     }
 
@@ -111,6 +197,60 @@ public class Deck {
         }
     }
 
+    /**
+     * Returns the number of cards remaining in the deck.
+     *
+     * @return the number of cards remaining in the deck
+     */
+    public int size() {
+        return this.cards.size();
+    }
+
+    /**
+     * Returns the number of cards of each rank remaining in the deck.
+     *
+     * @return the number of cards of each rank, indexed by the rank's ordinal
+     */
+    public int[] rankCounts() {
+        int[] rankCounts = new int[Rank.values().length];
+        for (Card card: this.cards) {
+            rankCounts[card.getRank().ordinal()]++;
+        }
+        return rankCounts;
+    }
+
+    /**
+     * Returns the number of standard decks the deck started with.
+     *
+     * @return the number of standard decks the deck started with
+     */
+    public int getNumDecks() {
+        return this.numDecks;
+    }
+
+    /**
+     * Returns the Hi-Lo running count: the sum of the tags of every card taken
+     * out of the deck so far. A positive count means the remaining cards are
+     * rich in tens and aces.
+     *
+     * @return the Hi-Lo running count
+     */
+    public int getRunningCount() {
+        return this.runningCount;
+    }
+
+    /**
+     * Returns the Hi-Lo true count: the running count per deck remaining.
+     *
+     * @return the Hi-Lo true count
+     */
+    public double getTrueCount() {
+        if (this.cards.isEmpty()) {
+            return this.runningCount;
+        }
+        return this.runningCount * (double) CARDS_PER_DECK / this.cards.size();
+    }
+
     /**
      * Shuffles the deck's cards into a random order.
      */
@@ -118,6 +258,17 @@ public class Deck {
         Collections.shuffle(this.cards);
     }
 
+    /**
+     * Shuffles the cards remaining in the deck into a random order with the
+     * input random number generator. The running count doesn't change, since
+     * no cards leave the deck.
+     *
+     * @param random the source of randomness for the shuffle
+     */
+    public void shuffle(Random random) {
+        Collections.shuffle(this.cards, random);
+    }
+
     @Override
     public String toString() {
         return this.cards.toString();
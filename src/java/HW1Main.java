@@ -1,4 +1,5 @@
 import java.io.IOException;
+import java.util.List;
 
 public class HW1Main extends CSVParser {
 
@@ -10,6 +11,11 @@ public class HW1Main extends CSVParser {
 
     private static final String outputCSVFile = "HW1output.csv";
 
+    @Override
+    protected List<String> getOutputCSVLines(List<String> inputCSVLines) {
+        return getDecisionCSVLines(inputCSVLines, numOtherPlayers, NaiveStrategy.singleton());
+    }
+
     @Override
     protected String getOutputCSVLine(String inputCSVLine) {
         Table table = new Table(inputCSVLine, numOtherPlayers);
@@ -20,7 +26,7 @@ public class HW1Main extends CSVParser {
 
     public static void main(String[] args) throws IOException {
         HW1Main parser = new HW1Main();
-        parser.computeResults(inputCSVFile, containsComments, outputCSVFile);
+        parser.computeBatchResults(inputCSVFile, containsComments, outputCSVFile);
     }
 
 }
@@ -1,4 +1,5 @@
 import java.io.IOException;
+import java.util.List;
 
 public class HW2Main extends CSVParser {
 
@@ -10,6 +11,11 @@ public class HW2Main extends CSVParser {
 
     private static final String outputCSVFile = "HW2output.csv";
 
+    @Override
+    protected List<String> getOutputCSVLines(List<String> inputCSVLines) {
+        return getDecisionCSVLines(inputCSVLines, numOtherPlayers, WikiStrategy.singleton());
+    }
+
     @Override
     protected String getOutputCSVLine(String inputCSVLine) {
         Table table = new Table(inputCSVLine, numOtherPlayers);
@@ -20,7 +26,7 @@ public class HW2Main extends CSVParser {
 
     public static void main(String[] args) throws IOException {
         HW2Main parser = new HW2Main();
-        parser.computeResults(inputCSVFile, containsComments, outputCSVFile);
+        parser.computeBatchResults(inputCSVFile, containsComments, outputCSVFile);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+import java.util.List;
+
+/**
+ * Prints the exact expected earnings per hand of each strategy over every
+ * deal from a full deck, the quantity HW3Main estimates by simulation.
+ */
+public class HW3ExactMain {
+
+    private static final List<IPlayerStrategy> playerStrategies = List.of(NaiveStrategy.singleton(), WikiStrategy.singleton());
+
+    public static void main(String[] args) {
+        for (IPlayerStrategy playerStrategy: playerStrategies) {
+            PolicyEvaluator evaluator = new PolicyEvaluator(playerStrategy);
+            long startTime = System.currentTimeMillis();
+            double expectedEarnings = evaluator.expectedEarnings();
+            long elapsedMillis = System.currentTimeMillis() - startTime;
+
+            System.out.println(playerStrategy.toString());
+            System.out.println("Expected earnings per hand: " + expectedEarnings);
+            System.out.println("Solved " + evaluator.numPositionsSolved() + " positions in " + elapsedMillis + " ms");
+            System.out.println();
+        }
+    }
+}
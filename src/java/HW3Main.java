@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -10,8 +12,22 @@ public class HW3Main {
 
     private static final int numTrials = 100_000_000;
 
-    public static void main(String[] args) {
-        Map<IPlayerStrategy, MetricRecorder> metricMap = MetricComputer.computeMetrics(playerStrategies, tableSupplier, numTrials);
+    /**
+     * Runs the trials and prints the metrics of each strategy. If a file path
+     * is given as the first argument, every trial's results are also exported
+     * to that file in the columnar format of ColumnarResultWriter.
+     *
+     * @param args optionally, the path of the file to export every trial's results to
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        HandResultPublisher publisher = new HandResultPublisher();
+        ColumnarResultWriter exporter = null;
+        if (args.length > 0) {
+            exporter = new ColumnarResultWriter(Path.of(args[0]), playerStrategies, ColumnarResultWriter.DEFAULT_ROWS_PER_BLOCK);
+            publisher.subscribe(exporter);
+        }
+
+        Map<IPlayerStrategy, MetricRecorder> metricMap = MetricComputer.computeMetrics(playerStrategies, tableSupplier, numTrials, publisher);
 
         // Print out the metrics for each strategy.
         for (IPlayerStrategy playerStrategy: playerStrategies) {
@@ -19,5 +35,9 @@ public class HW3Main {
             System.out.println(metricMap.get(playerStrategy));
             System.out.println();
         }
+
+        if (exporter != null) {
+            exporter.awaitCompletion();
+        }
     }
-}
\ No newline at end of file
+}
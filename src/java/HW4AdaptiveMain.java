@@ -0,0 +1,71 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes the same results as HW4Main, but under a total budget of trials
+ * which is spent adaptively across the lines rather than evenly.
+ */
+public class HW4AdaptiveMain extends CSVParser {
+
+    private static final String inputCSVFile = "HW4input.csv";
+
+    private static final boolean containsComments = true;
+
+    private static final int numOtherPlayers = 4;
+
+    private static final String outputCSVFile = "HW4adaptive_output.csv";
+
+    private static final List<IPlayerStrategy> playerStrategies = List.of(NaiveStrategy.singleton(), WikiStrategy.singleton());
+
+    private static final long trialBudget = 50_000_000L;
+
+    private static final long lineTrialBudget = 1_000_000L;
+
+    private static final double targetPrecision = 0.001;
+
+    private static final int pilotTrials = 20_000;
+
+    private static final int chunkTrials = 20_000;
+
+    private static final int roundToDecimalPlaces = 5;
+
+    @Override
+    protected List<String> getOutputCSVLines(List<String> inputCSVLines) {
+        return this.getOutputCSVLines(inputCSVLines, trialBudget);
+    }
+
+    /**
+     * Processes a single line under a budget of its own, the same number of
+     * trials HW4Main gives each line, rather than under the whole batch's budget.
+     */
+    @Override
+    protected String getOutputCSVLine(String inputCSVLine) {
+        return this.getOutputCSVLines(List.of(inputCSVLine), lineTrialBudget).get(0);
+    }
+
+    /**
+     * Processes all of the input CSV lines, spending the input budget of trials across them.
+     *
+     * @param inputCSVLines the lines of CSV containing card unicodes, in file order
+     * @param budget the total number of trials to spend across all of the lines
+     * @return the output lines of CSV, in the order of the input lines
+     */
+    private List<String> getOutputCSVLines(List<String> inputCSVLines, long budget) {
+        AdaptiveBatchSimulator simulator = new AdaptiveBatchSimulator(playerStrategies, numOtherPlayers,
+                budget, targetPrecision, pilotTrials, chunkTrials);
+        List<String> outputCSVLines = new ArrayList<>(inputCSVLines.size());
+        for (AdaptiveBatchSimulator.LineEstimate estimate: simulator.run(inputCSVLines)) {
+            System.out.println(estimate.getNumTrials() + " trials: " + estimate.getInputCSVLine());
+            double naiveAvgEarnings = round(estimate.getMean(0), roundToDecimalPlaces);
+            double wikiAvgEarnings = round(estimate.getMean(1), roundToDecimalPlaces);
+            outputCSVLines.add(naiveAvgEarnings + "," + wikiAvgEarnings + "," + estimate.getInputCSVLine().substring(2));
+        }
+        return outputCSVLines;
+    }
+
+    public static void main(String[] args) throws IOException {
+        HW4AdaptiveMain parser = new HW4AdaptiveMain();
+        parser.computeBatchResults(inputCSVFile, containsComments, outputCSVFile);
+    }
+}
@@ -0,0 +1,34 @@
+import java.io.IOException;
+
+/**
+ * Writes the same lines as HW4Main, but with each strategy's exact expected
+ * earnings on the line in place of the average over simulated trials.
+ */
+public class HW4ExactMain extends CSVParser {
+
+    private static final String inputCSVFile = "HW4input.csv";
+
+    private static final boolean containsComments = true;
+
+    private static final int numOtherPlayers = 4;
+
+    private static final String outputCSVFile = "HW4exact_output.csv";
+
+    private static final int roundToDecimalPlaces = 5;
+
+    private final PolicyEvaluator naiveEvaluator = new PolicyEvaluator(NaiveStrategy.singleton());
+
+    private final PolicyEvaluator wikiEvaluator = new PolicyEvaluator(WikiStrategy.singleton());
+
+    @Override
+    protected String getOutputCSVLine(String inputCSVLine) {
+        double naiveEarnings = round(this.naiveEvaluator.expectedEarnings(inputCSVLine, numOtherPlayers), roundToDecimalPlaces);
+        double wikiEarnings = round(this.wikiEvaluator.expectedEarnings(inputCSVLine, numOtherPlayers), roundToDecimalPlaces);
+        return naiveEarnings + "," + wikiEarnings + "," + inputCSVLine.substring(2);
+    }
+
+    public static void main(String[] args) throws IOException {
+        HW4ExactMain parser = new HW4ExactMain();
+        parser.computeBatchResults(inputCSVFile, containsComments, outputCSVFile);
+    }
+}
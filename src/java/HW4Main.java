@@ -1,6 +1,7 @@
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 public class HW4Main extends CSVParser {
 
@@ -18,9 +19,21 @@ public class HW4Main extends CSVParser {
 
     private static final int roundToDecimalPlaces = 5;
 
+    private static final long seed = 2023;
+
+    @Override
+    protected List<String> getOutputCSVLines(List<String> inputCSVLines) {
+        return this.getOutputCSVLinesInParallel(inputCSVLines, seed);
+    }
+
     @Override
     protected String getOutputCSVLine(String inputCSVLine) {
-        Map<IPlayerStrategy, MetricRecorder> metricMap = MetricComputer.computeMetrics(playerStrategies, inputCSVLine, numOtherPlayers, numTrials);
+        return this.getOutputCSVLine(inputCSVLine, new Random());
+    }
+
+    @Override
+    protected String getOutputCSVLine(String inputCSVLine, Random random) {
+        Map<IPlayerStrategy, MetricRecorder> metricMap = MetricComputer.computeMetrics(playerStrategies, inputCSVLine, numOtherPlayers, numTrials, random);
         MetricRecorder naiveMetric = metricMap.get(NaiveStrategy.singleton());
         MetricRecorder wikiMetric = metricMap.get(WikiStrategy.singleton());
         double naiveAvgEarnings = round(naiveMetric.getTotalEarnings() / numTrials, roundToDecimalPlaces);
@@ -30,6 +43,6 @@ public class HW4Main extends CSVParser {
 
     public static void main(String[] args) throws IOException {
         HW4Main parser = new HW4Main();
-        parser.computeResults(inputCSVFile, containsComments, outputCSVFile);
+        parser.computeBatchResults(inputCSVFile, containsComments, outputCSVFile);
     }
 }
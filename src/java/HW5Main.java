@@ -1,6 +1,9 @@
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 public class HW5Main extends CSVParser {
 
@@ -12,15 +15,29 @@ public class HW5Main extends CSVParser {
 
     private static final String outputCSVFile = "HW5output.csv";
 
+    private static final Path solverSnapshotFile = Path.of("HW5solver.snapshot");
+
     private static final List<IPlayerStrategy> playerStrategies = List.of(IdealStrategy.singleton(), WikiStrategy.singleton());
 
     private static final int numTrials = 100;
 
     private static final int roundToDecimalPlaces = 5;
 
+    private static final long seed = 2023;
+
+    @Override
+    protected List<String> getOutputCSVLines(List<String> inputCSVLines) {
+        return this.getOutputCSVLinesInParallel(inputCSVLines, seed);
+    }
+
     @Override
     protected String getOutputCSVLine(String inputCSVLine) {
-        Map<IPlayerStrategy, MetricRecorder> metricMap = MetricComputer.computeMetrics(playerStrategies, inputCSVLine, numOtherPlayers, numTrials);
+        return this.getOutputCSVLine(inputCSVLine, new Random());
+    }
+
+    @Override
+    protected String getOutputCSVLine(String inputCSVLine, Random random) {
+        Map<IPlayerStrategy, MetricRecorder> metricMap = MetricComputer.computeMetrics(playerStrategies, inputCSVLine, numOtherPlayers, numTrials, random);
         MetricRecorder idealMetric = metricMap.get(IdealStrategy.singleton());
         MetricRecorder wikiMetric = metricMap.get(WikiStrategy.singleton());
         double idealAvgEarnings = round(idealMetric.getTotalEarnings() / numTrials, roundToDecimalPlaces);
@@ -29,8 +46,26 @@ public class HW5Main extends CSVParser {
     }
 
     public static void main(String[] args) throws IOException {
+        if (Files.exists(solverSnapshotFile)) {
+            try {
+                long numLoaded = IdealStrategy.singleton().loadSnapshot(solverSnapshotFile);
+                System.out.println("Solver snapshot: loaded " + numLoaded + " positions from " + solverSnapshotFile);
+            } catch (IOException e) {
+                System.out.println("Solver snapshot: ignoring " + e.getMessage());
+            }
+        }
+
         HW5Main parser = new HW5Main();
-        parser.computeResults(inputCSVFile, containsComments, outputCSVFile);
+        parser.computeBatchResults(inputCSVFile, containsComments, outputCSVFile);
+        SolverMemo.Stats memoStats = IdealStrategy.singleton().getMemoStats();
+        System.out.println("Solver memo: " + memoStats.entries() + " of " + memoStats.capacity() + " entries in "
+                + memoStats.bytes() + " bytes, hit rate " + memoStats.hitRate() + ", "
+                + memoStats.evictions() + " evictions, " + memoStats.recomputations() + " recomputations");
+        DealerOutcomes.Stats dealerStats = DealerOutcomes.singleton().stats();
+        System.out.println("Dealer memo: " + dealerStats.entries() + " of " + dealerStats.capacity()
+                + " entries, hit rate " + dealerStats.hitRate() + ", " + dealerStats.evictions() + " evictions");
+        long numSaved = IdealStrategy.singleton().saveSnapshot(solverSnapshotFile);
+        System.out.println("Solver snapshot: saved " + numSaved + " positions to " + solverSnapshotFile);
     }
 
 }
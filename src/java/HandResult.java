@@ -0,0 +1,40 @@
+import java.util.List;
+
+/**
+ * The outcome of one strategy playing player 1's hand on one trial's table.
+ *
+ * @param trial the index of the trial in which the hand was played
+ * @param strategy the strategy that played the hand
+ * @param dealerUpcard the rank of the dealer's face-up card
+ * @param firstCard the rank of the first card of player 1's starting hand
+ * @param secondCard the rank of the second card of player 1's starting hand
+ * @param decisionCode the decisions made while playing the hand, packed as in Table.getDecisionCode()
+ * @param earnings the total earnings of player 1 over all of their split hands
+ */
+public record HandResult(long trial,
+                         IPlayerStrategy strategy,
+                         Rank dealerUpcard,
+                         Rank firstCard,
+                         Rank secondCard,
+                         long decisionCode,
+                         double earnings) {
+
+    /**
+     * Records the outcome of playing a copy of the input table, reading the
+     * starting cards from the table as it was before it was played.
+     *
+     * @param trial the index of the trial in which the hand was played
+     * @param strategy the strategy that played the hand
+     * @param startingTable the table before player 1's hand was played
+     * @param playedTable the copy of the starting table after it was played
+     * @param earnings the total earnings of player 1 over all of their split hands
+     * @return the outcome of playing the table
+     */
+    public static HandResult of(long trial, IPlayerStrategy strategy, Table startingTable, Table playedTable, double earnings) {
+        Rank dealerUpcard = startingTable.getDealerHand().getCards().get(0).getRank();
+        List<Card> startingCards = startingTable.getHandList(1).get(0).getCards();
+        return new HandResult(trial, strategy, dealerUpcard,
+                startingCards.get(0).getRank(), startingCards.get(1).getRank(), playedTable.getDecisionCode(), earnings);
+    }
+
+}
@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Publishes the per-hand results of a simulation to any number of
+ * subscribers, in batches, with backpressure.
+ *
+ * Results are grouped into batches so that the cost of handing them to
+ * the subscribers is paid once per batch rather than once per hand. When
+ * a subscriber falls behind and its buffer fills up, publishing blocks
+ * the simulation until the subscriber catches up, so a slow subscriber
+ * never causes results to be dropped.
+ *
+ * This class is meant to be fed by a single simulation thread; the
+ * subscribers are called on the publisher's executor.
+ */
+public class HandResultPublisher implements Flow.Publisher<List<HandResult>>, AutoCloseable {
+
+    /**
+     * The default number of hand results delivered to the subscribers at once.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /**
+     * Delivers the batches to the subscribers, buffering and blocking as needed.
+     */
+    private final SubmissionPublisher<List<HandResult>> publisher;
+
+    /**
+     * The number of hand results delivered to the subscribers at once.
+     */
+    private final int batchSize;
+
+    /**
+     * The hand results published since the last batch was delivered.
+     */
+    private List<HandResult> batch;
+
+    /**
+     * Constructs a publisher which delivers batches of the default size
+     * on the common fork/join pool.
+     */
+    public HandResultPublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructs a publisher.
+     *
+     * @param executor the executor on which the subscribers are called
+     * @param maxBufferCapacity the maximum number of batches buffered for each subscriber
+     *                          before publishing blocks
+     * @param batchSize the number of hand results delivered to the subscribers at once
+     */
+    public HandResultPublisher(Executor executor, int maxBufferCapacity, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+        this.publisher = new SubmissionPublisher<>(executor, maxBufferCapacity);
+        this.batchSize = batchSize;
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<HandResult>> subscriber) {
+        this.publisher.subscribe(subscriber);
+    }
+
+    /**
+     * Returns whether anyone is subscribed to the results. Producers should
+     * check this before building results so that an unobserved simulation
+     * pays nothing for the stream.
+     *
+     * @return true iff at least one subscriber is subscribed
+     */
+    public boolean hasSubscribers() {
+        return this.publisher.hasSubscribers();
+    }
+
+    /**
+     * Adds the input result to the current batch, delivering the batch to the
+     * subscribers once it is full. Blocks while any subscriber's buffer is full.
+     *
+     * @param result the outcome of one hand
+     */
+    public void publish(HandResult result) {
+        this.batch.add(result);
+        if (this.batch.size() >= this.batchSize) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Delivers the current batch to the subscribers, even if it isn't full.
+     * Blocks while any subscriber's buffer is full.
+     */
+    public void flush() {
+        if (!this.batch.isEmpty()) {
+            this.publisher.submit(this.batch);
+            this.batch = new ArrayList<>(this.batchSize);
+        }
+    }
+
+    /**
+     * Delivers any remaining results and then signals completion to every subscriber.
+     */
+    @Override
+    public void close() {
+        this.flush();
+        this.publisher.close();
+    }
+
+    /**
+     * Signals the input error to every subscriber, discarding any undelivered results.
+     *
+     * @param error the reason the simulation failed
+     */
+    public void closeExceptionally(Throwable error) {
+        this.batch = new ArrayList<>(this.batchSize);
+        this.publisher.closeExceptionally(error);
+    }
+
+}
@@ -0,0 +1,14 @@
+/**
+ * A policy for sizing the bet on the next hand from the count of the
+ * cards that have already been seen.
+ */
+public interface IBetSpreadPolicy {
+
+    /**
+     * Returns the amount to bet on the next hand, in betting units.
+     *
+     * @param trueCount the Hi-Lo true count of the shoe before the hand is dealt
+     * @return the amount to bet on the next hand
+     */
+    double getBet(double trueCount);
+}
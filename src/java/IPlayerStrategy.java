@@ -13,4 +13,17 @@ public interface IPlayerStrategy {
      * @return a decision for the player to make with their hand
      */
     Decision getDecision(Table table, PlayerHand handInPlay);
-}
+
+    /**
+     * Fills in the decision for every query in the input batch. By default,
+     * each query is answered on its own according to getDecision().
+     *
+     * @param batch the queries, each holding a table and the hand being played on it
+     * @param decisions the array to fill, which must hold at least batch.size() decisions
+     */
+    default void getDecisions(DecisionBatch batch, Decision[] decisions) {
+        for (int i = 0; i < batch.size(); i++) {
+            decisions[i] = this.getDecision(batch.getTable(i), batch.getHand(i));
+        }
+    }
+}
\ No newline at end of file
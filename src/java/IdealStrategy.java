@@ -3,14 +3,22 @@
  * for a player to play Blackjack.
  */
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.HashMultiset;
-import com.google.common.collect.Multiset;
 import com.google.common.util.concurrent.*;
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A strategy for Player 1 to make a decision with their hand(s)
@@ -18,343 +26,900 @@ import java.util.concurrent.Executors;
  */
 public class IdealStrategy implements IPlayerStrategy {
 
-    private static int numCalls = 0;
+    /**
+     * The daemon threads which run the depth-limited searches of the
+     * time-bounded getDecision(), apart from the exhaustive solver's threads
+     * so that neither can starve the other.
+     */
+    private static final ListeningExecutorService searchService = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool(searchThreadFactory()));
+
+    /**
+     * The fork/join pool which solves the positions near the root of a solve
+     * in parallel, with one worker per processor.
+     */
+    private static final ForkJoinPool solverPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The strategy which plays on from the leaves of a depth-limited search.
+     */
+    private static final IPlayerStrategy leafStrategy = WikiStrategy.singleton();
+
+    /**
+     * Computes the exact expected earnings of playing on from a leaf of a
+     * depth-limited search with the leaf strategy, remembering every position
+     * it solves across searches.
+     */
+    private static final PolicyEvaluator leafEvaluator = new PolicyEvaluator(leafStrategy);
 
-    private static final ListeningExecutorService execService = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+    /**
+     * Computes the distribution over the dealer's final outcomes once player
+     * 1's hands are all final, so that the dealer's draws aren't expanded
+     * again for every set of player hands.
+     */
+    private static final DealerOutcomes dealerOutcomes = DealerOutcomes.singleton();
+
+    /**
+     * The memory budget of the singleton's memo: 256 MB, off the heap.
+     */
+    private static final long DEFAULT_MEMO_BYTES = 256L << 20;
+
+    /**
+     * The number of moves from the root of a solve within which the singleton
+     * forks a task for every table a position leads to.
+     */
+    private static final int DEFAULT_PARALLEL_DEPTH = 2;
+
+    /**
+     * The fewest points player 1's hands in play must be able to take before
+     * busting for their position to be worth forking. Positions closer to
+     * busting have too few lines of play to repay the cost of a task.
+     */
+    private static final int MIN_POINTS_TO_FORK = 8;
 
-    private record Position(DealerHand dealerHand, List<List<PlayerHand>> playerHands) {
+    /**
+     * The best decision for the player to make on a particular position, and
+     * the expected earnings of making it.
+     *
+     * @param decision the best decision
+     * @param earnings the expected earnings of the position
+     */
+    private record DecisionAndEarnings(Decision decision, double earnings) {
+        public Decision getDecision() {
+            return decision;
+        }
 
-        public Position(Table table) {
-            this(table.getDealerHand(), table.getPlayerHands());
+        public double getEarnings() {
+            return earnings;
         }
+    }
+
+    /**
+     * The order in which decisions are considered, so that the first of
+     * several decisions with equal expected earnings is the one chosen.
+     */
+    static final List<Decision> decisionOrder = List.of(Decision.HIT, Decision.STAY, Decision.DOUBLE, Decision.SPLIT, Decision.SURRENDER);
+
+    /**
+     * The order in which the solver tries decisions so that it can prune them:
+     * the decisions whose tables are cheapest to solve first, so that the best
+     * earnings so far are high by the time the costly decisions are bounded.
+     */
+    private static final List<Decision> pruningOrder = List.of(Decision.STAY, Decision.SURRENDER, Decision.DOUBLE, Decision.HIT, Decision.SPLIT);
+
+    /**
+     * How far below the best earnings so far a decision's upper bound must be
+     * for the decision to be pruned, so that rounding in the sums that make up
+     * the earnings can never prune the best decision.
+     */
+    private static final double PRUNING_SLACK = 1e-9;
+
+    /**
+     * Computes the expected earnings of playing on from a table.
+     */
+    @FunctionalInterface
+    private interface TableEvaluator {
 
-        public Table convertToTable() {
-            Deck deck = Deck.shuffledDeck();
-            deck.removeAll(dealerHand.getCards());
-            for (List<PlayerHand> handList: playerHands) {
-                for (PlayerHand hand: handList) {
-                    deck.removeAll(hand.getCards());
+        /**
+         * Returns the expected earnings of playing on from the input table.
+         *
+         * @param table holds the deck, player hands, and dealer hand, and isn't changed
+         * @return the expected earnings of the table
+         * @throws InterruptedException if the evaluation is cancelled
+         */
+        double earnings(Table table) throws InterruptedException;
+    }
+
+    /**
+     * Visits a table that a decision can lead to.
+     */
+    @FunctionalInterface
+    private interface OutcomeVisitor {
+
+        /**
+         * Visits a table that a decision can lead to.
+         *
+         * @param probability the probability of the decision leading to the table
+         * @param outcome the table
+         * @throws InterruptedException if the visit is cancelled
+         */
+        void visit(double probability, Table outcome) throws InterruptedException;
+    }
+
+    /**
+     * The singleton instance of this class, with the default memory budget,
+     * so that every caller shares one memo.
+     */
+    private static final IdealStrategy SINGLETON = new IdealStrategy(DEFAULT_MEMO_BYTES, DEFAULT_PARALLEL_DEPTH);
+
+    /**
+     * The expected earnings and best decision of the positions solved so far,
+     * keyed by the position's canonical PositionKey, so that positions which
+     * differ only in suits, in the order of cards within hands, in the order of
+     * final split hands, or in which other players hold the missing cards are
+     * solved once. Once the memo is full, the positions cheapest to solve
+     * again are evicted.
+     */
+    private final SolverMemo memo;
+
+    /**
+     * The positions solved by an earlier run, looked up when a position isn't
+     * in the memo, or null if none were loaded.
+     */
+    private volatile SolverSnapshot snapshot;
+
+    /**
+     * The number of moves from the root of a solve within which a task is
+     * forked for every table a position leads to. Past it, and for positions
+     * too close to busting, tables are solved by recursion on one thread.
+     */
+    private final int parallelDepth;
+
+    /**
+     * How SPLIT is evaluated, and how many splits player 1 may make.
+     */
+    private final SplitMode splitMode;
+
+    /**
+     * Constructs a strategy whose memo of solved positions uses at most the
+     * input number of bytes, for running the solver with a smaller or larger
+     * memory budget than the singleton's.
+     *
+     * @param memoBytes the memory budget of the memo
+     */
+    public IdealStrategy(long memoBytes) {
+        this(memoBytes, DEFAULT_PARALLEL_DEPTH);
+    }
+
+    /**
+     * Constructs a strategy whose memo of solved positions uses at most the
+     * input number of bytes, and which solves positions in parallel within
+     * the input number of moves from the root of each solve.
+     *
+     * @param memoBytes the memory budget of the memo
+     * @param parallelDepth the number of moves within which tables are solved in parallel, or 0 to solve on one thread
+     */
+    public IdealStrategy(long memoBytes, int parallelDepth) {
+        this(memoBytes, parallelDepth, SplitMode.EXACT);
+    }
+
+    /**
+     * Constructs a strategy whose memo of solved positions uses at most the
+     * input number of bytes, which solves positions in parallel within the
+     * input number of moves from the root of each solve, and which evaluates
+     * splits in the input mode.
+     *
+     * @param memoBytes the memory budget of the memo
+     * @param parallelDepth the number of moves within which tables are solved in parallel, or 0 to solve on one thread
+     * @param splitMode how splits are evaluated
+     */
+    public IdealStrategy(long memoBytes, int parallelDepth, SplitMode splitMode) {
+        this(new SolverMemo(memoBytes), parallelDepth, splitMode);
+    }
+
+    /**
+     * Constructs a strategy which remembers the positions it solves in the
+     * input memo, such as one mapped from a file to hold more positions than
+     * fit in memory.
+     *
+     * @param memo the memo of solved positions, which mustn't be shared with a strategy of another split mode
+     * @param parallelDepth the number of moves within which tables are solved in parallel, or 0 to solve on one thread
+     * @param splitMode how splits are evaluated
+     */
+    public IdealStrategy(SolverMemo memo, int parallelDepth, SplitMode splitMode) {
+        this.memo = memo;
+        this.parallelDepth = parallelDepth;
+        this.splitMode = splitMode;
+    }
+
+    /**
+     * Returns the singleton instance of this class.
+     *
+     * @return the singleton instance of this class
+     */
+    public static IdealStrategy singleton() {
+        return IdealStrategy.SINGLETON;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the memo of solved positions.
+     *
+     * @return the memo's entries, memory, hit rate, evictions, and recomputations
+     */
+    public SolverMemo.Stats getMemoStats() {
+        return this.memo.stats();
+    }
+
+    /**
+     * Loads the positions solved by an earlier run from the input snapshot,
+     * replacing any loaded before. Only the snapshot's header is read here;
+     * its positions are paged in as they're looked up.
+     *
+     * @param path a file written by saveSnapshot()
+     * @return the number of positions in the snapshot
+     * @throws IOException if the snapshot can't be read, is corrupted, or was
+     *           solved under other rules or another split mode
+     */
+    public long loadSnapshot(Path path) throws IOException {
+        SolverSnapshot loaded = new SolverSnapshot(path, this.rulesFingerprint());
+        this.snapshot = loaded;
+        return loaded.size();
+    }
+
+    /**
+     * Saves the positions solved so far, including those of any loaded
+     * snapshot, to the input file, so that a later run can load them.
+     *
+     * @param path the file to write, which is replaced if it exists
+     * @return the number of positions saved
+     * @throws IOException if the snapshot can't be written
+     */
+    public long saveSnapshot(Path path) throws IOException {
+        return SolverSnapshot.write(path, this.rulesFingerprint(), this.memo, this.snapshot);
+    }
+
+    /**
+     * Returns how this strategy evaluates splits, including the error it
+     * assumes in the expected earnings of a split.
+     *
+     * @return the split mode
+     */
+    public SplitMode getSplitMode() {
+        return this.splitMode;
+    }
+
+    /**
+     * Returns the expected earnings of the table for player 1 when making the
+     * best decisions from here on, solving the position and every position it
+     * leads to that isn't in the memo. Each position is solved once by
+     * whichever thread claims it in the memo; a thread asking for a position
+     * another thread is solving waits for that thread's answer.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @param splitsLeft the number of splits player 1 has left
+     * @param numSolved counts the positions solved, and is incremented for each one
+     * @return the expected earnings of the table
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private double solve(Table table, int splitsLeft, long[] numSolved) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        // Player 1 is done playing --- weigh Player 1's earnings by the dealer's final outcomes.
+        if (firstHandInPlay(table) == table.getHandList(1).size()) {
+            return dealerOutcomes.expectedEarnings(table, 1);
+        }
+
+        PositionKey key = this.keyOf(table, splitsLeft);
+        while (true) {
+            int slot = this.memo.claim(key);
+            if (slot == SolverMemo.UNCACHED) {
+                return this.recallOrSolve(table, key, splitsLeft, numSolved).getEarnings();
+            } else if (slot < 0) {
+                double earnings = this.memo.getEarnings(-slot - 1, key);
+                if (!Double.isNaN(earnings)) {
+                    return earnings;
                 }
+                continue; // evicted since it was claimed
             }
-            return new Table(deck, dealerHand, playerHands);
-        }
 
-        @Override
-        public boolean equals(Object o) {
-            if (!(o instanceof Position otherPosition)) {
-                return false;
+            try {
+                long numSolvedBefore = numSolved[0];
+                DecisionAndEarnings solved = this.recallOrSolve(table, key, splitsLeft, numSolved);
+                this.memo.complete(slot, solved.getEarnings(), (byte) solved.getDecision().ordinal(),
+                        numSolved[0] - numSolvedBefore);
+                return solved.getEarnings();
+            } catch (InterruptedException | RuntimeException | Error e) {
+                this.memo.abandon(slot);
+                throw e;
             }
-            return this.getPlayer1HandSet().equals(otherPosition.getPlayer1HandSet()) &&
-                    this.getOtherCardRankSet().equals(otherPosition.getOtherCardRankSet()) &&
-                    this.getDealerCardRankSet().equals(otherPosition.getOtherCardRankSet());
         }
+    }
 
-        @Override
-        public int hashCode() {
-            return playerHands.hashCode();
+    /**
+     * Returns the solution of a position from the loaded snapshot if it holds
+     * the position, and solves the position otherwise. A recalled position
+     * counts as costing nothing to solve, so the memo evicts it first.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @param key the key of the position
+     * @param splitsLeft the number of splits player 1 has left
+     * @param numSolved counts the positions solved, and is incremented for each one
+     * @return the best decision and the expected earnings of the table
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private DecisionAndEarnings recallOrSolve(Table table, PositionKey key, int splitsLeft,
+                                              long[] numSolved) throws InterruptedException {
+        SolverSnapshot snapshot = this.snapshot;
+        long entry = (snapshot == null) ? -1 : snapshot.find(key);
+        if (entry >= 0) {
+            return new DecisionAndEarnings(snapshot.getDecision(entry), snapshot.getEarnings(entry));
         }
+        return this.solvePosition(table, splitsLeft, numSolved);
+    }
 
-        private Multiset<PlayerHand> getPlayer1HandSet() {
-            return HashMultiset.create(playerHands.get(0));
+    /**
+     * Returns the best decision in the input position if the memo or the
+     * loaded snapshot holds it, without solving anything.
+     *
+     * @param key the key of the position
+     * @return the best decision, or null if the position isn't solved yet
+     */
+    private Decision knownDecision(PositionKey key) {
+        Decision decision = this.memo.getDecision(key);
+        SolverSnapshot snapshot = this.snapshot;
+        if (decision == null && snapshot != null) {
+            long entry = snapshot.find(key);
+            if (entry >= 0) {
+                decision = snapshot.getDecision(entry);
+            }
         }
+        return decision;
+    }
 
-        private Multiset<Rank> getOtherCardRankSet() {
-            Multiset<Rank> others = HashMultiset.create();
-            for (int i = 1; i < playerHands.size(); i++) {
-                List<Card> otherPlayerCards = playerHands.get(i).get(0).getCards();
-                others.addAll(otherPlayerCards.stream().map(Card::getRank).toList());
+    /**
+     * Returns the expected earnings of the input position if the memo or the
+     * loaded snapshot holds it, without solving anything.
+     *
+     * @param key the key of the position
+     * @return the expected earnings of the position, or NaN if it isn't solved yet
+     */
+    private double knownEarnings(PositionKey key) {
+        double earnings = this.memo.getEarnings(key);
+        SolverSnapshot snapshot = this.snapshot;
+        if (Double.isNaN(earnings) && snapshot != null) {
+            long entry = snapshot.find(key);
+            if (entry >= 0) {
+                earnings = snapshot.getEarnings(entry);
             }
-            return others;
         }
+        return earnings;
+    }
 
-        private Multiset<Rank> getDealerCardRankSet() {
-            return HashMultiset.create(dealerHand.getCards().stream().map(Card::getRank).toList());
+    /**
+     * Solves a position by trying every decision with player 1's first hand
+     * that isn't final, and solving each table it leads to. The decisions are
+     * tried in pruningOrder, and a decision is skipped once an upper bound on
+     * its expected earnings falls short of the best decision's so far, so its
+     * tables are never solved. Ties still go to the decision first in
+     * decisionOrder, so the result is the same as trying every decision.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @param splitsLeft the number of splits player 1 has left
+     * @param numSolved counts the positions solved, and is incremented for this one
+     * @return the best decision and the expected earnings of the table
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private DecisionAndEarnings solvePosition(Table table, int splitsLeft, long[] numSolved) throws InterruptedException {
+        numSolved[0]++;
+        int handIdx = firstHandInPlay(table);
+        List<Decision> possibleDecisions = possibleDecisions(table, handIdx, splitsLeft);
+        double otherHandsBound = otherHandsUpperBound(table, handIdx);
+        Decision bestDecision = null;
+        double maxEarnings = Double.NEGATIVE_INFINITY;
+        for (Decision decision: pruningOrder) {
+            if (!possibleDecisions.contains(decision) || otherHandsBound
+                    + decisionUpperBound(table, handIdx, decision, splitsLeft) < maxEarnings - PRUNING_SLACK) {
+                continue;
+            }
+            int childSplitsLeft = (decision == Decision.SPLIT) ? splitsLeft - 1 : splitsLeft;
+            double[] earningsSum = {0.0};
+            this.forEachSolverOutcome(table, handIdx, decision, (probability, outcome) ->
+                    earningsSum[0] += probability * this.solve(outcome, childSplitsLeft, numSolved));
+            double earnings = earningsSum[0];
+            if (earnings > maxEarnings || (earnings == maxEarnings
+                    && decisionOrder.indexOf(decision) < decisionOrder.indexOf(bestDecision))) {
+                bestDecision = decision;
+                maxEarnings = earnings;
+            }
         }
+        return new DecisionAndEarnings(bestDecision, maxEarnings);
+    }
 
+    /**
+     * Returns an upper bound on the earnings of player 1's hand at the input
+     * index when making the input decision with it: exactly -0.5 bets for
+     * SURRENDER, 1 bet for STAY (1.5 for a Blackjack), and for HIT and DOUBLE,
+     * 1 bet (2 for DOUBLE) for each card that doesn't bust the hand, less the
+     * same for each card that does. A split can lead to at most one hand more
+     * than the cards of the pair's rank left and splits left allow, each of
+     * which can win at most 2 bets by doubling. STAY is tried first in
+     * pruningOrder, so it's never pruned, and its bound only matters if that
+     * order changes.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @param handIdx the index of the hand in play in player 1's list of split hands
+     * @param decision the decision to make with the hand in play
+     * @param splitsLeft the number of splits player 1 has left
+     * @return an upper bound on the hand's earnings
+     */
+    private static double decisionUpperBound(Table table, int handIdx, Decision decision, int splitsLeft) {
+        PlayerHand hand = table.getHandList(1).get(handIdx);
+        double bet = hand.getBet();
+        return switch (decision) {
+            case SURRENDER -> -bet / 2.0;
+            case STAY -> hand.isBlackJack() ? 1.5 * bet : bet;
+            case HIT -> bet * (1.0 - 2.0 * bustProbability(table, hand));
+            case DOUBLE -> 2.0 * bet * (1.0 - 2.0 * bustProbability(table, hand));
+            case SPLIT -> {
+                int pairRankLeft = table.getDeck().rankCounts()[hand.getCards().get(0).getRank().ordinal()];
+                yield 2.0 * bet * (1 + Math.min(1 + pairRankLeft, splitsLeft));
+            }
+        };
     }
 
     /**
-     * Bundles together the best decision for the player to make
-     * on a particular position as well as the expected earnings
-     * of making that decision.
+     * Returns an upper bound on the earnings of player 1's hands other than
+     * the one at the input index. A final hand wins at most 1 bet (1.5 for a
+     * Blackjack), and loses exactly its bet if it busted or half its bet if it
+     * was surrendered. A hand still in play wins at most 2 bets by doubling if
+     * it has two cards, and each hand a pair can be split into likewise.
+     *
+     * A final hand isn't bounded by its expected earnings against the
+     * dealer's distribution for the current deck, since that isn't a bound:
+     * the cards the hand in play goes on to draw can just as well make the
+     * dealer's better outcomes more likely. The distribution does bound the
+     * hand by the most it wins against any outcome the dealer can still
+     * reach, but the dealer can nearly always still bust, so that bound is
+     * almost always the same 1 bet and isn't worth looking the distribution up.
      *
-     * @param decision the best decision for the player to make on a particular position
-     * @param earnings the expected earnings of the player making that decision
+     * @param table holds the deck, player hands, and dealer hand
+     * @param handIdx the index of the hand in play in player 1's list of split hands
+     * @return an upper bound on the other hands' earnings
      */
-    private record DecisionAndEarnings(Decision decision, double earnings) {
-        public Decision getDecision() {
-            return decision;
+    private static double otherHandsUpperBound(Table table, int handIdx) {
+        List<PlayerHand> handList = table.getHandList(1);
+        double bound = 0.0;
+        for (int i = 0; i < handList.size(); i++) {
+            PlayerHand hand = handList.get(i);
+            double bet = hand.getBet();
+            if (i == handIdx) {
+                continue;
+            } else if (hand.surrendered()) {
+                bound -= bet / 2.0;
+            } else if (hand.isBust()) {
+                bound -= bet;
+            } else if (hand.isFinal()) {
+                bound += hand.isBlackJack() ? 1.5 * bet : bet;
+            } else if (hand.isPair()) {
+                bound += 2.0 * bet * (2 + table.getDeck().rankCounts()[hand.getCards().get(0).getRank().ordinal()]);
+            } else {
+                bound += (hand.handSize() == 2) ? 2.0 * bet : bet;
+            }
         }
+        return bound;
+    }
 
-        public double getEarnings() {
-            return earnings;
+    /**
+     * Returns the probability that the next card drawn from the deck busts the
+     * input hand.
+     *
+     * @param table holds the deck
+     * @param hand a hand in play
+     * @return the probability of busting, or 0 if the deck is empty
+     */
+    private static double bustProbability(Table table, PlayerHand hand) {
+        int[] rankCounts = table.getDeck().rankCounts();
+        int deckSize = 0;
+        int numBusting = 0;
+        for (Rank rank: Rank.values()) {
+            deckSize += rankCounts[rank.ordinal()];
+            if (hand.getHard() + Card.hardValues.get(rank) > 21) {
+                numBusting += rankCounts[rank.ordinal()];
+            }
         }
+        return (deckSize == 0) ? 0.0 : (double) numBusting / deckSize;
     }
 
     /**
-     * The singleton instance of this class, since only one instance
-     * is ever needed.
+     * Solves the input table, and returns the best decision to make with
+     * player 1's first hand that isn't final. The positions within
+     * parallelDepth moves are solved by tasks in the fork/join pool, and the
+     * rest by recursion on the pool's threads.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @return the best decision
+     * @throws IllegalArgumentException if the shoe has more than PositionKey.MAX_DECKS decks
+     * @throws InterruptedException if the thread is interrupted
      */
-    private static final IdealStrategy SINGLETON = new IdealStrategy();
+    private Decision solveDecision(Table table) throws InterruptedException {
+        checkShoe(table);
+        int splitsLeft = this.rootSplitsLeft(table);
+        Decision decision = this.knownDecision(this.keyOf(table, splitsLeft));
+        if (decision != null) {
+            return decision;
+        }
+
+        if (this.parallelDepth == 0) {
+            long[] numSolved = new long[1];
+            this.solve(table, splitsLeft, numSolved);
+            decision = this.memo.getDecision(this.keyOf(table, splitsLeft));
+            if (decision == null) { /* Evicted already, but its children are likely still in the memo */
+                decision = this.solvePosition(table, splitsLeft, numSolved).getDecision();
+            }
+            return decision;
+        }
+
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        return awaitRoot(this.submitRoot(table, splitsLeft, cancelled), cancelled);
+    }
 
     /**
-     * A private constructor to prevent users of this class from
-     * creating additional instances of the class.
+     * Submits the root of a parallel solve of the input table to the
+     * fork/join pool.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @param splitsLeft the number of splits player 1 has left
+     * @param cancelled set to true once the solve is cancelled
+     * @return the root task, which solves the table
      */
-    private IdealStrategy() {
-
+    private ForkJoinTask<DecisionAndEarnings> submitRoot(Table table, int splitsLeft, AtomicBoolean cancelled) {
+        return solverPool.submit(() -> this.solveInParallel(table, splitsLeft, 0, cancelled));
     }
 
     /**
-     * Returns the singleton instance of this class.
+     * Waits for the input root of a parallel solve, and returns its best
+     * decision. If the thread is interrupted while waiting, the solve is
+     * cancelled.
      *
-     * @return the singleton instance of this class
+     * @param root the root task of the solve
+     * @param cancelled set to true to cancel the solve
+     * @return the best decision
+     * @throws InterruptedException if the thread is interrupted, or the solve is cancelled
      */
-    public static IdealStrategy singleton() {
-        return IdealStrategy.SINGLETON;
+    private static Decision awaitRoot(ForkJoinTask<DecisionAndEarnings> root,
+                                      AtomicBoolean cancelled) throws InterruptedException {
+        try {
+            return root.get().getDecision();
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw new InterruptedException("IdealStrategy.solveDecision() cancelled");
+            }
+            throw new IllegalStateException("IdealStrategy.solveDecision() FAILED", e.getCause());
+        }
     }
 
     /**
-     * A future cache for computing the best decision to make on a position as well as the
-     * expected earnings of making that decision.
+     * Solves a position near the root of a solve by forking a task for every
+     * table each decision leads to, then joining them in order, so that the
+     * sums come out exactly as the recursive solver's would. The solution is
+     * then stored in the memo. Since the memo's slot is only claimed once the
+     * tasks are joined, a thread never holds a claimed slot while it helps
+     * with other tasks, which could otherwise wait on that slot.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @param splitsLeft the number of splits player 1 has left
+     * @param depth the number of moves from the root of the solve
+     * @param cancelled set to true once the solve is cancelled
+     * @return the best decision and the expected earnings of the table
+     * @throws InterruptedException if the solve is cancelled
      */
-    public final LoadingCache<Position, ListenableFuture<DecisionAndEarnings>> earningsCache =
-        CacheBuilder.newBuilder().build(new CacheLoader<>() {
-            public ListenableFuture<DecisionAndEarnings> load(Position position) {
-                if (numCalls++ % 10000 == 0) {
-                    System.out.println(numCalls / 10000);
-                }
-                Table table = position.convertToTable();
+    private DecisionAndEarnings solveInParallel(Table table, int splitsLeft, int depth,
+                                                AtomicBoolean cancelled) throws InterruptedException {
+        int handIdx = firstHandInPlay(table);
+        List<Decision> possibleDecisions = possibleDecisions(table, handIdx, splitsLeft);
+        List<Decision> decisions = new ArrayList<>(possibleDecisions.size());
+        List<List<Double>> probabilities = new ArrayList<>(possibleDecisions.size());
+        List<List<SolveTask>> tasks = new ArrayList<>(possibleDecisions.size());
+        for (Decision decision: decisionOrder) {
+            if (possibleDecisions.contains(decision)) {
+                int childSplitsLeft = (decision == Decision.SPLIT) ? splitsLeft - 1 : splitsLeft;
+                List<Double> decisionProbabilities = new ArrayList<>();
+                List<SolveTask> decisionTasks = new ArrayList<>();
+                this.forEachSolverOutcome(table, handIdx, decision, (probability, outcome) -> {
+                    decisionProbabilities.add(probability);
+                    decisionTasks.add(new SolveTask(outcome, childSplitsLeft, depth + 1, cancelled));
+                });
+                decisions.add(decision);
+                probabilities.add(decisionProbabilities);
+                tasks.add(decisionTasks);
+            }
+        }
+        for (List<SolveTask> decisionTasks: tasks) {
+            for (SolveTask task: decisionTasks) {
+                task.fork();
+            }
+        }
 
-                // A list of all of the possible positions just for call to Futures.transform() below.
-                final List<ListenableFuture<DecisionAndEarnings>> allFutures = new ArrayList<>();
+        Decision bestDecision = null;
+        double maxEarnings = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < decisions.size(); i++) {
+            double earnings = 0.0;
+            for (int j = 0; j < tasks.get(i).size(); j++) {
+                earnings += probabilities.get(i).get(j) * tasks.get(i).get(j).join();
+            }
+            if (earnings > maxEarnings) {
+                bestDecision = decisions.get(i);
+                maxEarnings = earnings;
+            }
+        }
 
-                // A map to store each possible position after HIT to its probability of occurring.
-                final Map<ListenableFuture<DecisionAndEarnings>, Double> ifHit = new HashMap<>();;
+        // Positions this close to the root are the most expensive to solve again.
+        int slot = this.memo.claim(this.keyOf(table, splitsLeft));
+        if (slot >= 0) {
+            this.memo.complete(slot, maxEarnings, (byte) bestDecision.ordinal(), Long.MAX_VALUE);
+        }
+        return new DecisionAndEarnings(bestDecision, maxEarnings);
+    }
 
-                // Stores the resulting position (with probability 1) after STAY.
-                ListenableFuture<DecisionAndEarnings> ifStay = null;
+    /**
+     * A fork/join task which solves a table within parallelDepth moves of the
+     * root of a solve: in parallel if it's worth forking, and by recursion on
+     * the task's thread otherwise. ForkJoinTask is Serializable, but a task
+     * only ever runs within the solve that forked it and is never serialized,
+     * so its fields which hold objects are transient.
+     */
+    private final class SolveTask extends RecursiveTask<Double> {
 
-                // A map to store each possible position after DOUBLE to its probability of occurring.
-                final Map<ListenableFuture<DecisionAndEarnings>, Double> ifDouble = new HashMap<>();
+        @Serial
+        private static final long serialVersionUID = 1L;
 
-                // A map to store each possible position after SPLIT to its probability of occurring.
-                final Map<ListenableFuture<DecisionAndEarnings>, Double> ifSplit = new HashMap<>();
+        /**
+         * The table to solve, which isn't changed.
+         */
+        private final transient Table table;
 
-                // Stores the resulting position (with probability 1) after STAY.
-                ListenableFuture<DecisionAndEarnings> ifSurrender = null;
+        /**
+         * The number of splits player 1 has left on the table.
+         */
+        private final int splitsLeft;
 
-                // A map to store each possible position after the dealer hits to its probability of occurring.
-                final Map<ListenableFuture<DecisionAndEarnings>, Double> ifDealerHit = new HashMap<>();
+        /**
+         * The number of moves from the root of the solve to the table.
+         */
+        private final int depth;
 
-                // Search for the first non-final hand controlled by Player 1.
-                PlayerHand handInPlay = null;
-                for (PlayerHand splitHand: table.getHandList(1)) {
-                    if (!splitHand.isFinal()) {
-                        handInPlay = splitHand;
-                        break;
-                    }
-                }
+        /**
+         * Set to true once the solve is cancelled, so that tasks yet to run don't.
+         */
+        private final transient AtomicBoolean cancelled;
 
-                /*
-                 * If Player 1 has a non-final hand, consider all of its possible decisions and each of the
-                 * possible tables that result from drawing each possible rank of card from the deck.
-                 *
-                 * Otherwise, if all of Player 1's hands are final, then if the dealer's hand isn't final,
-                 * consider all of the possible tables that result from the dealer being hit with each
-                 * possible rank of card from the deck.
-                 *
-                 * Otherwise, meaning Player 1's hands are final and the dealer's hand is final,
-                 * simply compute Player 1's total earnings against the dealer's hand.
-                 */
-                if (handInPlay != null) { /* Play Player 1's first non-final hand */
-                    for (Decision decision: handInPlay.getPossibleDecisions()) {
-                        switch (decision) {
-                            case HIT -> {
-                                /*
-                                 * Simulate each position that can occur from hitting (one position for each
-                                 * rank of card that can be drawn).
-                                 */
-                                Map<Rank, Double> deckProbs = table.deckProbabilities();
-                                for (Map.Entry<Rank, Double> entry : deckProbs.entrySet()) {
-                                    Rank possibleRank = entry.getKey();
-                                    Double probability = entry.getValue();
-                                    Table tableCopy = table.copy();
-                                    PlayerHand handInPlayCopy = tableCopy.getHandList(1).get(table.getHandList(1).indexOf(handInPlay));
-                                    Card drawnCard = tableCopy.getDeck().removeCard(possibleRank);
-                                    tableCopy.hit(handInPlayCopy, drawnCard);
-                                    ifHit.put(earningsCache.getUnchecked(new Position(tableCopy)), probability);
-                                }
-                                allFutures.addAll(ifHit.keySet());
-                            }
-                            case STAY -> {
-                                // Simulate staying (one resulting position).
-                                Table tableCopy = table.copy();
-                                PlayerHand handInPlayCopy = tableCopy.getHandList(1).get(table.getHandList(1).indexOf(handInPlay));
-                                tableCopy.stay(handInPlayCopy);
-                                ifStay = earningsCache.getUnchecked(new Position(tableCopy));
-                                allFutures.add(ifStay);
-                            }
-                            case DOUBLE -> {
-                                /*
-                                 * Simulate each position that can occur from doubling (one position for each
-                                 * rank of card that can be drawn).
-                                 */
-                                for (Map.Entry<Rank, Double> entry : table.deckProbabilities().entrySet()) {
-                                    Rank possibleRank = entry.getKey();
-                                    Double probability = entry.getValue();
-                                    Table tableCopy = table.copy();
-                                    PlayerHand handInPlayCopy = tableCopy.getHandList(1).get(table.getHandList(1).indexOf(handInPlay));
-                                    Card drawnCard = tableCopy.getDeck().removeCard(possibleRank);
-                                    tableCopy.doubleMove(handInPlayCopy, drawnCard);
-                                    ifDouble.put(earningsCache.getUnchecked(new Position(tableCopy)), probability);
-                                }
-                                allFutures.addAll(ifDouble.keySet());
-                            }
-                            case SPLIT -> {
-                                /*
-                                 * Simulate each position that can occur from splitting (one position for each
-                                 * pair of ranks of cards that can be drawn and given to the split hands).
-                                 */
-                                for (Map.Entry<Rank, Double> entry1 : table.deckProbabilities().entrySet()) {
-                                    Rank possibleRank1 = entry1.getKey();
-                                    Double probabilityCard1 = entry1.getValue();
-                                    Table tableCopy1 = table.copy();
-                                    Card drawnCard1 = tableCopy1.getDeck().removeCard(possibleRank1);
-                                    for (Map.Entry<Rank, Double> entry2 : tableCopy1.deckProbabilities().entrySet()) {
-                                        Rank possibleRank2 = entry2.getKey();
-                                        Double probabilityCard2 = entry2.getValue();
-                                        Table tableCopy2 = tableCopy1.copy();
-                                        PlayerHand handInPlayCopy2 = tableCopy2.getHandList(1).get(table.getHandList(1).indexOf(handInPlay));
-                                        Card drawnCard2 = tableCopy2.getDeck().removeCard(possibleRank2);
-                                        tableCopy2.split(1, handInPlayCopy2, drawnCard1, drawnCard2);
-                                        ifSplit.put(earningsCache.getUnchecked(new Position(tableCopy2)), probabilityCard1 * probabilityCard2);
-                                    }
-                                }
-                                allFutures.addAll(ifSplit.keySet());
-                            }
-                            case SURRENDER -> {
-                                // Simulate surrendering (one resulting position).
-                                Table tableCopy = table.copy();
-                                PlayerHand handInPlayCopy = tableCopy.getHandList(1).get(table.getHandList(1).indexOf(handInPlay));
-                                tableCopy.surrender(handInPlayCopy);
-                                ifSurrender = earningsCache.getUnchecked(new Position(tableCopy));
-                                allFutures.add(ifSurrender);
-                            }
-                        }
-                    }
-                } else if (!table.getDealerHand().isFinal()) { /* Simulate the dealer getting hit with one card */
-                    /*
-                     * Simulate each position that can occur when the dealer hits (one position
-                     * per rank of card that can be drawn).
-                     */
-                    Map<Rank, Double> deckProbs = table.deckProbabilities();
-                    for (Map.Entry<Rank, Double> entry : deckProbs.entrySet()) {
-                        Rank possibleRank = entry.getKey();
-                        Double probability = entry.getValue();
-                        Table tableCopy = table.copy();
-                        Card drawnCard = tableCopy.getDeck().removeCard(possibleRank); // !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
-                        tableCopy.hitDealer(drawnCard);
-                        ifDealerHit.put(earningsCache.getUnchecked(new Position(tableCopy)), probability);
+        /**
+         * Constructs a task to solve the input table.
+         *
+         * @param table the table to solve, which isn't changed
+         * @param splitsLeft the number of splits player 1 has left on the table
+         * @param depth the number of moves from the root of the solve to the table
+         * @param cancelled set to true once the solve is cancelled
+         */
+        private SolveTask(Table table, int splitsLeft, int depth, AtomicBoolean cancelled) {
+            this.table = table;
+            this.splitsLeft = splitsLeft;
+            this.depth = depth;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * Returns the expected earnings of the table.
+         *
+         * @return the expected earnings of the table
+         * @throws CancellationException if the solve is cancelled
+         */
+        @Override
+        protected Double compute() {
+            if (this.cancelled.get()) {
+                throw new CancellationException("IdealStrategy.SolveTask cancelled");
+            }
+            try {
+                if (this.depth < IdealStrategy.this.parallelDepth && isWorthForking(this.table)) {
+                    double memoized = IdealStrategy.this.knownEarnings(IdealStrategy.this.keyOf(this.table, this.splitsLeft));
+                    if (!Double.isNaN(memoized)) {
+                        return memoized;
                     }
-                    allFutures.addAll(ifDealerHit.keySet());
-                } else { /* Both Player 1 and the dealer are done playing --- compute Player 1's earnings directly */
-                    // null is just a dummy value---the player will not be making any more moves.
-                    return Futures.immediateFuture(new DecisionAndEarnings(null, table.calculateEarnings(1)));
+                    return IdealStrategy.this.solveInParallel(this.table, this.splitsLeft, this.depth, this.cancelled)
+                            .getEarnings();
                 }
+                return IdealStrategy.this.solve(this.table, this.splitsLeft, new long[1]);
+            } catch (InterruptedException e) {
+                throw new CancellationException("IdealStrategy.SolveTask cancelled");
+            }
+        }
+    }
+
+    /**
+     * Returns whether the input table is worth solving in parallel: player 1
+     * still has a hand in play, and the hands in play can take at least
+     * MIN_POINTS_TO_FORK points before busting.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @return true iff the table is worth solving in parallel
+     */
+    private static boolean isWorthForking(Table table) {
+        int pointsToBust = 0;
+        for (PlayerHand playerHand: table.getHandList(1)) {
+            if (!playerHand.isFinal()) {
+                pointsToBust += 21 - playerHand.getHard();
+            }
+        }
+        return pointsToBust >= MIN_POINTS_TO_FORK;
+    }
+
+    /**
+     * Returns the index of player 1's first hand that isn't final.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @return the index of the first hand in play, or the number of hands if they're all final
+     */
+    static int firstHandInPlay(Table table) {
+        List<PlayerHand> handList = table.getHandList(1);
+        int handIdx = 0;
+        while (handIdx < handList.size() && handList.get(handIdx).isFinal()) {
+            handIdx++;
+        }
+        return handIdx;
+    }
+
+    /**
+     * Checks that the positions of the input table's shoe can be keyed, so
+     * that a shoe of too many decks is rejected before a solve starts rather
+     * than deep inside one.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @throws IllegalArgumentException if the shoe has more than PositionKey.MAX_DECKS decks
+     */
+    private static void checkShoe(Table table) {
+        int numDecks = table.getDeck().getNumDecks();
+        if (numDecks > PositionKey.MAX_DECKS) {
+            throw new IllegalArgumentException("IdealStrategy FAILED: a shoe of " + numDecks
+                    + " decks, but PositionKey can only key the positions of up to " + PositionKey.MAX_DECKS);
+        }
+    }
+
+    /**
+     * Returns the decisions possible with player 1's hand at the input index,
+     * leaving out SPLIT once player 1 has no splits left.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @param handIdx the index of the hand in play in player 1's list of split hands
+     * @param splitsLeft the number of splits player 1 has left
+     * @return the possible decisions
+     */
+    private static List<Decision> possibleDecisions(Table table, int handIdx, int splitsLeft) {
+        List<Decision> possibleDecisions = table.getHandList(1).get(handIdx).getPossibleDecisions();
+        if (splitsLeft <= 0) {
+            possibleDecisions.remove(Decision.SPLIT);
+        }
+        return possibleDecisions;
+    }
+
+    /**
+     * Returns the number of splits player 1 has left on a table to be solved,
+     * counting each of their hands past the first as a split already made.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @return the number of splits left, or SplitMode.UNLIMITED if splits aren't capped
+     */
+    private int rootSplitsLeft(Table table) {
+        if (!this.splitMode.isCapped()) {
+            return SplitMode.UNLIMITED;
+        }
+        return Math.max(0, this.splitMode.maxSplits() - (table.getHandList(1).size() - 1));
+    }
 
-                // Create final variable copies to satisfy the compiler in the lambdas below.
-                final PlayerHand handInPlayFinal = handInPlay;
-                final ListenableFuture<DecisionAndEarnings> ifStayFinal = ifStay;
-                final ListenableFuture<DecisionAndEarnings> ifSurrenderFinal = ifSurrender;
-
-                return Futures.transform(Futures.allAsList(allFutures),
-                        new AsyncFunction<List<DecisionAndEarnings>, DecisionAndEarnings>() {
-                            @Override
-                            public ListenableFuture<DecisionAndEarnings> apply(List<DecisionAndEarnings> unused) throws Exception {
-                                if (handInPlayFinal != null) { // player's hand is not final
-
-                                    // Compute the expected earnings for each possible decision with the hand.
-                                    Map<Decision, Double> expectedEarnings = new HashMap<>();
-                                    for (Decision decision: handInPlayFinal.getPossibleDecisions()) {
-                                        switch (decision) {
-                                            case HIT -> {
-                                                for (Map.Entry<ListenableFuture<DecisionAndEarnings>, Double> entry: ifHit.entrySet()) {
-                                                    double earnings = entry.getKey().get().getEarnings();
-                                                    double probability = entry.getValue();
-                                                    if (!expectedEarnings.containsKey(Decision.HIT)) {
-                                                        expectedEarnings.put(Decision.HIT, earnings * probability);
-                                                    } else {
-                                                        expectedEarnings.put(Decision.HIT, expectedEarnings.get(Decision.HIT) + earnings * probability);
-                                                    }
-                                                }
-                                            }
-                                            case STAY -> {
-                                                expectedEarnings.put(Decision.STAY, ifStayFinal.get().getEarnings());
-                                            }
-                                            case DOUBLE -> {
-                                                for (Map.Entry<ListenableFuture<DecisionAndEarnings>, Double> entry: ifDouble.entrySet()) {
-                                                    double earnings = entry.getKey().get().getEarnings();
-                                                    double probability = entry.getValue();
-                                                    if (!expectedEarnings.containsKey(Decision.DOUBLE)) {
-                                                        expectedEarnings.put(Decision.DOUBLE, earnings * probability);
-                                                    } else {
-                                                        expectedEarnings.put(Decision.DOUBLE, expectedEarnings.get(Decision.DOUBLE) + earnings * probability);
-                                                    }
-                                                }
-                                            }
-                                            case SPLIT -> {
-                                                for (Map.Entry<ListenableFuture<DecisionAndEarnings>, Double> entry: ifSplit.entrySet()) {
-                                                    double earnings = entry.getKey().get().getEarnings();
-                                                    double probability = entry.getValue();
-                                                    if (!expectedEarnings.containsKey(Decision.SPLIT)) {
-                                                        expectedEarnings.put(Decision.SPLIT, earnings * probability);
-                                                    } else {
-                                                        expectedEarnings.put(Decision.SPLIT, expectedEarnings.get(Decision.SPLIT) + earnings * probability);
-                                                    }
-                                                }
-                                            }
-                                            case SURRENDER -> {
-                                                expectedEarnings.put(Decision.SURRENDER, ifSurrenderFinal.get().getEarnings());
-                                            }
-                                        }
-                                    }
-
-                                    Decision mostProfitable = null;
-                                    double maxEarnings = Double.MIN_VALUE;
-                                    for (Decision decision: List.of(Decision.HIT, Decision.STAY, Decision.DOUBLE, Decision.SPLIT, Decision.SURRENDER)) {
-                                        if (expectedEarnings.containsKey(decision)) {
-                                            double earnings = expectedEarnings.get(decision);
-                                            if (earnings > maxEarnings) {
-                                                mostProfitable = decision;
-                                                maxEarnings = earnings;
-                                            }
-                                        }
-                                    }
-
-                                    return Futures.immediateFuture(new DecisionAndEarnings(mostProfitable, maxEarnings));
-
-                                } else { // guaranteed that dealer's hand is not final
-                                    double expectedEarnings = 0.0;
-                                    for (Map.Entry<ListenableFuture<DecisionAndEarnings>, Double> entry: ifDealerHit.entrySet()) {
-                                        double earnings = entry.getKey().get().getEarnings();
-                                        double probability = entry.getValue();
-                                        expectedEarnings += earnings * probability;
-                                    }
-
-                                    /*
-                                     * null is just a dummy value---we know the player won't be making
-                                     * any more moves since we are playing the dealer.
-                                     */
-                                    return Futures.immediateFuture(new DecisionAndEarnings(null, expectedEarnings));
-                                }
-                            }
-                        },
-                        // Compute the values in parallel using the number of available processors on the machine.
-                        execService // Runtime.getRuntime().availableProcessors()
-                );
+    /**
+     * Returns the memo's key of the input table's position, which holds the
+     * number of splits left when the split mode caps them.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @param splitsLeft the number of splits player 1 has left
+     * @return the key of the position
+     */
+    private PositionKey keyOf(Table table, int splitsLeft) {
+        PositionKey key = PositionKey.of(table);
+        return this.splitMode.isCapped() ? key.withSplitsLeft(splitsLeft) : key;
+    }
+
+    /**
+     * Returns a fingerprint of the rules this strategy's positions are solved
+     * under, so that a snapshot solved under other rules is rejected. The
+     * dealer's play and the payouts are fingerprinted by what they compute:
+     * the distribution of the dealer's outcomes for each upcard from a full
+     * deck, and the earnings of every final hand value against every dealer
+     * outcome. The split mode is fingerprinted too, since it changes the
+     * expected earnings of every position that can split.
+     *
+     * @return the fingerprint of the rules
+     */
+    long rulesFingerprint() {
+        long fingerprint = PositionKey.mix((this.splitMode.joint() ? 1L : 0L) << 32 ^ this.splitMode.maxSplits());
+        int[] fullDeck = new int[Rank.values().length];
+        Arrays.fill(fullDeck, Deck.CARDS_PER_DECK / fullDeck.length);
+        for (Rank upcard: Rank.values()) {
+            for (double probability: dealerOutcomes.distribution(fullDeck, upcard.ordinal())) {
+                fingerprint = PositionKey.mix(fingerprint ^ Double.doubleToLongBits(probability));
+            }
+        }
+        for (int outcome = 0; outcome < DealerOutcomes.NUM_OUTCOMES; outcome++) {
+            for (int bestValue = 4; bestValue <= 22; bestValue++) {
+                fingerprint = PositionKey.mix(fingerprint ^ Double.doubleToLongBits(
+                        DealerOutcomes.earningsAgainst(outcome, bestValue, false, 1.0, false)));
             }
-        });
+            fingerprint = PositionKey.mix(fingerprint ^ Double.doubleToLongBits(
+                    DealerOutcomes.earningsAgainst(outcome, 21, true, 1.0, false)));
+            fingerprint = PositionKey.mix(fingerprint ^ Double.doubleToLongBits(
+                    DealerOutcomes.earningsAgainst(outcome, 21, false, 1.0, true)));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Visits each table the solver weighs for the input decision: the tables
+     * of forEachOutcome(), except that SPLIT visits the tables of
+     * forEachIndependentSplitOutcome() unless the split mode is joint.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @param handIdx the index of the hand in play in player 1's list of split hands
+     * @param decision the decision to make with the hand in play
+     * @param visitor visits each resulting table, which it may keep
+     * @throws InterruptedException if the visitor is cancelled
+     */
+    private void forEachSolverOutcome(Table table, int handIdx, Decision decision,
+                                      OutcomeVisitor visitor) throws InterruptedException {
+        if (decision == Decision.SPLIT && !this.splitMode.joint()) {
+            forEachIndependentSplitOutcome(table, handIdx, visitor);
+        } else {
+            forEachOutcome(table, handIdx, decision, visitor);
+        }
+    }
+
+    /**
+     * Visits the tables whose weighted earnings sum to the earnings of
+     * splitting player 1's pair at the input index when each split hand is
+     * played independently of the other. First, for each value class of card
+     * the first split hand can draw, the table where that hand replaces the
+     * pair. Then, for each value class the second split hand can draw, a table
+     * where that hand is player 1's only hand, drawing from the same deck as
+     * the first. Each set of probabilities sums to 1, so the two hands' earnings
+     * add up, and neither table holds more hands than before the split.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @param handIdx the index of the pair in player 1's list of split hands
+     * @param visitor visits each resulting table, which it may keep
+     * @throws InterruptedException if the visitor is cancelled
+     */
+    private static void forEachIndependentSplitOutcome(Table table, int handIdx,
+                                                       OutcomeVisitor visitor) throws InterruptedException {
+        Map<Rank, Double> probabilities = table.deckProbabilities(table.tenValuedPairRank(1));
+        for (Map.Entry<Rank, Double> entry: probabilities.entrySet()) {
+            Table tableCopy = table.copy();
+            List<PlayerHand> handList = tableCopy.getHandList(1);
+            Card drawnCard = tableCopy.getDeck().removeCard(entry.getKey());
+            handList.set(handIdx, new PlayerHand(handList.get(handIdx).getCards().get(0), drawnCard));
+            visitor.visit(entry.getValue(), tableCopy);
+        }
+        for (Map.Entry<Rank, Double> entry: probabilities.entrySet()) {
+            Table tableCopy = table.copy();
+            List<PlayerHand> handList = tableCopy.getHandList(1);
+            Card drawnCard = tableCopy.getDeck().removeCard(entry.getKey());
+            Card pairCard = handList.get(handIdx).getCards().get(1);
+            handList.clear();
+            handList.add(new PlayerHand(pairCard, drawnCard));
+            visitor.visit(entry.getValue(), tableCopy);
+        }
+    }
 
     /**
      * Recursively determines the decision for the player to make
@@ -367,10 +932,308 @@ public class IdealStrategy implements IPlayerStrategy {
     @Override
     public Decision getDecision(Table table, PlayerHand handInPlay) {
         try {
-            return earningsCache.getUnchecked(new Position(table)).get().getDecision();
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new IllegalStateException("IdealStrategy.getDecision() FAILED");
+            return this.solveDecision(table);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("IdealStrategy.getDecision() FAILED", e);
+        }
+    }
+
+    /**
+     * Returns the expected earnings of each decision possible with player 1's
+     * first hand that isn't final, when making the best decisions from there
+     * on. The position is solved as by getDecision(), which leaves every
+     * table its decisions lead to in the memo, then each decision's tables
+     * are weighed.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @return the expected earnings of each decision, indexed by the decision's
+     *           ordinal, with NaN for decisions which aren't possible
+     * @throws IllegalArgumentException if player 1 has no hand in play
+     */
+    public double[] getDecisionEarnings(Table table) {
+        int handIdx = firstHandInPlay(table);
+        if (handIdx == table.getHandList(1).size()) {
+            throw new IllegalArgumentException("IdealStrategy.getDecisionEarnings() FAILED: no hand in play");
+        }
+        int splitsLeft = this.rootSplitsLeft(table);
+        double[] decisionEarnings = new double[Decision.values().length];
+        Arrays.fill(decisionEarnings, Double.NaN);
+        try {
+            this.solveDecision(table);
+            long[] numSolved = new long[1];
+            for (Decision decision: possibleDecisions(table, handIdx, splitsLeft)) {
+                int childSplitsLeft = (decision == Decision.SPLIT) ? splitsLeft - 1 : splitsLeft;
+                double[] earningsSum = {0.0};
+                this.forEachSolverOutcome(table, handIdx, decision, (probability, outcome) ->
+                        earningsSum[0] += probability * this.solve(outcome, childSplitsLeft, numSolved));
+                decisionEarnings[decision.ordinal()] = earningsSum[0];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("IdealStrategy.getDecisionEarnings() FAILED", e);
+        }
+        return decisionEarnings;
+    }
+
+    /**
+     * Determines the decision for the player to make within the input time
+     * budget. If the position has already been solved exhaustively, that
+     * decision is returned right away. Otherwise the decision is found by
+     * iterative deepening: a search considers every decision for the player's
+     * next few moves, and from there on plays the leaf strategy, whose expected
+     * earnings are computed exactly. Each decision's search runs in parallel,
+     * and each time every one finishes within the budget, the search goes one
+     * move deeper. When the budget runs out, the unfinished searches are
+     * cancelled and the best decision of the deepest finished search is
+     * returned, or the leaf strategy's own decision if none finished and the
+     * split mode allows it. A search that never had to stop at a leaf is
+     * exact, which ends the deepening early.
+     *
+     * The search splits as the exhaustive solver does under this strategy's
+     * split mode, so the two agree once the search is exact.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @param handInPlay the hand being played, which is player 1's first hand that isn't final
+     * @param timeBudgetMillis the most time to spend, in milliseconds
+     * @return a decision for the player to make with their hand
+     * @throws IllegalArgumentException if the hand isn't player 1's first hand that isn't final,
+     *                                  or the shoe has more than PositionKey.MAX_DECKS decks
+     */
+    public Decision getDecision(Table table, PlayerHand handInPlay, long timeBudgetMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+
+        checkShoe(table);
+        int handInPlayIdx = firstHandInPlay(table);
+        if (handInPlayIdx == table.getHandList(1).size() || table.getHandList(1).get(handInPlayIdx) != handInPlay) {
+            throw new IllegalArgumentException("IdealStrategy.getDecision() FAILED: the hand isn't player 1's first hand in play");
+        }
+        int splitsLeft = this.rootSplitsLeft(table);
+        Decision solved = this.knownDecision(this.keyOf(table, splitsLeft));
+        if (solved != null) {
+            return solved;
+        }
+
+        List<Decision> decisions = possibleDecisions(table, handInPlayIdx, splitsLeft);
+        Decision bestDecision = leafStrategy.getDecision(table, handInPlay);
+        if (!decisions.contains(bestDecision)) {
+            bestDecision = decisions.get(0);
+        }
+
+        for (int depth = 1; System.nanoTime() < deadline; depth++) {
+            final int searchDepth = depth;
+            AtomicBoolean truncated = new AtomicBoolean(false);
+            List<ListenableFuture<Double>> searches = new ArrayList<>(decisions.size());
+            for (Decision decision: decisions) {
+                Table tableCopy = table.copy();
+                int childSplitsLeft = (decision == Decision.SPLIT) ? splitsLeft - 1 : splitsLeft;
+                searches.add(searchService.submit(() -> this.decisionEarnings(tableCopy, handInPlayIdx, decision,
+                        child -> this.searchEarnings(child, childSplitsLeft, searchDepth - 1, truncated))));
+            }
+
+            ListenableFuture<List<Double>> allSearches = Futures.allAsList(searches);
+            List<Double> earnings;
+            try {
+                earnings = allSearches.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("IdealStrategy.getDecision() FAILED", e.getCause());
+            } finally {
+                // Cancelling the combined future cancels (and interrupts) every search still running.
+                allSearches.cancel(true);
+            }
+
+            double maxEarnings = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < decisions.size(); i++) {
+                if (earnings.get(i) > maxEarnings) {
+                    bestDecision = decisions.get(i);
+                    maxEarnings = earnings.get(i);
+                }
+            }
+            if (!truncated.get()) {
+                break; // the search reached the end of every line of play, so it's exact
+            }
+        }
+        return bestDecision;
+    }
+
+    /**
+     * Returns the expected earnings of making the input decision with player
+     * 1's hand at the input index, where the input evaluator gives the
+     * expected earnings of each table the solver weighs for the decision.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @param handIdx the index of the hand in play in player 1's list of split hands
+     * @param decision the decision to make with the hand in play
+     * @param evaluator gives the expected earnings of playing on from each resulting table
+     * @return the expected earnings of the decision
+     * @throws InterruptedException if the evaluation is cancelled
+     */
+    private double decisionEarnings(Table table, int handIdx, Decision decision,
+                                    TableEvaluator evaluator) throws InterruptedException {
+        double[] expectedEarnings = {0.0};
+        this.forEachSolverOutcome(table, handIdx, decision,
+                (probability, outcome) -> expectedEarnings[0] += probability * evaluator.earnings(outcome));
+        return expectedEarnings[0];
+    }
+
+    /**
+     * Visits each table that making the input decision with player 1's hand at
+     * the input index can lead to, along with its probability, in a fixed order.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @param handIdx the index of the hand in play in player 1's list of split hands
+     * @param decision the decision to make with the hand in play
+     * @param visitor visits each resulting table, which it may keep
+     * @throws InterruptedException if the visitor is cancelled
+     */
+    private static void forEachOutcome(Table table, int handIdx, Decision decision,
+                                       OutcomeVisitor visitor) throws InterruptedException {
+        Rank pairRank = table.tenValuedPairRank(1);
+        switch (decision) {
+            case HIT, DOUBLE -> {
+                /*
+                 * Simulate each position that can occur from hitting or doubling (one position for
+                 * each value class of card that can be drawn).
+                 */
+                for (Map.Entry<Rank, Double> entry: table.deckProbabilities(pairRank).entrySet()) {
+                    Table tableCopy = table.copy();
+                    PlayerHand handInPlayCopy = tableCopy.getHandList(1).get(handIdx);
+                    Card drawnCard = tableCopy.getDeck().removeCard(entry.getKey());
+                    if (decision == Decision.HIT) {
+                        tableCopy.hit(handInPlayCopy, drawnCard);
+                    } else {
+                        tableCopy.doubleMove(handInPlayCopy, drawnCard);
+                    }
+                    visitor.visit(entry.getValue(), tableCopy);
+                }
+            }
+            case STAY, SURRENDER -> {
+                // Simulate staying or surrendering (one resulting position).
+                Table tableCopy = table.copy();
+                PlayerHand handInPlayCopy = tableCopy.getHandList(1).get(handIdx);
+                if (decision == Decision.STAY) {
+                    tableCopy.stay(handInPlayCopy);
+                } else {
+                    tableCopy.surrender(handInPlayCopy);
+                }
+                visitor.visit(1.0, tableCopy);
+            }
+            case SPLIT -> {
+                /*
+                 * Simulate each position that can occur from splitting (one position for each
+                 * pair of value classes of cards that can be drawn and given to the split hands).
+                 */
+                for (Map.Entry<Rank, Double> entry1: table.deckProbabilities(pairRank).entrySet()) {
+                    Table tableCopy1 = table.copy();
+                    Card drawnCard1 = tableCopy1.getDeck().removeCard(entry1.getKey());
+                    for (Map.Entry<Rank, Double> entry2: tableCopy1.deckProbabilities(pairRank).entrySet()) {
+                        Table tableCopy2 = tableCopy1.copy();
+                        PlayerHand handInPlayCopy2 = tableCopy2.getHandList(1).get(handIdx);
+                        Card drawnCard2 = tableCopy2.getDeck().removeCard(entry2.getKey());
+                        tableCopy2.split(1, handInPlayCopy2, drawnCard1, drawnCard2);
+                        visitor.visit(entry1.getValue() * entry2.getValue(), tableCopy2);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the expected earnings of making the best decisions with player
+     * 1's hands for the input number of moves, then playing the leaf strategy
+     * from there on.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @param splitsLeft the number of splits player 1 has left
+     * @param depth the number of moves to search
+     * @param truncated set to true if the search stops at a leaf before player 1's hands are all final
+     * @return the expected earnings of the table
+     * @throws InterruptedException if the search is cancelled
+     */
+    private double searchEarnings(Table table, int splitsLeft, int depth,
+                                  AtomicBoolean truncated) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        // Search for the first non-final hand controlled by Player 1.
+        List<PlayerHand> handList = table.getHandList(1);
+        int handIdx = firstHandInPlay(table);
+
+        // Once Player 1's hands are all final, the dealer's final outcomes resolve them exactly.
+        if (handIdx == handList.size()) {
+            return dealerOutcomes.expectedEarnings(table, 1);
+        } else if (depth == 0) {
+            truncated.set(true);
+            return leafEvaluator.expectedEarnings(table);
+        }
+
+        double maxEarnings = Double.NEGATIVE_INFINITY;
+        for (Decision decision: possibleDecisions(table, handIdx, splitsLeft)) {
+            int childSplitsLeft = (decision == Decision.SPLIT) ? splitsLeft - 1 : splitsLeft;
+            maxEarnings = Math.max(maxEarnings, this.decisionEarnings(table, handIdx, decision,
+                    child -> this.searchEarnings(child, childSplitsLeft, depth - 1, truncated)));
+        }
+        return maxEarnings;
+    }
+
+    /**
+     * Returns a factory for the daemon threads that run the depth-limited searches.
+     *
+     * @return a factory for the daemon threads that run the depth-limited searches
+     */
+    private static ThreadFactory searchThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "ideal-search-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Fills in the decision for every query in the input batch based on the
+     * Statistically Best Strategy. Queries already in the memo are answered
+     * from it, and the roots of the rest are all submitted to the fork/join
+     * pool at once, so they're solved in parallel against the shared memo and
+     * positions shared between them are solved once. Without a parallel
+     * depth, the rest are solved one by one by the calling thread.
+     *
+     * @param batch the queries, each holding a table and the hand being played on it
+     * @param decisions the array to fill, which must hold at least batch.size() decisions
+     * @throws IllegalArgumentException if a shoe has more than PositionKey.MAX_DECKS decks
+     */
+    @Override
+    public void getDecisions(DecisionBatch batch, Decision[] decisions) {
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        List<ForkJoinTask<DecisionAndEarnings>> roots = new ArrayList<>(batch.size());
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                Table table = batch.getTable(i);
+                checkShoe(table);
+                int splitsLeft = this.rootSplitsLeft(table);
+                decisions[i] = this.knownDecision(this.keyOf(table, splitsLeft));
+                if (decisions[i] == null && this.parallelDepth == 0) {
+                    decisions[i] = this.solveDecision(table);
+                }
+                roots.add((decisions[i] == null) ? this.submitRoot(table.copy(), splitsLeft, cancelled) : null);
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                if (roots.get(i) != null) {
+                    decisions[i] = awaitRoot(roots.get(i), cancelled);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("IdealStrategy.getDecisions() FAILED", e);
+        } finally {
+            // Stops any roots still running once one of them fails.
+            cancelled.set(true);
         }
     }
 
@@ -0,0 +1,905 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Solves the expected earnings of player 1's decisions bottom-up, as an
+ * alternative to IdealStrategy's recursive search for batches of starting
+ * positions such as a whole chart, under a split mode which solves each
+ * split hand independently.
+ *
+ * Under such a mode, player 1 has exactly one hand in play in every position
+ * reached, so a position is packed into one long ordinal: the number of
+ * cards of each value class in the deck, the number of the pair's rank when
+ * the hand is a pair of ten-valued cards, the hand itself as its two value
+ * classes or, past two cards, its hard total and whether it holds an ace, and
+ * the number of splits left when the split mode caps them. The dealer's
+ * upcard is the same in every position reached from a root, so the roots are
+ * solved one upcard at a time. Every HIT and SPLIT draws exactly one card into
+ * a position still in play, while DOUBLE, STAY, and SURRENDER end the hand,
+ * so a position's level is the size of its deck.
+ *
+ * The positions reachable from the roots are enumerated from the largest
+ * deck down, each level held in dense arrays, and then solved from the
+ * smallest deck up, each level in parallel, reading only the expected
+ * earnings of the level below, which are already filled in. Hands which end
+ * are scored against the dealer's final outcomes, following
+ * Table.calculateEarnings(). The dealer's hands drawn from each position's
+ * deck are enumerated and solved over the same levels, since each of the
+ * dealer's cards also leaves one card fewer, rather than through
+ * DealerOutcomes' memo, which a whole chart's dealer hands overflow. Only
+ * the level being solved and the one below hold expected earnings and
+ * outcomes, so the memory used beyond the ordinals themselves is bounded by
+ * the two largest levels. The outcomes are expanded and summed in the same
+ * order as IdealStrategy's and DealerOutcomes', so the decisions and expected
+ * earnings are the same as IdealStrategy's under the same split mode, up to
+ * rounding in the last place.
+ */
+public class LevelSolver {
+
+    /**
+     * The number of value classes, ACE through NINE and then the ten-valued
+     * cards, and the index of the ten-valued class.
+     */
+    private static final int NUM_VALUES = 10, TEN = NUM_VALUES - 1;
+
+    /**
+     * The number of classes a card can be drawn from: the value classes, and
+     * then the ten-valued cards other than the pair's rank when the hand in
+     * play is a pair of ten-valued cards, whose rank is then drawn as TEN.
+     */
+    private static final int NUM_DRAW_CLASSES = NUM_VALUES + 1;
+
+    /**
+     * The radix of the count of each value class other than the ten-valued
+     * one, and of the pair's rank, in a position's ordinal: one more than the
+     * cards of a rank in a shoe of PositionKey.MAX_DECKS decks.
+     */
+    private static final long RADIX = 4L * PositionKey.MAX_DECKS + 1;
+
+    /**
+     * The codes of the hand in play. A hand of two cards is coded as the
+     * lower of its value classes times NUM_VALUES plus the higher, except
+     * that a pair of ten-valued cards is TEN_PAIR, and a hand of more cards
+     * is MULTI_CARD plus twice its hard total, plus 1 if it holds an ace.
+     */
+    private static final int TEN_PAIR = NUM_VALUES * NUM_VALUES, MULTI_CARD = TEN_PAIR + 1, NUM_HAND_CODES = 256;
+
+    /**
+     * The most splits left a position's ordinal holds. A single deck can't be
+     * split more often than that, and larger shoes are clamped to it, as in
+     * PositionKey.
+     */
+    private static final int MAX_SPLITS_LEFT = 15;
+
+    /**
+     * The number of codes of a dealer's hand which isn't final: four times
+     * its hard total, at most 16, plus 2 if it holds an ace, plus 1 if it's
+     * just the upcard.
+     */
+    private static final int NUM_DEALER_HANDS = 4 * 16 + 4;
+
+    /**
+     * IdealStrategy.decisionOrder, which breaks ties between decisions of
+     * equal expected earnings.
+     */
+    private static final Decision[] decisionOrder = IdealStrategy.decisionOrder.toArray(new Decision[0]);
+
+    /**
+     * How splits are evaluated.
+     */
+    private final SplitMode splitMode;
+
+    /**
+     * The positions of one level, or the dealer's hands of one level, indexed
+     * in the order they were first reached and looked up by ordinal in an
+     * open-addressing table, along with what's solved of each.
+     */
+    private static final class Level {
+
+        /**
+         * The ordinal of an empty slot of the table, which no position has.
+         */
+        private static final long EMPTY = -1;
+
+        /**
+         * The ordinal of each position, indexed by the order it was first reached.
+         */
+        private long[] ordinals = new long[16];
+
+        /**
+         * The number of positions.
+         */
+        private int size;
+
+        /**
+         * The table of ordinals, a power of 2 in size, which is kept at most
+         * half full.
+         */
+        private long[] slots = newSlots(32);
+
+        /**
+         * The index of the position in each slot of the table.
+         */
+        private int[] slotIndices = new int[32];
+
+        /**
+         * The expected earnings of each position, indexed as the ordinals.
+         */
+        private double[] earnings;
+
+        /**
+         * The index of the dealer's upcard drawing from each position's deck
+         * in the level of the dealer's hands, indexed as the ordinals.
+         */
+        private int[] dealerIndices;
+
+        /**
+         * The dealer's final outcomes against each position's deck, indexed
+         * as the ordinals.
+         */
+        private double[][] outcomes;
+
+        /**
+         * The probability of each of the dealer's final outcomes from each of
+         * a level of the dealer's hands, NUM_OUTCOMES to a hand, in the order
+         * of the ordinals.
+         */
+        private double[] handOutcomes;
+
+        /**
+         * The index in the level below of the dealer's hand reached from each
+         * of a level of the dealer's hands by drawing a card of each value
+         * class, indexed by NUM_VALUES times the hand's index plus the value
+         * class, or -1 if the hand is then final or the deck has no such card.
+         */
+        private int[] children;
+
+        /**
+         * Adds the input position to the level, unless it's already there.
+         *
+         * @param ordinal the ordinal of the position
+         * @return the index of the position
+         */
+        int add(long ordinal) {
+            if (2 * (this.size + 1) > this.slots.length) {
+                this.rehash(2 * this.slots.length);
+            }
+            int slot = this.slotOf(ordinal);
+            if (this.slots[slot] == ordinal) {
+                return this.slotIndices[slot];
+            }
+            this.slots[slot] = ordinal;
+            this.slotIndices[slot] = this.size;
+            if (this.size == this.ordinals.length) {
+                this.ordinals = Arrays.copyOf(this.ordinals, 2 * this.size);
+            }
+            this.ordinals[this.size] = ordinal;
+            return this.size++;
+        }
+
+        /**
+         * Drops the table once nothing more will be added or looked up, since
+         * the dealer's hands are reached from one another by index.
+         */
+        void dropTable() {
+            this.slots = null;
+            this.slotIndices = null;
+        }
+
+        /**
+         * Returns the index of the input position, which must be in this level.
+         *
+         * @param ordinal the ordinal of the position
+         * @return its index
+         */
+        int indexOf(long ordinal) {
+            return this.slotIndices[this.slotOf(ordinal)];
+        }
+
+        /**
+         * Returns the slot of the table which holds the input ordinal, or the
+         * empty slot where it would go.
+         *
+         * @param ordinal the ordinal of a position
+         * @return the slot
+         */
+        private int slotOf(long ordinal) {
+            int mask = this.slots.length - 1;
+            int slot = (int) (PositionKey.mix(ordinal) >>> 32) & mask;
+            while (this.slots[slot] != EMPTY && this.slots[slot] != ordinal) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Moves the ordinals to a table of the input size.
+         *
+         * @param numSlots the new size of the table, a power of 2
+         */
+        private void rehash(int numSlots) {
+            this.slots = newSlots(numSlots);
+            this.slotIndices = new int[numSlots];
+            for (int i = 0; i < this.size; i++) {
+                int slot = this.slotOf(this.ordinals[i]);
+                this.slots[slot] = this.ordinals[i];
+                this.slotIndices[slot] = i;
+            }
+        }
+
+        /**
+         * Returns an empty table of the input size.
+         *
+         * @param numSlots the size of the table
+         * @return the table, with every slot EMPTY
+         */
+        private static long[] newSlots(int numSlots) {
+            long[] slots = new long[numSlots];
+            Arrays.fill(slots, EMPTY);
+            return slots;
+        }
+    }
+
+    /**
+     * Constructs a solver which evaluates splits in the input mode.
+     *
+     * @param splitMode how splits are evaluated, which must solve each split hand independently
+     * @throws IllegalArgumentException if the split mode plays split hands jointly
+     */
+    public LevelSolver(SplitMode splitMode) {
+        if (splitMode.joint()) {
+            throw new IllegalArgumentException("LevelSolver() FAILED: a joint split mode holds several hands"
+                    + " in play at once, which a position's ordinal can't");
+        }
+        this.splitMode = splitMode;
+    }
+
+    /**
+     * Returns the expected earnings of each decision possible with player 1's
+     * hand in play on each input table, as IdealStrategy.getDecisionEarnings()
+     * does, solving every position reachable from the tables once.
+     *
+     * @param tables each holds the deck, player hands, and dealer hand, and isn't changed
+     * @return the expected earnings of each decision on each table, indexed by the decision's ordinal,
+     *           with NaN for decisions which aren't possible
+     * @throws IllegalArgumentException if a table's position can't be solved this way
+     */
+    public List<double[]> getDecisionEarnings(List<Table> tables) {
+        long[] rootOrdinals = new long[tables.size()];
+        int[] rootLevels = new int[tables.size()];
+        int[] upcards = new int[tables.size()];
+        for (int i = 0; i < tables.size(); i++) {
+            Table table = tables.get(i);
+            this.checkRoot(table);
+            rootOrdinals[i] = this.rootOrdinal(table);
+            rootLevels[i] = table.getDeck().size();
+            upcards[i] = Math.min(table.getDealerHand().getCards().get(0).getRank().ordinal(), TEN);
+        }
+
+        List<double[]> decisionEarnings = new ArrayList<>(tables.size());
+        for (int i = 0; i < tables.size(); i++) {
+            decisionEarnings.add(null);
+        }
+        for (int upcard = 0; upcard < NUM_VALUES; upcard++) {
+            List<Integer> roots = new ArrayList<>();
+            for (int i = 0; i < tables.size(); i++) {
+                if (upcards[i] == upcard) {
+                    roots.add(i);
+                }
+            }
+            if (!roots.isEmpty()) {
+                this.solveUpcard(upcard, roots, rootOrdinals, rootLevels, decisionEarnings);
+            }
+        }
+        return decisionEarnings;
+    }
+
+    /**
+     * Returns the expected earnings of each decision possible with player 1's
+     * hand in play on the input table.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @return the expected earnings of each decision, indexed by the decision's ordinal, with NaN for
+     *           decisions which aren't possible
+     * @throws IllegalArgumentException if the table's position can't be solved this way
+     */
+    public double[] getDecisionEarnings(Table table) {
+        return this.getDecisionEarnings(List.of(table)).get(0);
+    }
+
+    /**
+     * Returns the best decision for player 1's hand in play on the input
+     * table, breaking ties as IdealStrategy does.
+     *
+     * @param table holds the deck, player hands, and dealer hand, and isn't changed
+     * @return the best decision
+     * @throws IllegalArgumentException if the table's position can't be solved this way
+     */
+    public Decision getDecision(Table table) {
+        return bestDecision(this.getDecisionEarnings(table));
+    }
+
+    /**
+     * Returns the decision of the highest expected earnings, taking the first
+     * in IdealStrategy.decisionOrder among ties.
+     *
+     * @param decisionEarnings the expected earnings of each decision, with NaN for decisions which aren't possible
+     * @return the best decision
+     */
+    public static Decision bestDecision(double[] decisionEarnings) {
+        Decision bestDecision = null;
+        double maxEarnings = Double.NEGATIVE_INFINITY;
+        for (Decision decision: decisionOrder) {
+            double earnings = decisionEarnings[decision.ordinal()];
+            if (!Double.isNaN(earnings) && (bestDecision == null || earnings > maxEarnings)) {
+                bestDecision = decision;
+                maxEarnings = earnings;
+            }
+        }
+        return bestDecision;
+    }
+
+    /**
+     * Enumerates and solves every position reachable from the input roots,
+     * which all have the input upcard, and records the expected earnings of
+     * each root's decisions.
+     *
+     * @param upcard the value class of the dealer's upcard
+     * @param roots the indices of the roots with the upcard
+     * @param rootOrdinals the ordinal of every root
+     * @param rootLevels the level of every root
+     * @param decisionEarnings where the expected earnings of each root's decisions are recorded
+     */
+    private void solveUpcard(int upcard, List<Integer> roots, long[] rootOrdinals, int[] rootLevels,
+                             List<double[]> decisionEarnings) {
+        int maxLevel = 0;
+        for (int root: roots) {
+            maxLevel = Math.max(maxLevel, rootLevels[root]);
+        }
+        Level[] levels = new Level[maxLevel + 1];
+        Level[] dealerLevels = new Level[maxLevel + 1];
+        for (int level = 0; level <= maxLevel; level++) {
+            levels[level] = new Level();
+            dealerLevels[level] = new Level();
+        }
+        for (int root: roots) {
+            levels[rootLevels[root]].add(rootOrdinals[root]);
+        }
+
+        // Enumerate from the largest deck down, each position adding the positions it draws into,
+        // and the dealer's hands from each position's deck adding the hands they draw into.
+        int dealerUpcard = dealerHand(upcard + 1, upcard == 0, true);
+        int[] counts = new int[NUM_VALUES];
+        for (int level = maxLevel; level >= 0; level--) {
+            Level current = levels[level];
+            current.dealerIndices = new int[current.size];
+            for (int i = 0; i < current.size; i++) {
+                long ordinal = current.ordinals[i];
+                decode(ordinal, level, counts);
+                current.dealerIndices[i] = dealerLevels[level].add(deck(ordinal) * NUM_DEALER_HANDS + dealerUpcard);
+                if (level == 0) {
+                    continue;
+                }
+                int hand = hand(ordinal);
+                for (Decision decision: this.possibleDecisions(ordinal)) {
+                    if (decision != Decision.HIT && decision != Decision.SPLIT) {
+                        continue;
+                    }
+                    for (int drawClass = 0; drawClass < NUM_DRAW_CLASSES; drawClass++) {
+                        if (classCount(counts, pairCount(ordinal), hand, drawClass) > 0) {
+                            long child = this.child(ordinal, counts, decision, drawClass);
+                            if (child >= 0) {
+                                levels[level - 1].add(child);
+                            }
+                        }
+                    }
+                }
+            }
+
+            Level dealerLevel = dealerLevels[level];
+            dealerLevel.children = new int[NUM_VALUES * dealerLevel.size];
+            for (int i = 0; i < dealerLevel.size && level > 0; i++) {
+                long ordinal = dealerLevel.ordinals[i];
+                decodeDeck(ordinal / NUM_DEALER_HANDS, level, counts);
+                for (int value = 0; value < NUM_VALUES; value++) {
+                    long child = (counts[value] > 0) ? dealerChild(ordinal, counts, value) : -1;
+                    dealerLevel.children[NUM_VALUES * i + value] = (child >= 0) ? dealerLevels[level - 1].add(child) : -1;
+                }
+            }
+            dealerLevel.dropTable();
+        }
+
+        // Solve from the smallest deck up, each level reading only the one below.
+        for (int level = 0; level <= maxLevel; level++) {
+            Level current = levels[level];
+            Level below = (level > 0) ? levels[level - 1] : null;
+            Level dealerLevel = dealerLevels[level];
+            Level dealerBelow = (level > 0) ? dealerLevels[level - 1] : null;
+            int deckSize = level;
+            dealerLevel.handOutcomes = new double[DealerOutcomes.NUM_OUTCOMES * dealerLevel.size];
+            IntStream.range(0, dealerLevel.size).parallel().forEach(i ->
+                    solveDealerHand(dealerLevel, i, deckSize, dealerBelow));
+            current.outcomes = new double[current.size][];
+            current.earnings = new double[current.size];
+            IntStream.range(0, current.size).parallel().forEach(i -> {
+                int dealerIndex = current.dealerIndices[i];
+                current.outcomes[i] = Arrays.copyOfRange(dealerLevel.handOutcomes,
+                        DealerOutcomes.NUM_OUTCOMES * dealerIndex, DealerOutcomes.NUM_OUTCOMES * (dealerIndex + 1));
+                current.earnings[i] = bestEarnings(this.decisionEarnings(current, i, deckSize, below));
+            });
+            for (int root: roots) {
+                if (rootLevels[root] == level) {
+                    decisionEarnings.set(root, this.decisionEarnings(current, current.indexOf(rootOrdinals[root]),
+                            deckSize, below));
+                }
+            }
+            if (below != null) {
+                levels[level - 1] = null;
+                dealerLevels[level - 1] = null;
+            }
+        }
+    }
+
+    /**
+     * Fills in the probability of each of the dealer's final outcomes from the
+     * input dealer's hand, which isn't final, drawing from its deck, as
+     * DealerOutcomes.distribution() does with the deck's ten-valued cards all
+     * counted as TENs.
+     *
+     * @param level the level of the dealer's hand, whose children are filled in
+     * @param index the index of the dealer's hand in its level
+     * @param deckSize the number of cards in the deck
+     * @param below the solved dealer level one card further, or null if the deck is empty
+     */
+    private static void solveDealerHand(Level level, int index, int deckSize, Level below) {
+        long ordinal = level.ordinals[index];
+        int[] counts = new int[NUM_VALUES];
+        decodeDeck(ordinal / NUM_DEALER_HANDS, deckSize, counts);
+        int dealerHand = (int) (ordinal % NUM_DEALER_HANDS);
+        int hard = dealerHand / 4;
+        boolean ace = dealerHand / 2 % 2 == 1;
+        int numCards = (dealerHand % 2 == 1) ? 1 : 2;
+        double[] outcomes = level.handOutcomes;
+        int offset = DealerOutcomes.NUM_OUTCOMES * index;
+        for (int value = 0; value < NUM_VALUES; value++) {
+            if (counts[value] == 0) {
+                continue;
+            }
+            double probability = (double) counts[value] / deckSize;
+            int nextHard = hard + value + 1;
+            boolean nextAce = ace || value == 0;
+            if (DealerOutcomes.isFinal(nextHard, nextAce)) {
+                outcomes[offset + DealerOutcomes.outcome(nextHard, nextAce, numCards + 1)] += probability;
+            } else {
+                int nextOffset = DealerOutcomes.NUM_OUTCOMES * level.children[NUM_VALUES * index + value];
+                for (int outcome = 0; outcome < DealerOutcomes.NUM_OUTCOMES; outcome++) {
+                    outcomes[offset + outcome] += probability * below.handOutcomes[nextOffset + outcome];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the ordinal of the dealer's hand and deck reached by the dealer
+     * drawing a card of the input value class.
+     *
+     * @param ordinal the ordinal of the dealer's hand and deck
+     * @param counts the number of cards of each value class in the deck, which is restored
+     * @param value the value class of the card drawn
+     * @return the ordinal reached, or -1 if the dealer's hand is then final
+     */
+    private static long dealerChild(long ordinal, int[] counts, int value) {
+        int dealerHand = (int) (ordinal % NUM_DEALER_HANDS);
+        int hard = dealerHand / 4 + value + 1;
+        boolean ace = dealerHand / 2 % 2 == 1 || value == 0;
+        if (DealerOutcomes.isFinal(hard, ace)) {
+            return -1;
+        }
+        counts[value]--;
+        long child = encodeDeck(counts) * NUM_DEALER_HANDS + dealerHand(hard, ace, false);
+        counts[value]++;
+        return child;
+    }
+
+    /**
+     * Returns the code of a dealer's hand which isn't final.
+     *
+     * @param hard the hard total of the hand
+     * @param ace whether the hand holds an ace
+     * @param upcardOnly whether the hand is just the upcard
+     * @return the code of the hand
+     */
+    private static int dealerHand(int hard, boolean ace, boolean upcardOnly) {
+        return 4 * hard + (ace ? 2 : 0) + (upcardOnly ? 1 : 0);
+    }
+
+    /**
+     * Returns the expected earnings of each decision possible in the input
+     * position.
+     *
+     * @param level the position's level, whose dealer outcomes are filled in
+     * @param index the index of the position in its level
+     * @param deckSize the number of cards in the position's deck
+     * @param below the solved level of the positions one card further, or null if the deck is empty
+     * @return the expected earnings of each decision, indexed by the decision's ordinal, with NaN for
+     *           decisions which aren't possible
+     */
+    private double[] decisionEarnings(Level level, int index, int deckSize, Level below) {
+        long ordinal = level.ordinals[index];
+        int[] counts = new int[NUM_VALUES];
+        decode(ordinal, deckSize, counts);
+        int hand = hand(ordinal);
+        int pairCount = pairCount(ordinal);
+        double[] decisionEarnings = new double[Decision.values().length];
+        Arrays.fill(decisionEarnings, Double.NaN);
+        for (Decision decision: this.possibleDecisions(ordinal)) {
+            double earnings = 0.0;
+            switch (decision) {
+                case STAY -> earnings = DealerOutcomes.expectedEarnings(level.outcomes[index],
+                        bestValue(hand), isBlackJack(hand), 1.0, false);
+                case SURRENDER -> earnings = -0.5;
+                case HIT, DOUBLE -> {
+                    double bet = (decision == Decision.DOUBLE) ? 2.0 : 1.0;
+                    for (int drawClass = 0; drawClass < NUM_DRAW_CLASSES; drawClass++) {
+                        int count = classCount(counts, pairCount, hand, drawClass);
+                        if (count == 0) {
+                            continue;
+                        }
+                        double probability = (double) count / deckSize;
+                        int value = Math.min(drawClass, TEN);
+                        int hard = hardTotal(hand) + value + 1;
+                        boolean ace = hasAce(hand) || value == 0;
+                        if (hard > 21) {
+                            earnings += probability * -bet;
+                        } else {
+                            // A doubled hand's deck is the deck of the same hand hit instead.
+                            int child = below.indexOf(this.child(ordinal, counts, Decision.HIT, drawClass));
+                            earnings += probability * ((decision == Decision.HIT) ? below.earnings[child]
+                                    : DealerOutcomes.expectedEarnings(below.outcomes[child], bestValue(hard, ace),
+                                    false, bet, false));
+                        }
+                    }
+                }
+                case SPLIT -> {
+                    // Each of the two split hands is dealt its second card from the same deck.
+                    for (int splitHand = 0; splitHand < 2; splitHand++) {
+                        for (int drawClass = 0; drawClass < NUM_DRAW_CLASSES; drawClass++) {
+                            int count = classCount(counts, pairCount, hand, drawClass);
+                            if (count > 0) {
+                                earnings += (double) count / deckSize
+                                        * below.earnings[below.indexOf(this.child(ordinal, counts, decision, drawClass))];
+                            }
+                        }
+                    }
+                }
+            }
+            decisionEarnings[decision.ordinal()] = earnings;
+        }
+        return decisionEarnings;
+    }
+
+    /**
+     * Returns the highest of the input expected earnings.
+     *
+     * @param decisionEarnings the expected earnings of each decision, with NaN for decisions which aren't possible
+     * @return the expected earnings of the best decision
+     */
+    private static double bestEarnings(double[] decisionEarnings) {
+        return decisionEarnings[bestDecision(decisionEarnings).ordinal()];
+    }
+
+    /**
+     * Returns the decisions possible in the input position, as
+     * PlayerHand.getPossibleDecisions() and IdealStrategy do: only HIT and
+     * STAY past two cards, DOUBLE on a hard total of at most 11, and SPLIT on
+     * a pair while splits are left.
+     *
+     * @param ordinal the ordinal of the position
+     * @return the possible decisions
+     */
+    private List<Decision> possibleDecisions(long ordinal) {
+        int hand = hand(ordinal);
+        if (hand >= MULTI_CARD) {
+            return List.of(Decision.HIT, Decision.STAY);
+        }
+        List<Decision> decisions = new ArrayList<>(List.of(Decision.HIT, Decision.STAY));
+        if (hardTotal(hand) <= 11) {
+            decisions.add(Decision.DOUBLE);
+        }
+        if (isPair(hand) && (!this.splitMode.isCapped() || splitsLeft(ordinal) > 0)) {
+            decisions.add(Decision.SPLIT);
+        }
+        decisions.add(Decision.SURRENDER);
+        return decisions;
+    }
+
+    /**
+     * Returns the ordinal of the position reached by drawing a card of the
+     * input class after hitting or splitting in the input position.
+     *
+     * @param ordinal the ordinal of the position
+     * @param counts the number of cards of each value class in the position's deck, which is restored
+     * @param decision HIT or SPLIT
+     * @param drawClass the class of the card drawn
+     * @return the ordinal of the position reached, or -1 if the hand busts
+     */
+    private long child(long ordinal, int[] counts, Decision decision, int drawClass) {
+        int hand = hand(ordinal);
+        int value = Math.min(drawClass, TEN);
+        int childHand;
+        int childPairCount = 0;
+        int childSplitsLeft = splitsLeft(ordinal);
+        if (decision == Decision.HIT) {
+            int hard = hardTotal(hand) + value + 1;
+            if (hard > 21) {
+                return -1;
+            }
+            childHand = MULTI_CARD + 2 * hard + (hasAce(hand) || value == 0 ? 1 : 0);
+        } else {
+            if (hand == TEN_PAIR && drawClass == TEN) {
+                childHand = TEN_PAIR;
+                childPairCount = pairCount(ordinal) - 1;
+            } else {
+                int pairValue = (hand == TEN_PAIR) ? TEN : hand / NUM_VALUES;
+                childHand = Math.min(pairValue, value) * NUM_VALUES + Math.max(pairValue, value);
+            }
+            if (this.splitMode.isCapped()) {
+                childSplitsLeft--;
+            }
+        }
+        counts[value]--;
+        long child = encode(counts, childPairCount, childHand, childSplitsLeft);
+        counts[value]++;
+        return child;
+    }
+
+    /**
+     * Checks that the input table's position can be solved bottom-up: player
+     * 1 has one hand of at least two cards in play, the dealer has only the
+     * upcard, and the shoe's counts fit in an ordinal.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @throws IllegalArgumentException if the position can't be solved this way
+     */
+    private void checkRoot(Table table) {
+        List<PlayerHand> handList = table.getHandList(1);
+        if (handList.size() != 1 || handList.get(0).isFinal() || handList.get(0).handSize() < 2) {
+            throw new IllegalArgumentException("LevelSolver.getDecisionEarnings() FAILED: player 1 must have"
+                    + " one hand of at least two cards in play");
+        }
+        if (table.getDealerHand().handSize() != 1) {
+            throw new IllegalArgumentException("LevelSolver.getDecisionEarnings() FAILED: the dealer must have"
+                    + " only the upcard");
+        }
+        if (table.getDeck().getNumDecks() > PositionKey.MAX_DECKS) {
+            throw new IllegalArgumentException("LevelSolver.getDecisionEarnings() FAILED: a shoe of "
+                    + table.getDeck().getNumDecks() + " decks, but an ordinal can only hold up to "
+                    + PositionKey.MAX_DECKS);
+        }
+    }
+
+    /**
+     * Returns the ordinal of the input table's position.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @return the ordinal of the position
+     */
+    private long rootOrdinal(Table table) {
+        int[] rankCounts = table.getDeck().rankCounts();
+        int[] counts = new int[NUM_VALUES];
+        for (int rank = 0; rank < rankCounts.length; rank++) {
+            counts[Math.min(rank, TEN)] += rankCounts[rank];
+        }
+
+        PlayerHand playerHand = table.getHandList(1).get(0);
+        List<Card> cards = playerHand.getCards();
+        int hand;
+        int pairCount = 0;
+        if (cards.size() > 2) {
+            hand = MULTI_CARD + 2 * playerHand.getHard() + (playerHand.getSoft() > playerHand.getHard() ? 1 : 0);
+        } else if (playerHand.isPair() && cards.get(0).hardValue() == 10) {
+            hand = TEN_PAIR;
+            pairCount = rankCounts[cards.get(0).getRank().ordinal()];
+        } else {
+            int first = Math.min(cards.get(0).getRank().ordinal(), TEN);
+            int second = Math.min(cards.get(1).getRank().ordinal(), TEN);
+            hand = Math.min(first, second) * NUM_VALUES + Math.max(first, second);
+        }
+        int splitsLeft = this.splitMode.isCapped() ? Math.min(this.splitMode.maxSplits(), MAX_SPLITS_LEFT) : 0;
+        return encode(counts, pairCount, hand, splitsLeft);
+    }
+
+    /**
+     * Returns the ordinal of a position. The count of the ten-valued class is
+     * left out, since it follows from the level.
+     *
+     * @param counts the number of cards of each value class in the deck
+     * @param pairCount the number of cards of the pair's rank in the deck if the hand is TEN_PAIR, or 0
+     * @param hand the code of the hand in play
+     * @param splitsLeft the number of splits left if they're capped, or 0
+     * @return the ordinal, which isn't negative
+     */
+    private static long encode(int[] counts, int pairCount, int hand, int splitsLeft) {
+        long ordinal = encodeDeck(counts) * RADIX + pairCount;
+        return (ordinal * NUM_HAND_CODES + hand) * (MAX_SPLITS_LEFT + 1) + splitsLeft;
+    }
+
+    /**
+     * Returns the number of cards of each value class in a deck as one
+     * number, leaving out the count of the ten-valued class, since it follows
+     * from the level.
+     *
+     * @param counts the number of cards of each value class in the deck
+     * @return the deck's number, which is less than RADIX to the power of TEN
+     */
+    private static long encodeDeck(int[] counts) {
+        long deck = 0;
+        for (int value = TEN - 1; value >= 0; value--) {
+            deck = deck * RADIX + counts[value];
+        }
+        return deck;
+    }
+
+    /**
+     * Returns the part of the input ordinal which holds its position's deck.
+     *
+     * @param ordinal the ordinal of the position
+     * @return the deck's number, as encodeDeck() returns it
+     */
+    private static long deck(long ordinal) {
+        return ordinal / ((MAX_SPLITS_LEFT + 1) * NUM_HAND_CODES) / RADIX;
+    }
+
+    /**
+     * Fills in the number of cards of each value class in the deck of the
+     * input position.
+     *
+     * @param ordinal the ordinal of the position
+     * @param deckSize the number of cards in the position's deck
+     * @param counts where the number of cards of each value class is filled in
+     */
+    private static void decode(long ordinal, int deckSize, int[] counts) {
+        decodeDeck(deck(ordinal), deckSize, counts);
+    }
+
+    /**
+     * Fills in the number of cards of each value class in the input deck.
+     *
+     * @param deck the deck's number, as encodeDeck() returns it
+     * @param deckSize the number of cards in the deck
+     * @param counts where the number of cards of each value class is filled in
+     */
+    private static void decodeDeck(long deck, int deckSize, int[] counts) {
+        long composition = deck;
+        int numTens = deckSize;
+        for (int value = 0; value < TEN; value++) {
+            counts[value] = (int) (composition % RADIX);
+            composition /= RADIX;
+            numTens -= counts[value];
+        }
+        counts[TEN] = numTens;
+    }
+
+    /**
+     * Returns the code of the hand in play in the input position.
+     *
+     * @param ordinal the ordinal of the position
+     * @return the code of the hand
+     */
+    private static int hand(long ordinal) {
+        return (int) (ordinal / (MAX_SPLITS_LEFT + 1) % NUM_HAND_CODES);
+    }
+
+    /**
+     * Returns the number of cards of the pair's rank in the input position's
+     * deck, if its hand is TEN_PAIR.
+     *
+     * @param ordinal the ordinal of the position
+     * @return the number of cards of the pair's rank, or 0
+     */
+    private static int pairCount(long ordinal) {
+        return (int) (ordinal / ((MAX_SPLITS_LEFT + 1) * NUM_HAND_CODES) % RADIX);
+    }
+
+    /**
+     * Returns the number of splits left in the input position.
+     *
+     * @param ordinal the ordinal of the position
+     * @return the number of splits left if they're capped, or 0
+     */
+    private static int splitsLeft(long ordinal) {
+        return (int) (ordinal % (MAX_SPLITS_LEFT + 1));
+    }
+
+    /**
+     * Returns the number of cards of the input class in the deck, in the
+     * order Table.deckProbabilities() counts them: the pair's rank before the
+     * other ten-valued cards when the hand is TEN_PAIR.
+     *
+     * @param counts the number of cards of each value class in the deck
+     * @param pairCount the number of cards of the pair's rank in the deck if the hand is TEN_PAIR
+     * @param hand the code of the hand in play
+     * @param drawClass the class of the card drawn
+     * @return the number of cards of the class
+     */
+    private static int classCount(int[] counts, int pairCount, int hand, int drawClass) {
+        if (drawClass < TEN) {
+            return counts[drawClass];
+        } else if (hand != TEN_PAIR) {
+            return (drawClass == TEN) ? counts[TEN] : 0;
+        }
+        return (drawClass == TEN) ? pairCount : counts[TEN] - pairCount;
+    }
+
+    /**
+     * Returns the hard total of the input hand.
+     *
+     * @param hand the code of the hand
+     * @return its hard total
+     */
+    private static int hardTotal(int hand) {
+        if (hand >= MULTI_CARD) {
+            return (hand - MULTI_CARD) / 2;
+        } else if (hand == TEN_PAIR) {
+            return 20;
+        }
+        return hand / NUM_VALUES + hand % NUM_VALUES + 2;
+    }
+
+    /**
+     * Returns whether the input hand holds an ace.
+     *
+     * @param hand the code of the hand
+     * @return true iff the hand holds an ace
+     */
+    private static boolean hasAce(int hand) {
+        if (hand >= MULTI_CARD) {
+            return (hand - MULTI_CARD) % 2 == 1;
+        }
+        return hand < NUM_VALUES;
+    }
+
+    /**
+     * Returns whether the input hand is a pair.
+     *
+     * @param hand the code of the hand
+     * @return true iff the hand is two cards of the same rank
+     */
+    private static boolean isPair(int hand) {
+        return hand == TEN_PAIR || (hand < TEN_PAIR && hand / NUM_VALUES == hand % NUM_VALUES && hand % NUM_VALUES != TEN);
+    }
+
+    /**
+     * Returns whether the input hand is a Blackjack: two cards with a soft
+     * total of 21.
+     *
+     * @param hand the code of the hand
+     * @return true iff the hand is a Blackjack
+     */
+    private static boolean isBlackJack(int hand) {
+        return hand < TEN_PAIR && hasAce(hand) && hardTotal(hand) == 11;
+    }
+
+    /**
+     * Returns the best value of the input hand, as AHand.bestValue() does.
+     *
+     * @param hand the code of the hand
+     * @return its best value
+     */
+    private static int bestValue(int hand) {
+        return bestValue(hardTotal(hand), hasAce(hand));
+    }
+
+    /**
+     * Returns the best value of a hand of the input hard total.
+     *
+     * @param hard the hard total of the hand
+     * @param ace whether the hand holds an ace
+     * @return its best value
+     */
+    private static int bestValue(int hard, boolean ace) {
+        return (ace && hard + 10 <= 21) ? hard + 10 : hard;
+    }
+}
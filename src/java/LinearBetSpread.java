@@ -0,0 +1,43 @@
+/**
+ * A bet spread which bets the minimum at a true count of 1 or less,
+ * and one more minimum bet for each further point of true count,
+ * up to the maximum bet.
+ */
+public class LinearBetSpread implements IBetSpreadPolicy {
+
+    /**
+     * The bet at a neutral or negative count.
+     */
+    private final double minBet;
+
+    /**
+     * The largest bet ever made.
+     */
+    private final double maxBet;
+
+    /**
+     * Constructs a linear bet spread between the input bets.
+     *
+     * @param minBet the bet at a neutral or negative count
+     * @param maxBet the largest bet ever made
+     */
+    public LinearBetSpread(double minBet, double maxBet) {
+        if (minBet <= 0 || maxBet < minBet) {
+            throw new IllegalArgumentException("Invalid bet spread: " + minBet + " to " + maxBet);
+        }
+        this.minBet = minBet;
+        this.maxBet = maxBet;
+    }
+
+    @Override
+    public double getBet(double trueCount) {
+        double units = Math.max(1.0, Math.floor(trueCount));
+        return Math.min(this.maxBet, this.minBet * units);
+    }
+
+    @Override
+    public String toString() {
+        return "Linear " + this.minBet + "-" + this.maxBet;
+    }
+
+}
@@ -1,6 +1,8 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
 import java.util.function.Supplier;
 
 /**
@@ -22,59 +24,98 @@ public class MetricComputer {
      * @param numTrials the number of random tables to play with each strategy
      */
     public static Map<IPlayerStrategy, MetricRecorder> computeMetrics(List<IPlayerStrategy> playerStrategies, Supplier<Table> tableSupplier, int numTrials) {
+        return computeMetrics(playerStrategies, tableSupplier, numTrials, new HandResultPublisher());
+    }
+
+    /**
+     * Computes the total-earning, max-earning, and min-earning metrics for
+     * each of the strategies in the input list, publishing the result of every
+     * hand to the input publisher along the way. The metrics are recorded by
+     * subscribing a MetricRecorder per strategy to the publisher, so any other
+     * subscribers see exactly the results the metrics are computed from.
+     *
+     * The publisher is closed once every trial has been played.
+     *
+     * @param playerStrategies a list of strategies
+     * @param tableSupplier creates the tables for use in each trial
+     * @param numTrials the number of random tables to play with each strategy
+     * @param publisher receives the result of every hand played
+     */
+    public static Map<IPlayerStrategy, MetricRecorder> computeMetrics(List<IPlayerStrategy> playerStrategies, Supplier<Table> tableSupplier, int numTrials, HandResultPublisher publisher) {
 
         /*
          * Initialize a map from each strategy to an object which can keep track
-         * of the metrics.
+         * of the metrics, subscribed to the results of that strategy.
          */
         Map<IPlayerStrategy, MetricRecorder> metricMap = new HashMap<>();
         for (IPlayerStrategy playerStrategy: playerStrategies) {
-            metricMap.put(playerStrategy, new MetricRecorder());
+            MetricRecorder metricRecorder = new MetricRecorder(playerStrategy);
+            publisher.subscribe(metricRecorder);
+            metricMap.put(playerStrategy, metricRecorder);
         }
 
-        // Play numTrials random tables using each strategy.
-        for (int i = 0; i < numTrials; i++) {
-            if (i % 1000000 == 0) {
-                System.out.println(i / 1000000);
-            }
-            Table randomTable = tableSupplier.get();
-            for (IPlayerStrategy playerStrategy: playerStrategies) {
-
-                debugln("\n\n\n\n\n\n\n\n\n\nUsing " + playerStrategy + " Strategy");
-
-                // Each strategy uses the same table, for fairness.
-                Table tableCopy = randomTable.copy();
-                debugln(tableCopy.toString());
-
-                // Play player 1's hand with the strategy.
-                double earnings = tableCopy.play(1, playerStrategy);
-
-                // Update the object keeping track of the metrics.
-                metricMap.get(playerStrategy).updateEarnings(earnings);
+        try {
+            playTrials(playerStrategies, tableSupplier, numTrials, publisher);
+        } catch (RuntimeException e) {
+            publisher.closeExceptionally(e);
+            throw e;
+        }
+        publisher.close();
 
-                debugln("\nUpdated metric:\n" + metricMap.get(playerStrategy));
+        // Wait for every recorder to finish consuming the results.
+        try {
+            for (MetricRecorder metricRecorder: metricMap.values()) {
+                metricRecorder.awaitCompletion();
             }
-            System.out.println(metricMap);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while recording metrics", e);
         }
 
         return metricMap;
     }
 
     public static Map<IPlayerStrategy, MetricRecorder> computeMetrics(List<IPlayerStrategy> playerStrategies, String inputCSVLine, int numOtherPlayers, int numTrials) {
+        return computeMetrics(playerStrategies, () -> new Table(inputCSVLine, numOtherPlayers), numTrials);
+    }
 
-        /*
-         * Initialize a map from each strategy to an object which can keep track
-         * of the metrics.
-         */
-        Map<IPlayerStrategy, MetricRecorder> metricMap = new HashMap<>();
-        for (IPlayerStrategy playerStrategy: playerStrategies) {
-            metricMap.put(playerStrategy, new MetricRecorder());
-        }
+    /**
+     * Computes the metrics for each of the strategies on tables dealt from the
+     * input line of CSV, shuffling the rest of each deck with the input random
+     * number generator so that the results are reproducible.
+     *
+     * @param playerStrategies a list of strategies
+     * @param inputCSVLine a line of CSV holding the cards on the table
+     * @param numOtherPlayers the number of other players (excluding the dealer and player 1)
+     * @param numTrials the number of random tables to play with each strategy
+     * @param random the source of randomness for shuffling the decks
+     */
+    public static Map<IPlayerStrategy, MetricRecorder> computeMetrics(List<IPlayerStrategy> playerStrategies, String inputCSVLine, int numOtherPlayers, int numTrials, Random random) {
+        return computeMetrics(playerStrategies, () -> new Table(inputCSVLine, numOtherPlayers, random), numTrials);
+    }
+
+    /**
+     * Plays numTrials tables with each of the strategies, publishing the
+     * result of every hand. Nothing is built for the publisher while it has
+     * no subscribers.
+     *
+     * @param playerStrategies a list of strategies
+     * @param tableSupplier creates the tables for use in each trial
+     * @param numTrials the number of random tables to play with each strategy
+     * @param publisher receives the result of every hand played
+     */
+    private static void playTrials(List<IPlayerStrategy> playerStrategies, Supplier<Table> tableSupplier, int numTrials, HandResultPublisher publisher) {
 
         // Play numTrials random tables using each strategy.
         for (int i = 0; i < numTrials; i++) {
-            System.out.println(i);
-            Table randomTable = new Table(inputCSVLine, numOtherPlayers);
+            if (i % 1000000 == 0) {
+                System.out.println(i / 1000000);
+            }
+            // Stop early if the thread running the trials was asked to stop.
+            if (i % 1024 == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Interrupted after " + i + " trials");
+            }
+            Table randomTable = tableSupplier.get();
             for (IPlayerStrategy playerStrategy: playerStrategies) {
 
                 debugln("\n\n\n\n\n\n\n\n\n\nUsing " + playerStrategy + " Strategy");
@@ -86,15 +127,31 @@ public class MetricComputer {
                 // Play player 1's hand with the strategy.
                 double earnings = tableCopy.play(1, playerStrategy);
 
-                // Update the object keeping track of the metrics.
-                metricMap.get(playerStrategy).updateEarnings(earnings);
+                // Hand the result to whoever is keeping track of the metrics.
+                if (publisher.hasSubscribers()) {
+                    publisher.publish(HandResult.of(i, playerStrategy, randomTable, tableCopy, earnings));
+                }
 
-                debugln("\nUpdated metric:\n" + metricMap.get(playerStrategy));
+                debugln("\nEarnings: " + earnings);
             }
-            //System.out.println(metricMap);
         }
+    }
 
-        return metricMap;
+    /**
+     * Plays the input table once with each of the strategies, each on its own
+     * copy of the table, and returns the earnings of each strategy.
+     *
+     * @param playerStrategies a list of strategies
+     * @param table the table to play, which is left unchanged
+     * @return the earnings of each strategy, in the order of the input list
+     */
+    public static double[] playTrial(List<IPlayerStrategy> playerStrategies, Table table) {
+        double[] earnings = new double[playerStrategies.size()];
+        for (int i = 0; i < earnings.length; i++) {
+            // Each strategy uses the same table, for fairness.
+            earnings[i] = table.copy().play(1, playerStrategies.get(i));
+        }
+        return earnings;
     }
 
     private static void debugln(String msg) {
@@ -102,4 +159,4 @@ public class MetricComputer {
             System.out.println(msg);
         }
     }
-}
\ No newline at end of file
+}
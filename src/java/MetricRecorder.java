@@ -1,7 +1,21 @@
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+
 /**
  * An object which can keep track of multiple metrics for a strategy.
+ *
+ * A recorder can either be updated directly, or subscribed to a stream of
+ * hand results, in which case it records the results of its strategy and
+ * ignores the rest.
  */
-public class MetricRecorder {
+public class MetricRecorder implements Flow.Subscriber<List<HandResult>> {
+
+    /**
+     * The strategy whose results are recorded from a stream of hand results,
+     * or null to record every result in the stream.
+     */
+    private final IPlayerStrategy strategy;
 
     /**
      * The total earnings by this strategy so far.
@@ -20,10 +34,37 @@ public class MetricRecorder {
      */
     private double minEarnings;
 
+    /**
+     * The subscription to the stream of hand results, if subscribed to one.
+     */
+    private Flow.Subscription subscription;
+
+    /**
+     * Counts down once the stream of hand results completes or fails.
+     */
+    private final CountDownLatch streamDone = new CountDownLatch(1);
+
+    /**
+     * The error that ended the stream of hand results, if any.
+     */
+    private volatile Throwable streamError;
+
     /**
      * Initializes the total earnings, maximum gain, and minimum gain to 0.
      */
     public MetricRecorder() {
+        this(null);
+    }
+
+    /**
+     * Initializes the total earnings, maximum gain, and minimum gain to 0,
+     * recording only the results of the input strategy when subscribed to
+     * a stream of hand results.
+     *
+     * @param strategy the strategy whose results are recorded, or null for all results
+     */
+    public MetricRecorder(IPlayerStrategy strategy) {
+        this.strategy = strategy;
         this.totalEarnings = this.maxEarnings = this.minEarnings = 0.0;
     }
 
@@ -48,6 +89,47 @@ public class MetricRecorder {
         return this.totalEarnings;
     }
 
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<HandResult> results) {
+        for (HandResult result: results) {
+            if (this.strategy == null || result.strategy() == this.strategy) {
+                this.updateEarnings(result.earnings());
+            }
+        }
+        this.subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        this.streamError = error;
+        this.streamDone.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+        this.streamDone.countDown();
+    }
+
+    /**
+     * Blocks until the stream of hand results this recorder is subscribed to
+     * has been fully recorded.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the stream failed
+     */
+    public void awaitCompletion() throws InterruptedException {
+        this.streamDone.await();
+        if (this.streamError != null) {
+            throw new IllegalStateException("The stream of hand results failed", this.streamError);
+        }
+    }
+
     @Override
     public String toString() {
         return "Total Earnings: " + totalEarnings
@@ -55,4 +137,4 @@ public class MetricRecorder {
                 + "\nMin Earnings: " + minEarnings;
     }
 
-}
\ No newline at end of file
+}
@@ -44,6 +44,22 @@ public class NaiveStrategy implements IPlayerStrategy {
         }
     }
 
+    /**
+     * Fills in the decision for every query in the input batch based on
+     * the hard and soft values of each hand.
+     *
+     * @param batch the queries, each holding a table and the hand being played on it
+     * @param decisions the array to fill, which must hold at least batch.size() decisions
+     */
+    @Override
+    public void getDecisions(DecisionBatch batch, Decision[] decisions) {
+        for (int i = 0; i < batch.size(); i++) {
+            int hard = batch.getHardTotal(i);
+            int soft = hard + (batch.containsAce(i) ? 10 : 0);
+            decisions[i] = (hard > 11 || soft > 17) ? Decision.STAY : Decision.HIT;
+        }
+    }
+
     @Override
     public String toString() {
         return "Naive";
@@ -0,0 +1,524 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the exact expected earnings of playing player 1's hands with a
+ * fixed, deterministic strategy, by dynamic programming over the cards left
+ * in the deck rather than by simulation.
+ *
+ * Every position reachable under the strategy is expanded once per card rank
+ * that can be drawn, weighted by its probability, and memoized under its
+ * PositionKey, so positions reached by different routes are solved once.
+ * Once every hand is final, the dealer's hand is resolved with a separately
+ * memoized distribution over the dealer's final totals. Positions are solved
+ * for a single 52-card deck, as dealt by Table.
+ *
+ * The strategy is shown a table holding the remaining deck, the dealer's
+ * upcard, and player 1's hands. The results are exact for chart strategies,
+ * whose decisions depend only on the upcard and the hand being played, such
+ * as NaiveStrategy, WikiStrategy, and DecisionChart. For a strategy which
+ * reads the deck, such as CountingStrategy, each split hand is played out as
+ * though it were the only hand, which slightly misjudges the deck its later
+ * decisions see.
+ */
+public class PolicyEvaluator {
+
+    /**
+     * The number of card ranks.
+     */
+    private static final int numRanks = Rank.values().length;
+
+    /**
+     * The hard value of each rank, indexed by the rank's ordinal.
+     */
+    private static final int[] rankValues = Arrays.stream(Rank.values()).mapToInt(Card.hardValues::get).toArray();
+
+    /**
+     * The strategy whose decisions are evaluated.
+     */
+    private final IPlayerStrategy playerStrategy;
+
+    /**
+     * The expected earnings of each position solved so far.
+     */
+    private final Map<PositionKey, Double> earningsMemo = new ConcurrentHashMap<>();
+
+    /**
+     * The distribution over the dealer's final outcomes for each deck
+     * composition and dealer hand, shared with every other solver.
+     */
+    private final DealerOutcomes dealerOutcomes = DealerOutcomes.singleton();
+
+    /**
+     * Constructs an evaluator of the input strategy.
+     *
+     * @param playerStrategy a deterministic strategy
+     */
+    public PolicyEvaluator(IPlayerStrategy playerStrategy) {
+        this.playerStrategy = playerStrategy;
+    }
+
+    /**
+     * Returns the exact expected earnings of the strategy over every possible
+     * deal from a full deck: one card to the dealer, then two to player 1.
+     * The upcards are solved in parallel.
+     *
+     * @return the expected earnings of the strategy per hand
+     */
+    public double expectedEarnings() {
+        return IntStream.range(0, numRanks).parallel().mapToDouble(upcard -> {
+            int[] deck = new int[numRanks];
+            Arrays.fill(deck, 4);
+            double upcardProbability = deck[upcard] / 52.0;
+            deck[upcard]--;
+
+            double earnings = 0.0;
+            for (int first = 0; first < numRanks; first++) {
+                double firstProbability = deck[first] / 51.0;
+                deck[first]--;
+                for (int second = 0; second < numRanks; second++) {
+                    if (deck[second] == 0) {
+                        continue;
+                    }
+                    double secondProbability = deck[second] / 50.0;
+                    deck[second]--;
+                    Position position = new Position(deck.clone(), upcard);
+                    position.hands.add(new Hand(first, second));
+                    earnings += upcardProbability * firstProbability * secondProbability * this.evaluate(position);
+                    deck[second]++;
+                }
+                deck[first]++;
+            }
+            return earnings;
+        }).sum();
+    }
+
+    /**
+     * Returns the exact expected earnings of the strategy for player 1 on the
+     * table described by the input line of CSV.
+     *
+     * @param csvLine a line of CSV holding the cards on the table
+     * @param numOtherPlayers the number of other players (excluding the dealer and player 1) on the line
+     * @return the expected earnings of the strategy on the table
+     */
+    public double expectedEarnings(String csvLine, int numOtherPlayers) {
+        return this.expectedEarnings(new Table(csvLine, numOtherPlayers));
+    }
+
+    /**
+     * Returns the exact expected earnings of the strategy for player 1 from the
+     * input table, which may be partway through play. Every card on the table
+     * is out of the deck.
+     *
+     * @param table holds the player hands and dealer hand
+     * @return the expected earnings of the strategy from the table
+     */
+    public double expectedEarnings(Table table) {
+        int[] deck = new int[numRanks];
+        Arrays.fill(deck, 4);
+        for (Card card: table.countCardsOnTable()) {
+            deck[card.getRank().ordinal()]--;
+        }
+
+        DealerHand dealerHand = table.getDealerHand();
+        Position position = new Position(deck, dealerHand.getCards().get(0).getRank().ordinal());
+        for (Card card: dealerHand.getCards().subList(1, dealerHand.handSize())) {
+            position.addDealerCard(card.getRank().ordinal());
+        }
+        position.dealerFinal = dealerHand.isFinal();
+
+        for (PlayerHand playerHand: table.getHandList(1)) {
+            Hand hand = new Hand();
+            for (Card card: playerHand.getCards()) {
+                hand.add(card.getRank().ordinal());
+            }
+            hand.doubled = playerHand.getBet() > 1;
+            hand.surrendered = playerHand.surrendered();
+            hand.isFinal = playerHand.isFinal();
+            position.hands.add(hand);
+        }
+        return this.evaluate(position);
+    }
+
+    /**
+     * Returns the number of positions solved so far.
+     *
+     * @return the number of positions solved so far
+     */
+    public int numPositionsSolved() {
+        return this.earningsMemo.size();
+    }
+
+    /**
+     * Returns the expected earnings of the input position, playing player 1's
+     * first hand in play with the strategy's decision, or resolving the dealer
+     * if every hand is final.
+     *
+     * @param position a position, which isn't changed
+     * @return the expected earnings of the position
+     */
+    private double evaluate(Position position) {
+        int handIdx = position.firstHandInPlay();
+        if (handIdx < 0) {
+            return this.evaluateAgainstDealer(position);
+        }
+
+        PositionKey key = position.key();
+        Double memoized = this.earningsMemo.get(key);
+        if (memoized != null) {
+            return memoized;
+        }
+
+        Table table = position.toTable();
+        Decision decision = this.playerStrategy.getDecision(table, table.getHandList(1).get(handIdx));
+        double earnings = 0.0;
+        if (decision == Decision.HIT || decision == Decision.DOUBLE) {
+            for (int rank = 0; rank < numRanks; rank++) {
+                if (position.deck[rank] == 0) {
+                    continue;
+                }
+                double probability = (double) position.deck[rank] / position.deckSize;
+                Position next = position.copy();
+                Hand hand = next.hands.get(handIdx);
+                next.draw(rank);
+                hand.add(rank);
+                if (decision == Decision.DOUBLE) {
+                    hand.doubled = true;
+                    hand.isFinal = true;
+                } else if (hand.hard > 21) {
+                    hand.isFinal = true;
+                }
+                earnings += probability * this.evaluate(next);
+            }
+        } else if (decision == Decision.SPLIT) {
+            /*
+             * Table.split() deals a card to each split hand before either is played, and the
+             * first split hand takes the hand's place at the front of the list. Since a chart's
+             * decisions only depend on the hand being played, the cards any other hand takes
+             * between a hand's own cards and the dealer's act like cards never dealt, so each
+             * split hand can be played out on its own from the deck less its own second card.
+             */
+            Hand hand = position.hands.get(handIdx);
+            for (int rank = 0; rank < numRanks; rank++) {
+                if (position.deck[rank] == 0) {
+                    continue;
+                }
+                double probability = (double) position.deck[rank] / position.deckSize;
+                Position first = position.copy();
+                first.draw(rank);
+                Position second = first.copy();
+                first.hands.set(handIdx, new Hand(hand.ranks[0], rank));
+                second.hands.clear();
+                second.hands.add(new Hand(hand.ranks[1], rank));
+                earnings += probability * (this.evaluate(first) + this.evaluate(second));
+            }
+        } else {
+            Position next = position.copy();
+            Hand hand = next.hands.get(handIdx);
+            hand.isFinal = true;
+            hand.surrendered = (decision == Decision.SURRENDER); // STAY, or null, otherwise
+            earnings = this.evaluate(next);
+        }
+
+        this.earningsMemo.put(key, earnings);
+        return earnings;
+    }
+
+    /**
+     * Returns the expected earnings of a position whose hands are all final,
+     * over the dealer's possible final outcomes.
+     *
+     * @param position a position whose hands are all final
+     * @return the expected earnings of the position
+     */
+    private double evaluateAgainstDealer(Position position) {
+        double[] outcomes;
+        if (position.dealerFinal) {
+            outcomes = new double[DealerOutcomes.NUM_OUTCOMES];
+            outcomes[DealerOutcomes.outcome(position.dealerHard, position.dealerAce, position.dealerNumCards)] = 1.0;
+        } else {
+            outcomes = this.dealerOutcomes.distribution(position.deck.clone(), position.deckSize,
+                    position.dealerHard, position.dealerAce, position.dealerNumCards);
+        }
+
+        double earnings = 0.0;
+        for (Hand hand: position.hands) {
+            earnings += DealerOutcomes.expectedEarnings(outcomes, hand.bestValue(), hand.isBlackJack(),
+                    hand.doubled ? 2.0 : 1.0, hand.surrendered);
+        }
+        return earnings;
+    }
+
+    /**
+     * A player hand, reduced to what play and earnings depend on
+     * (apart from the ranks, which the strategy is shown).
+     */
+    private static final class Hand {
+
+        /**
+         * The ordinals of the ranks of the cards, in the order they were dealt.
+         */
+        private int[] ranks = new int[4];
+
+        /**
+         * The number of cards in the hand.
+         */
+        private int numCards;
+
+        /**
+         * The hard total of the hand.
+         */
+        private int hard;
+
+        /**
+         * Whether the hand has an ace.
+         */
+        private boolean ace;
+
+        /**
+         * Whether the hand was doubled, was surrendered, and is final.
+         */
+        private boolean doubled, surrendered, isFinal;
+
+        /**
+         * Constructs a hand without any cards.
+         */
+        private Hand() {
+
+        }
+
+        /**
+         * Constructs a two-card hand.
+         *
+         * @param firstRank the ordinal of the rank of the first card
+         * @param secondRank the ordinal of the rank of the second card
+         */
+        private Hand(int firstRank, int secondRank) {
+            this.add(firstRank);
+            this.add(secondRank);
+        }
+
+        /**
+         * Returns a deep copy of this hand.
+         *
+         * @return a deep copy of this hand
+         */
+        private Hand copy() {
+            Hand copy = new Hand();
+            copy.ranks = this.ranks.clone();
+            copy.numCards = this.numCards;
+            copy.hard = this.hard;
+            copy.ace = this.ace;
+            copy.doubled = this.doubled;
+            copy.surrendered = this.surrendered;
+            copy.isFinal = this.isFinal;
+            return copy;
+        }
+
+        /**
+         * Adds a card of the input rank to this hand.
+         *
+         * @param rank the ordinal of the card's rank
+         */
+        private void add(int rank) {
+            if (this.numCards == this.ranks.length) {
+                this.ranks = Arrays.copyOf(this.ranks, 2 * this.numCards);
+            }
+            this.ranks[this.numCards++] = rank;
+            this.hard += rankValues[rank];
+            this.ace |= (rank == Rank.ACE.ordinal());
+        }
+
+        /**
+         * Returns the soft total if it doesn't exceed 21, and the hard total otherwise.
+         *
+         * @return the best value of this hand
+         */
+        private int bestValue() {
+            return (this.ace && this.hard + 10 <= 21) ? this.hard + 10 : this.hard;
+        }
+
+        /**
+         * Returns whether this hand is a Blackjack: two cards with a soft total of 21.
+         *
+         * @return true iff this hand is a Blackjack
+         */
+        private boolean isBlackJack() {
+            return this.numCards == 2 && this.ace && this.hard == 11;
+        }
+
+        /**
+         * Returns this hand's code in a PositionKey.
+         *
+         * @return this hand's code
+         */
+        private int code() {
+            if (this.isFinal) {
+                return PositionKey.finalHandCode(this.bestValue(), this.isBlackJack(), this.doubled, this.surrendered);
+            }
+            return PositionKey.inPlayHandCode(this.numCards, this.ranks[0], this.ranks[1], this.hard, this.ace, this.doubled);
+        }
+    }
+
+    /**
+     * The state of play: the cards left in the deck, the dealer's hand,
+     * and player 1's hands in the order Table keeps them.
+     */
+    private static final class Position {
+
+        /**
+         * The number of cards of each rank left in the deck, and their total.
+         */
+        private final int[] deck;
+        private int deckSize;
+
+        /**
+         * The ordinal of the rank of the dealer's upcard.
+         */
+        private final int upcard;
+
+        /**
+         * The hard total, whether there's an ace, and the number of cards of the dealer's hand.
+         */
+        private int dealerHard;
+        private boolean dealerAce;
+        private int dealerNumCards;
+
+        /**
+         * Whether the dealer is done drawing.
+         */
+        private boolean dealerFinal;
+
+        /**
+         * Player 1's hands.
+         */
+        private final List<Hand> hands = new ArrayList<>(PositionKey.MAX_HANDS);
+
+        /**
+         * Constructs a position without any player hands, where the dealer
+         * has only the upcard.
+         *
+         * @param deck the number of cards of each rank left in the deck, which is kept rather than copied
+         * @param upcard the ordinal of the rank of the dealer's upcard
+         */
+        private Position(int[] deck, int upcard) {
+            this.deck = deck;
+            this.deckSize = Arrays.stream(deck).sum();
+            this.upcard = upcard;
+            this.dealerHard = rankValues[upcard];
+            this.dealerAce = (upcard == Rank.ACE.ordinal());
+            this.dealerNumCards = 1;
+        }
+
+        /**
+         * Returns a deep copy of this position.
+         *
+         * @return a deep copy of this position
+         */
+        private Position copy() {
+            Position copy = new Position(this.deck.clone(), this.upcard);
+            copy.dealerHard = this.dealerHard;
+            copy.dealerAce = this.dealerAce;
+            copy.dealerNumCards = this.dealerNumCards;
+            copy.dealerFinal = this.dealerFinal;
+            for (Hand hand: this.hands) {
+                copy.hands.add(hand.copy());
+            }
+            return copy;
+        }
+
+        /**
+         * Takes a card of the input rank out of the deck.
+         *
+         * @param rank the ordinal of the card's rank
+         */
+        private void draw(int rank) {
+            this.deck[rank]--;
+            this.deckSize--;
+        }
+
+        /**
+         * Adds a card of the input rank to the dealer's hand.
+         *
+         * @param rank the ordinal of the card's rank
+         */
+        private void addDealerCard(int rank) {
+            this.dealerHard += rankValues[rank];
+            this.dealerAce |= (rank == Rank.ACE.ordinal());
+            this.dealerNumCards++;
+        }
+
+        /**
+         * Returns the index of the hand to be played next, as Table plays them.
+         *
+         * @return the index of the first hand which isn't final, or -1 if there isn't one
+         */
+        private int firstHandInPlay() {
+            for (int i = 0; i < this.hands.size(); i++) {
+                if (!this.hands.get(i).isFinal) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Returns the canonical key of this position.
+         *
+         * @return the key of this position
+         */
+        private PositionKey key() {
+            int[] inPlayCodes = new int[this.hands.size()];
+            int[] finalCodes = new int[this.hands.size()];
+            int numInPlay = 0;
+            int numFinal = 0;
+            for (Hand hand: this.hands) {
+                if (hand.isFinal) {
+                    finalCodes[numFinal++] = hand.code();
+                } else {
+                    inPlayCodes[numInPlay++] = hand.code();
+                }
+            }
+            long dealer = PositionKey.dealerBits(this.upcard, this.dealerHard, this.dealerAce,
+                    this.dealerNumCards, this.dealerFinal);
+            return new PositionKey(PositionKey.compositionBits(this.deck),
+                    PositionKey.handsWord(inPlayCodes, numInPlay, finalCodes, numFinal) | dealer);
+        }
+
+        /**
+         * Builds the table the strategy is shown: the remaining deck, the dealer's
+         * upcard, and player 1's hands.
+         *
+         * @return the table
+         */
+        private Table toTable() {
+            Suit[] suits = Suit.values();
+            List<PlayerHand> playerHands = new ArrayList<>(this.hands.size());
+            for (Hand hand: this.hands) {
+                PlayerHand playerHand = new PlayerHand();
+                for (int i = 0; i < hand.numCards; i++) {
+                    playerHand.addCard(new Card(suits[i % suits.length], Rank.values()[hand.ranks[i]]));
+                }
+                if (hand.doubled) {
+                    playerHand.doubleBet();
+                }
+                if (hand.surrendered) {
+                    playerHand.markSurrendered();
+                }
+                if (hand.isFinal) {
+                    playerHand.markFinal();
+                }
+                playerHands.add(playerHand);
+            }
+            List<List<PlayerHand>> allPlayerHands = new ArrayList<>();
+            allPlayerHands.add(playerHands);
+            DealerHand dealerHand = new DealerHand(new Card(Suit.SPADES, Rank.values()[this.upcard]));
+            return new Table(Deck.withComposition(1, this.deck), dealerHand, allPlayerHands);
+        }
+    }
+
+}
@@ -0,0 +1,394 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact, canonical encoding of a position dealt from a shoe of up to
+ * MAX_DECKS decks in two longs, so that equivalent positions share one key.
+ *
+ * The cards word holds the composition of the deck in its low
+ * COMPOSITION_BITS bits, then, in keys made for a capped SplitMode, the
+ * number of splits player 1 has left (4 bits). Suits don't appear, and any
+ * other players' cards only appear through the composition of the deck.
+ *
+ * The hands word holds up to MAX_HANDS 12-bit hand codes, one per player
+ * hand: first the hands still in play, in the order they'll be played, then
+ * the final hands in sorted order, since the order of final hands can't
+ * affect the earnings. A hand in play is coded by its two ranks if it has two
+ * cards (sorted, so their order doesn't matter), and by its hard total and
+ * whether it has an ace otherwise. A final hand is coded by only what its
+ * earnings depend on: its best value (any bust is 22), whether it's a
+ * Blackjack, whether it was doubled, and whether it was surrendered. Past
+ * the hands, at DEALER_OFFSET, comes the dealer's upcard rank ordinal
+ * (4 bits), hard total (5 bits), whether the dealer has an ace (1 bit), the
+ * number of dealer cards capped at 3 (2 bits), and whether the dealer is
+ * done (1 bit).
+ *
+ * Keys made by of(Table) count the deck by value class instead of by rank.
+ * Ten-valued ranks only differ in whether they make a pair, so the rank of
+ * a ten-valued pair in play, if any, is relabeled TEN and counted on its own,
+ * and every other ten-valued rank is relabeled JACK and counted together.
+ * The counts are packed as the digits of one number, ACE's the lowest, in
+ * base RANK_RADIX for ACE to NINE and the pair's rank, which is just enough
+ * for the 4 cards of a rank in each of MAX_DECKS decks, and base TEN_RADIX
+ * for the other ten-valued cards. Shoes of MAX_DECKS decks then fit in
+ * COMPOSITION_BITS bits, where fixed fields of bits wide enough for them
+ * wouldn't fit in a word. Keys made of a deck's rank counts by
+ * compositionBits() instead hold 3 bits per rank ordinal, so they only
+ * count a single deck.
+ *
+ * @param cards the deck composition and the dealer's hand
+ * @param hands the player's hands
+ */
+public record PositionKey(long cards, long hands) {
+
+    /**
+     * The most player hands a key can hold.
+     */
+    public static final int MAX_HANDS = 4;
+
+    /**
+     * The most standard decks in a shoe whose positions a key made by
+     * of(Table) can hold.
+     */
+    public static final int MAX_DECKS = 8;
+
+    /**
+     * The number of bits used for each hand in the hands word.
+     */
+    private static final int BITS_PER_HAND = 12;
+
+    /**
+     * The offset of the dealer's hand in the hands word, past the player's hands.
+     */
+    private static final int DEALER_OFFSET = BITS_PER_HAND * MAX_HANDS;
+
+    /**
+     * The number of bits used for the count of each rank by compositionBits().
+     */
+    private static final int BITS_PER_RANK = 3;
+
+    /**
+     * The base of the digits counting ACE to NINE and the ten-valued pair's
+     * rank in a key of value classes.
+     */
+    private static final long RANK_RADIX = 4 * MAX_DECKS + 1;
+
+    /**
+     * The base of the digit counting the other ten-valued cards in a key of
+     * value classes.
+     */
+    private static final long TEN_RADIX = 16 * MAX_DECKS + 1;
+
+    /**
+     * The most bits the composition of a key of value classes takes:
+     * RANK_RADIX^10 * TEN_RADIX is just under 2^58.
+     */
+    public static final int COMPOSITION_BITS = 58;
+
+    /**
+     * The offset of the number of splits left in the cards word, past the
+     * composition.
+     */
+    private static final int SPLITS_LEFT_OFFSET = 60;
+
+    /**
+     * The most splits left a key can hold.
+     */
+    private static final int MAX_SPLITS_LEFT = 15;
+
+    /**
+     * The most cards of one rank a key can count.
+     */
+    private static final int MAX_RANK_COUNT = (1 << BITS_PER_RANK) - 1;
+
+    /**
+     * The ordinal of TEN, the first ten-valued rank.
+     */
+    private static final int TEN = Rank.TEN.ordinal();
+
+    /**
+     * The hand status stored in the low two bits of a hand code.
+     */
+    private static final int IN_PLAY = 1, FINAL = 2, SURRENDERED = 3;
+
+    /**
+     * Returns the key of the position on the input table from player 1's
+     * point of view, counting the deck by value class. The other players'
+     * cards only count as cards missing from the deck.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @return the key of the position
+     * @throws IllegalArgumentException if player 1 has more than MAX_HANDS hands, or the deck
+     *                                  has more cards of a value class than MAX_DECKS decks
+     */
+    public static PositionKey of(Table table) {
+        DealerHand dealerHand = table.getDealerHand();
+        Rank pairRank = table.tenValuedPairRank(1);
+        int pairRankIdx = (pairRank == null) ? -1 : pairRank.ordinal();
+        long cards = valueClassBits(table.getDeck().rankCounts(), pairRankIdx);
+        long dealer = dealerBits(valueClass(dealerHand.getCards().get(0).getRank().ordinal(), pairRankIdx),
+                dealerHand.getHard(), containsAce(dealerHand), dealerHand.handSize(), dealerHand.isFinal());
+
+        List<PlayerHand> handList = table.getHandList(1);
+        int[] inPlayCodes = new int[handList.size()];
+        int[] finalCodes = new int[handList.size()];
+        int numInPlay = 0;
+        int numFinal = 0;
+        for (PlayerHand hand: handList) {
+            boolean doubled = hand.getBet() > 1;
+            if (hand.isFinal()) {
+                finalCodes[numFinal++] = finalHandCode(hand.bestValue(), hand.isBlackJack(), doubled, hand.surrendered());
+            } else {
+                List<Card> handCards = hand.getCards();
+                int firstRank = valueClass(handCards.get(0).getRank().ordinal(), pairRankIdx);
+                int secondRank = handCards.size() > 1 ? valueClass(handCards.get(1).getRank().ordinal(), pairRankIdx) : 0;
+                inPlayCodes[numInPlay++] = inPlayHandCode(hand.handSize(), firstRank, secondRank,
+                        hand.getHard(), containsAce(hand), doubled);
+            }
+        }
+        return new PositionKey(cards, handsWord(inPlayCodes, numInPlay, finalCodes, numFinal) | dealer);
+    }
+
+    /**
+     * Returns this key with the input number of splits player 1 has left,
+     * for a solver which caps the number of splits, since the same position
+     * is then worth less with fewer splits left. Any more than MAX_SPLITS_LEFT
+     * splits count as MAX_SPLITS_LEFT, which is more than a key's hands allow.
+     *
+     * @param splitsLeft the number of splits player 1 has left
+     * @return the key with the number of splits left
+     */
+    public PositionKey withSplitsLeft(int splitsLeft) {
+        long splitsBits = (long) Math.min(splitsLeft, MAX_SPLITS_LEFT) << SPLITS_LEFT_OFFSET;
+        return new PositionKey(this.cards & ~((long) MAX_SPLITS_LEFT << SPLITS_LEFT_OFFSET) | splitsBits, this.hands);
+    }
+
+    /**
+     * Returns whether the input hand has an ace.
+     *
+     * @param hand a hand
+     * @return true iff the hand has an ace
+     */
+    private static boolean containsAce(AHand hand) {
+        for (Card card: hand.getCards()) {
+            if (card.isAce()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scrambles the bits of the input word with the finalizer of MurmurHash3,
+     * so that words differing in only a few high bits spread over a hash
+     * table. The scramble is a bijection, so a scrambled word identifies the
+     * original as well as the original does.
+     *
+     * @param word a word
+     * @return the scrambled word
+     */
+    public static long mix(long word) {
+        word ^= word >>> 33;
+        word *= 0xff51afd7ed558ccdL;
+        word ^= word >>> 33;
+        word *= 0xc4ceb9fe1a85ec53L;
+        word ^= word >>> 33;
+        return word;
+    }
+
+    /**
+     * Encodes the dealer's hand at DEALER_OFFSET in the hands word.
+     *
+     * @param upcard the ordinal of the rank of the dealer's upcard
+     * @param dealerHard the hard total of the dealer's hand
+     * @param dealerAce whether the dealer's hand has an ace
+     * @param dealerNumCards the number of cards in the dealer's hand
+     * @param dealerFinal whether the dealer is done drawing
+     * @return the dealer's bits of the hands word
+     */
+    public static long dealerBits(int upcard, int dealerHard, boolean dealerAce, int dealerNumCards,
+                                   boolean dealerFinal) {
+        return (long) upcard << DEALER_OFFSET
+                | (long) Math.min(dealerHard, 31) << (DEALER_OFFSET + 4)
+                | (dealerAce ? 1L : 0L) << (DEALER_OFFSET + 9)
+                | (long) Math.min(dealerNumCards, 3) << (DEALER_OFFSET + 10)
+                | (dealerFinal ? 1L : 0L) << (DEALER_OFFSET + 12);
+    }
+
+    /**
+     * Encodes the number of cards of each rank left in a single deck.
+     *
+     * @param deckCounts the number of cards of each rank left in the deck, indexed by the rank's ordinal
+     * @return the composition, 3 bits per rank ordinal
+     * @throws IllegalArgumentException if there are more than 7 cards of a rank
+     */
+    public static long compositionBits(int[] deckCounts) {
+        long bits = 0L;
+        for (int rank = 0; rank < deckCounts.length; rank++) {
+            if (deckCounts[rank] > MAX_RANK_COUNT) {
+                throw new IllegalArgumentException("A key counts at most " + MAX_RANK_COUNT + " cards of a rank: " + deckCounts[rank]);
+            }
+            bits |= (long) deckCounts[rank] << (BITS_PER_RANK * rank);
+        }
+        return bits;
+    }
+
+    /**
+     * Encodes the number of cards of each value class left in the deck: the
+     * count of each rank from ACE to NINE and of the ten-valued pair rank as a
+     * digit in base RANK_RADIX, with the count of the other ten-valued cards
+     * as the top digit, in base TEN_RADIX.
+     *
+     * @param deckCounts the number of cards of each rank left in the deck, indexed by the rank's ordinal
+     * @param pairRank the ordinal of the ten-valued rank of a pair in play, or -1 if there isn't one
+     * @return the composition, in the low COMPOSITION_BITS bits
+     * @throws IllegalArgumentException if there are more cards of a value class than MAX_DECKS decks
+     */
+    private static long valueClassBits(int[] deckCounts, int pairRank) {
+        int otherTens = 0;
+        for (int rank = TEN; rank < deckCounts.length; rank++) {
+            if (rank != pairRank) {
+                otherTens += deckCounts[rank];
+            }
+        }
+        long bits = digit(otherTens, TEN_RADIX);
+        bits = bits * RANK_RADIX + digit((pairRank < 0) ? 0 : deckCounts[pairRank], RANK_RADIX);
+        for (int rank = TEN - 1; rank >= 0; rank--) {
+            bits = bits * RANK_RADIX + digit(deckCounts[rank], RANK_RADIX);
+        }
+        return bits;
+    }
+
+    /**
+     * Encodes the number of cards of each value the dealer can draw: the
+     * count of each rank from ACE to NINE as a digit in base RANK_RADIX, with
+     * the count of every ten-valued card as the top digit, in base TEN_RADIX.
+     * The dealer's draws only depend on the value of each card, so unlike a
+     * key of value classes, the ten-valued ranks are never told apart.
+     *
+     * @param deckCounts the number of cards of each rank left in the deck, indexed by the rank's ordinal
+     * @return the composition, in the low COMPOSITION_BITS - 5 bits
+     * @throws IllegalArgumentException if there are more cards of a value than MAX_DECKS decks
+     */
+    public static long valueBits(int[] deckCounts) {
+        int tens = 0;
+        for (int rank = TEN; rank < deckCounts.length; rank++) {
+            tens += deckCounts[rank];
+        }
+        long bits = digit(tens, TEN_RADIX);
+        for (int rank = TEN - 1; rank >= 0; rank--) {
+            bits = bits * RANK_RADIX + digit(deckCounts[rank], RANK_RADIX);
+        }
+        return bits;
+    }
+
+    /**
+     * Checks that the input count is a digit in the input base.
+     *
+     * @param count the number of cards of a value class
+     * @param radix the base of the digit
+     * @return the count
+     * @throws IllegalArgumentException if the count isn't a digit in the base
+     */
+    private static long digit(int count, long radix) {
+        if (count < 0 || count >= radix) {
+            throw new IllegalArgumentException("A key counts at most " + (radix - 1)
+                    + " cards of a value class, as in " + MAX_DECKS + " decks: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the ordinal of the rank standing for the input rank's value
+     * class: ranks from ACE to NINE stand for themselves, the ten-valued pair
+     * rank is relabeled TEN, and the other ten-valued ranks are all JACK.
+     *
+     * @param rank the ordinal of a rank
+     * @param pairRank the ordinal of the ten-valued rank of a pair in play, or -1 if there isn't one
+     * @return the ordinal of the rank standing for the value class
+     */
+    private static int valueClass(int rank, int pairRank) {
+        if (rank < TEN) {
+            return rank;
+        }
+        return (rank == pairRank) ? TEN : TEN + 1;
+    }
+
+    /**
+     * Returns the code of a hand which is still in play.
+     *
+     * @param numCards the number of cards in the hand
+     * @param firstRank the ordinal of the rank of the hand's first card
+     * @param secondRank the ordinal of the rank of the hand's second card
+     * @param hardTotal the hard total of the hand
+     * @param containsAce whether the hand has an ace
+     * @param doubled whether the hand's bet was doubled
+     * @return the hand's code
+     */
+    public static int inPlayHandCode(int numCards, int firstRank, int secondRank, int hardTotal,
+                                     boolean containsAce, boolean doubled) {
+        int code = IN_PLAY | (doubled ? 1 << 2 : 0);
+        if (numCards == 2) {
+            code |= 1 << 3 | Math.min(firstRank, secondRank) << 4 | Math.max(firstRank, secondRank) << 8;
+        } else {
+            code |= Math.min(hardTotal, 31) << 4 | (containsAce ? 1 << 9 : 0);
+        }
+        return code;
+    }
+
+    /**
+     * Returns the code of a hand which is final.
+     *
+     * @param bestValue the best value of the hand
+     * @param blackJack whether the hand is a Blackjack
+     * @param doubled whether the hand's bet was doubled
+     * @param surrendered whether the hand was surrendered
+     * @return the hand's code
+     */
+    public static int finalHandCode(int bestValue, boolean blackJack, boolean doubled, boolean surrendered) {
+        if (surrendered) {
+            return SURRENDERED;
+        }
+        return FINAL | (doubled ? 1 << 2 : 0) | (blackJack ? 1 << 3 : 0) | Math.min(bestValue, 22) << 4;
+    }
+
+    /**
+     * Packs the input hand codes into a hands word, keeping the order of the
+     * hands in play and sorting the final hands.
+     *
+     * @param inPlayCodes the codes of the hands in play, in the order they'll be played
+     * @param numInPlay the number of hands in play
+     * @param finalCodes the codes of the final hands, which are sorted in place
+     * @param numFinal the number of final hands
+     * @return the hands word of a key
+     * @throws IllegalArgumentException if there are more than MAX_HANDS hands
+     */
+    public static long handsWord(int[] inPlayCodes, int numInPlay, int[] finalCodes, int numFinal) {
+        if (numInPlay + numFinal > MAX_HANDS) {
+            throw new IllegalArgumentException("A key holds at most " + MAX_HANDS + " hands: " + (numInPlay + numFinal));
+        }
+        Arrays.sort(finalCodes, 0, numFinal);
+        long word = 0L;
+        int slot = 0;
+        for (int i = 0; i < numInPlay; i++, slot++) {
+            word |= (long) inPlayCodes[i] << (BITS_PER_HAND * slot);
+        }
+        for (int i = 0; i < numFinal; i++, slot++) {
+            word |= (long) finalCodes[i] << (BITS_PER_HAND * slot);
+        }
+        return word;
+    }
+
+    /**
+     * Returns a hash code which depends on every bit of the key. The
+     * record's default hash code folds each word's high half onto its low
+     * half, which makes keys of similar positions collide.
+     *
+     * @return a hash code for this key
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(mix(this.cards ^ mix(this.hands)));
+    }
+
+}
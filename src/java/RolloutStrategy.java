@@ -0,0 +1,362 @@
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A strategy for a player to make a decision with their hand which estimates
+ * the expected earnings of each possible decision by playing out many random
+ * continuations of the table, and picks the decision that earned the most.
+ *
+ * Each rollout reshuffles a copy of the remaining deck, then plays every
+ * possible decision from that same shuffled deck, with every later decision
+ * made by a fast rollout policy. Playing all of the decisions against the same
+ * cards (common random numbers) cancels most of the luck out of the comparison
+ * between them. The rollouts run in parallel on every processor, until either
+ * the rollout budget or the time budget is used up.
+ */
+public class RolloutStrategy implements IPlayerStrategy {
+
+    /**
+     * The default number of rollouts per decision.
+     */
+    private static final int DEFAULT_MAX_ROLLOUTS = 20_000;
+
+    /**
+     * The default time budget per decision, in milliseconds.
+     */
+    private static final long DEFAULT_TIME_BUDGET_MILLIS = 200;
+
+    /**
+     * The strategy which makes every decision after the first in a rollout.
+     */
+    private final IPlayerStrategy rolloutPolicy;
+
+    /**
+     * The most rollouts played for one decision.
+     */
+    private final int maxRollouts;
+
+    /**
+     * The most time spent on one decision, in milliseconds.
+     */
+    private final long timeBudgetMillis;
+
+    /**
+     * The number of threads playing rollouts at the same time.
+     */
+    private final int parallelism;
+
+    /**
+     * The threads which play the rollouts.
+     */
+    private final ExecutorService rolloutPool;
+
+    /**
+     * Constructs a strategy which plays its rollouts with the Wikipedia
+     * blackjack tables, under the default rollout and time budgets.
+     */
+    public RolloutStrategy() {
+        this(WikiStrategy.singleton(), DEFAULT_MAX_ROLLOUTS, DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * Constructs a strategy which plays its rollouts with the input policy,
+     * using every available processor.
+     *
+     * @param rolloutPolicy the strategy which makes every decision after the first in a rollout
+     * @param maxRollouts the most rollouts played for one decision
+     * @param timeBudgetMillis the most time spent on one decision, in milliseconds
+     */
+    public RolloutStrategy(IPlayerStrategy rolloutPolicy, int maxRollouts, long timeBudgetMillis) {
+        if (maxRollouts < 1) {
+            throw new IllegalArgumentException("The rollout budget must be positive: " + maxRollouts);
+        }
+        this.rolloutPolicy = rolloutPolicy;
+        this.maxRollouts = maxRollouts;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        this.rolloutPool = Executors.newFixedThreadPool(this.parallelism, rolloutThreadFactory());
+    }
+
+    /**
+     * The outcome of rolling out every possible decision on one hand.
+     *
+     * @param decision the decision with the highest estimated expected earnings
+     * @param expectedEarnings the estimated expected earnings of each possible decision
+     * @param stdErrors the standard error of each estimate of expected earnings
+     * @param numRollouts the number of rollouts played for each decision
+     * @param marginStdErrors how many standard errors the chosen decision's estimate is
+     *                        ahead of the runner-up's, measured on the paired differences
+     *                        between them; infinite if there's no runner-up
+     */
+    public record RolloutReport(Decision decision,
+                                Map<Decision, Double> expectedEarnings,
+                                Map<Decision, Double> stdErrors,
+                                int numRollouts,
+                                double marginStdErrors) {
+
+        @Override
+        public String toString() {
+            return decision + " after " + numRollouts + " rollouts, " + marginStdErrors
+                    + " standard errors ahead: " + expectedEarnings;
+        }
+    }
+
+    /**
+     * Returns the decision with the highest expected earnings,
+     * as estimated by rollouts.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @param handInPlay the hand being played
+     * @return a decision for the player to make with their hand
+     */
+    @Override
+    public Decision getDecision(Table table, PlayerHand handInPlay) {
+        return this.evaluate(table, handInPlay).decision();
+    }
+
+    /**
+     * Estimates the expected earnings of every possible decision with the input
+     * hand by rollouts, and reports how confident the estimates are.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @param handInPlay the hand being played
+     * @return the estimates, the chosen decision, and the confidence in it
+     * @throws IllegalStateException if a rollout fails or the thread is interrupted
+     */
+    public RolloutReport evaluate(Table table, PlayerHand handInPlay) {
+        List<Decision> decisions = handInPlay.getPossibleDecisions();
+        int[] location = locateHand(table, handInPlay);
+        long deadline = System.nanoTime() + this.timeBudgetMillis * 1_000_000L;
+        long seed = ThreadLocalRandom.current().nextLong();
+        AtomicInteger rolloutsClaimed = new AtomicInteger();
+
+        List<Future<RolloutTally>> futures = new ArrayList<>(this.parallelism);
+        RolloutTally total = new RolloutTally(decisions.size());
+        try {
+            for (int i = 0; i < this.parallelism; i++) {
+                Random random = new Random(seed ^ (0x9E3779B97F4A7C15L * (i + 1)));
+                futures.add(this.rolloutPool.submit(() ->
+                        this.playRollouts(table, location, decisions, random, rolloutsClaimed, deadline)));
+            }
+            for (Future<RolloutTally> future: futures) {
+                total.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A rollout failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while playing rollouts", e);
+        } finally {
+            for (Future<RolloutTally> future: futures) {
+                future.cancel(true);
+            }
+        }
+
+        return total.report(decisions);
+    }
+
+    /**
+     * Plays rollouts until the rollout budget or the time budget is used up.
+     * Every worker gets to play at least its first rollout, so an estimate
+     * always exists.
+     *
+     * @param table the table to roll out
+     * @param location the player number and index of the hand in play
+     * @param decisions the possible decisions with the hand in play
+     * @param random the source of randomness for this worker's reshuffles
+     * @param rolloutsClaimed the number of rollouts claimed by every worker so far
+     * @param deadline the value of System.nanoTime() by which to stop
+     * @return the earnings of this worker's rollouts
+     */
+    private RolloutTally playRollouts(Table table, int[] location, List<Decision> decisions, Random random,
+                                      AtomicInteger rolloutsClaimed, long deadline) {
+        RolloutTally tally = new RolloutTally(decisions.size());
+        double[] earnings = new double[decisions.size()];
+        int rolloutIdx;
+        while ((rolloutIdx = rolloutsClaimed.getAndIncrement()) < this.maxRollouts
+                && (rolloutIdx < this.parallelism || System.nanoTime() < deadline)
+                && !Thread.currentThread().isInterrupted()) {
+
+            // Every decision is played against the same reshuffle of the unseen cards.
+            Table shuffledTable = table.copy();
+            shuffledTable.getDeck().shuffle(random);
+            for (int d = 0; d < decisions.size(); d++) {
+                Table rollout = shuffledTable.copy();
+                PlayerHand handInPlay = rollout.getHandList(location[0]).get(location[1]);
+                earnings[d] = rollout.playFrom(location[0], handInPlay, decisions.get(d), this.rolloutPolicy);
+            }
+            tally.record(earnings);
+        }
+        return tally;
+    }
+
+    /**
+     * Returns the player number of the player who owns the input hand, and the
+     * index of the hand in that player's list of split hands.
+     *
+     * @param table holds the player hands
+     * @param handInPlay a hand on the table
+     * @return a two-element array of the player number and the index of the hand
+     */
+    private static int[] locateHand(Table table, PlayerHand handInPlay) {
+        List<List<PlayerHand>> playerHands = table.getPlayerHands();
+        for (int playerIdx = 0; playerIdx < playerHands.size(); playerIdx++) {
+            List<PlayerHand> handList = playerHands.get(playerIdx);
+            for (int handIdx = 0; handIdx < handList.size(); handIdx++) {
+                if (handList.get(handIdx) == handInPlay) {
+                    return new int[] {playerIdx + 1, handIdx};
+                }
+            }
+        }
+        throw new IllegalArgumentException("The hand in play isn't on the table: " + handInPlay);
+    }
+
+    /**
+     * Returns a factory for the daemon threads that play the rollouts.
+     *
+     * @return a factory for the daemon threads that play the rollouts
+     */
+    private static ThreadFactory rolloutThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "rollout-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "Rollout";
+    }
+
+    /**
+     * The running sums of the earnings of each decision over many rollouts,
+     * along with the sums of products of each pair of decisions' earnings on
+     * the same rollout, from which the paired differences are measured.
+     */
+    private static class RolloutTally {
+
+        /**
+         * The number of rollouts recorded.
+         */
+        private int numRollouts;
+
+        /**
+         * The sum of each decision's earnings.
+         */
+        private final double[] sums;
+
+        /**
+         * The sum of the products of each pair of decisions' earnings.
+         */
+        private final double[][] productSums;
+
+        /**
+         * Constructs an empty tally for the input number of decisions.
+         *
+         * @param numDecisions the number of decisions being compared
+         */
+        private RolloutTally(int numDecisions) {
+            this.sums = new double[numDecisions];
+            this.productSums = new double[numDecisions][numDecisions];
+        }
+
+        /**
+         * Records the earnings of every decision on one rollout.
+         *
+         * @param earnings the earnings of each decision on the same rollout
+         */
+        private void record(double[] earnings) {
+            this.numRollouts++;
+            for (int i = 0; i < earnings.length; i++) {
+                this.sums[i] += earnings[i];
+                for (int j = 0; j < earnings.length; j++) {
+                    this.productSums[i][j] += earnings[i] * earnings[j];
+                }
+            }
+        }
+
+        /**
+         * Adds the rollouts of the input tally to this tally.
+         *
+         * @param other a tally of the same decisions
+         */
+        private void add(RolloutTally other) {
+            this.numRollouts += other.numRollouts;
+            for (int i = 0; i < this.sums.length; i++) {
+                this.sums[i] += other.sums[i];
+                for (int j = 0; j < this.sums.length; j++) {
+                    this.productSums[i][j] += other.productSums[i][j];
+                }
+            }
+        }
+
+        /**
+         * Returns the standard error of the mean of the input decision's earnings
+         * minus the other decision's earnings. The other decision can be the same
+         * decision, which isn't a difference at all, by passing -1.
+         *
+         * @param i the index of a decision
+         * @param j the index of the decision to subtract, or -1 to subtract nothing
+         * @return the standard error, or infinity if it can't be estimated yet
+         */
+        private double stdError(int i, int j) {
+            long n = this.numRollouts;
+            if (n < 2) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double sum = this.sums[i] - (j < 0 ? 0.0 : this.sums[j]);
+            double sumSquares = this.productSums[i][i];
+            if (j >= 0) {
+                sumSquares += this.productSums[j][j] - 2 * this.productSums[i][j];
+            }
+            double variance = Math.max(0.0, (sumSquares - sum * sum / n) / (n - 1));
+            return Math.sqrt(variance / n);
+        }
+
+        /**
+         * Summarizes the tally, choosing the decision with the highest mean earnings.
+         *
+         * @param decisions the decisions, in the order they were tallied
+         * @return the report of the rollouts
+         */
+        private RolloutReport report(List<Decision> decisions) {
+            Map<Decision, Double> expectedEarnings = new EnumMap<>(Decision.class);
+            Map<Decision, Double> stdErrors = new EnumMap<>(Decision.class);
+            int best = -1;
+            int runnerUp = -1;
+            for (int i = 0; i < decisions.size(); i++) {
+                double mean = this.sums[i] / this.numRollouts;
+                expectedEarnings.put(decisions.get(i), mean);
+                stdErrors.put(decisions.get(i), this.stdError(i, -1));
+                if (best < 0 || mean > this.sums[best] / this.numRollouts) {
+                    runnerUp = best;
+                    best = i;
+                } else if (runnerUp < 0 || mean > this.sums[runnerUp] / this.numRollouts) {
+                    runnerUp = i;
+                }
+            }
+
+            double margin = Double.POSITIVE_INFINITY;
+            if (runnerUp >= 0) {
+                double difference = (this.sums[best] - this.sums[runnerUp]) / this.numRollouts;
+                double stdError = this.stdError(best, runnerUp);
+                margin = (stdError > 0.0) ? difference / stdError : (difference > 0.0 ? Double.POSITIVE_INFINITY : 0.0);
+            }
+            return new RolloutReport(decisions.get(best), expectedEarnings, stdErrors, this.numRollouts, margin);
+        }
+
+    }
+
+}
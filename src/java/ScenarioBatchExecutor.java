@@ -0,0 +1,124 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Processes the lines of a scenario file concurrently, one line per task,
+ * with the computing done on a bounded pool of CPU threads.
+ *
+ * Each line is forked as a subtask of a structured task scope, on a virtual
+ * thread which hands the line's work to the CPU pool and waits for it, so
+ * the scope can run a thread per line however long the file is while only
+ * as many lines are computed at a time as there are CPU threads. The lines
+ * are processed as a unit: the call returns only once every line is done,
+ * and if any line fails, the scope shuts down, every line still running or
+ * waiting for the pool is cancelled, and the failure is rethrown. The output
+ * lines keep the order of the input lines, and each line gets its own random
+ * number generator, seeded from the batch seed and the line's index, so a
+ * line's result doesn't depend on which thread ran it or when.
+ */
+public class ScenarioBatchExecutor {
+
+    /**
+     * The number of lines processed at the same time.
+     */
+    private final int parallelism;
+
+    /**
+     * Constructs an executor which processes one line per available processor at a time.
+     */
+    public ScenarioBatchExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an executor which processes the input number of lines at a time.
+     *
+     * @param parallelism the number of lines processed at the same time
+     */
+    public ScenarioBatchExecutor(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Processes every input line concurrently and returns the output lines in input order.
+     *
+     * @param inputCSVLines the lines to process
+     * @param seed the seed from which each line's random number generator is derived
+     * @param lineProcessor converts an input line to an output line using the line's
+     *                      random number generator
+     * @return the output lines, in the order of the input lines
+     * @throws IllegalStateException if any line fails, after cancelling the rest
+     */
+    public List<String> process(List<String> inputCSVLines, long seed, BiFunction<String, Random, String> lineProcessor) {
+        int numLines = inputCSVLines.size();
+        String[] outputCSVLines = new String[numLines];
+
+        ExecutorService cpuPool = Executors.newFixedThreadPool(Math.min(this.parallelism, Math.max(1, numLines)), cpuThreadFactory());
+        try (StructuredTaskScope.ShutdownOnFailure scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            for (int i = 0; i < numLines; i++) {
+                final int lineIdx = i;
+                scope.fork(() -> {
+                    String inputCSVLine = inputCSVLines.get(lineIdx);
+                    Future<String> computation = cpuPool.submit(() -> lineProcessor.apply(inputCSVLine, lineRandom(seed, lineIdx)));
+                    try {
+                        outputCSVLines[lineIdx] = computation.get();
+                    } catch (InterruptedException e) {
+                        // The scope shut down because another line failed.
+                        computation.cancel(true);
+                        throw e;
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("Failed to process line " + (lineIdx + 1) + ": " + inputCSVLine, e.getCause());
+                    }
+                    return lineIdx;
+                });
+            }
+
+            scope.join().throwIfFailed(e -> (e instanceof RuntimeException cause) ? cause : new IllegalStateException(e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing lines", e);
+        } finally {
+            cpuPool.shutdownNow();
+        }
+
+        return Arrays.asList(outputCSVLines);
+    }
+
+    /**
+     * Returns the random number generator for the input line of a batch.
+     *
+     * @param seed the seed of the batch
+     * @param lineIdx the index of the line within the batch
+     * @return the random number generator for the line
+     */
+    private static Random lineRandom(long seed, int lineIdx) {
+        return new Random(seed ^ (0x9E3779B97F4A7C15L * (lineIdx + 1)));
+    }
+
+    /**
+     * Returns a factory for the daemon threads that process the lines.
+     *
+     * @return a factory for the daemon threads that process the lines
+     */
+    private static ThreadFactory cpuThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "scenario-line-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
@@ -0,0 +1,31 @@
+/**
+ * Simulates many playing sessions from a persistent six-deck shoe with a
+ * count-based bet spread, and prints the risk of ruin and hourly EV.
+ */
+public class SessionMain {
+
+    private static final int numDecks = 6;
+
+    private static final double penetration = 0.75;
+
+    private static final IPlayerStrategy playerStrategy = CountingStrategy.singleton();
+
+    private static final IBetSpreadPolicy betSpreadPolicy = new LinearBetSpread(1, 8);
+
+    private static final double initialBankroll = 200;
+
+    private static final int handsPerSession = 2_000;
+
+    private static final int numSessions = 10_000;
+
+    private static final double handsPerHour = 80;
+
+    private static final long seed = 2023;
+
+    public static void main(String[] args) {
+        SessionSimulator simulator = new SessionSimulator(numDecks, penetration, playerStrategy, betSpreadPolicy,
+                initialBankroll, handsPerSession);
+        System.out.println(playerStrategy + " Strategy, " + betSpreadPolicy + " Bet Spread");
+        System.out.println(simulator.simulate(numSessions, handsPerHour, seed));
+    }
+}
@@ -0,0 +1,176 @@
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Simulates whole playing sessions from a persistent shoe, sizing each bet
+ * from the Hi-Lo true count, and summarizes the bankroll paths of many
+ * sessions run in parallel.
+ *
+ * A session ends when its hands run out or when the bankroll is ruined,
+ * meaning it has dropped to zero or below. The shoe is reshuffled once
+ * the cut card is reached.
+ */
+public class SessionSimulator {
+
+    /**
+     * The fewest cards left in the shoe before a hand is dealt. A hand can use
+     * many cards when it is split, so the shoe is reshuffled before this point
+     * even if the cut card hasn't been reached.
+     */
+    private static final int minCardsPerHand = 20;
+
+    /**
+     * The number of standard decks in the shoe.
+     */
+    private final int numDecks;
+
+    /**
+     * The fraction of the shoe dealt before it is reshuffled.
+     */
+    private final double penetration;
+
+    /**
+     * The strategy used to play each hand.
+     */
+    private final IPlayerStrategy playerStrategy;
+
+    /**
+     * Sizes each bet from the true count.
+     */
+    private final IBetSpreadPolicy betSpreadPolicy;
+
+    /**
+     * The bankroll at the start of each session, in betting units.
+     */
+    private final double initialBankroll;
+
+    /**
+     * The most hands played in a session.
+     */
+    private final int handsPerSession;
+
+    /**
+     * Constructs a session simulator.
+     *
+     * @param numDecks the number of standard decks in the shoe
+     * @param penetration the fraction of the shoe dealt before it is reshuffled
+     * @param playerStrategy the strategy used to play each hand
+     * @param betSpreadPolicy sizes each bet from the true count
+     * @param initialBankroll the bankroll at the start of each session, in betting units
+     * @param handsPerSession the most hands played in a session
+     */
+    public SessionSimulator(int numDecks, double penetration, IPlayerStrategy playerStrategy,
+                            IBetSpreadPolicy betSpreadPolicy, double initialBankroll, int handsPerSession) {
+        this.numDecks = numDecks;
+        this.penetration = penetration;
+        this.playerStrategy = playerStrategy;
+        this.betSpreadPolicy = betSpreadPolicy;
+        this.initialBankroll = initialBankroll;
+        this.handsPerSession = handsPerSession;
+    }
+
+    /**
+     * The outcome of one session.
+     *
+     * @param finalBankroll the bankroll when the session ended
+     * @param handsPlayed the number of hands played
+     * @param totalWagered the sum of the initial bets of every hand
+     * @param ruined whether the session ended because the bankroll was ruined
+     */
+    public record SessionResult(double finalBankroll, int handsPlayed, double totalWagered, boolean ruined) {
+    }
+
+    /**
+     * A summary of many sessions.
+     *
+     * @param numSessions the number of sessions simulated
+     * @param riskOfRuin the fraction of sessions that ended with the bankroll ruined
+     * @param meanResult the average change in bankroll per session
+     * @param stdDevResult the standard deviation of the change in bankroll per session
+     * @param evPerHand the average change in bankroll per hand played
+     * @param evPerHour the average change in bankroll per hour at the given pace of play
+     */
+    public record SessionSummary(int numSessions, double riskOfRuin, double meanResult, double stdDevResult,
+                                 double evPerHand, double evPerHour) {
+
+        @Override
+        public String toString() {
+            return "Sessions: " + numSessions
+                    + "\nRisk of Ruin: " + riskOfRuin
+                    + "\nMean Result: " + meanResult + " (std dev " + stdDevResult + ")"
+                    + "\nEV per Hand: " + evPerHand
+                    + "\nEV per Hour: " + evPerHour;
+        }
+    }
+
+    /**
+     * Simulates the input number of sessions in parallel and summarizes them.
+     * Session i is seeded from the input seed and i, so the summary doesn't
+     * depend on how the sessions are scheduled.
+     *
+     * @param numSessions the number of sessions to simulate
+     * @param handsPerHour the number of hands played per hour, for the hourly EV
+     * @param seed the seed from which each session's random number generator is derived
+     * @return a summary of the sessions
+     */
+    public SessionSummary simulate(int numSessions, double handsPerHour, long seed) {
+        List<SessionResult> results = IntStream.range(0, numSessions)
+                .parallel()
+                .mapToObj(i -> this.simulateSession(new Random(seed ^ (0x9E3779B97F4A7C15L * (i + 1)))))
+                .collect(Collectors.toList());
+
+        int numRuined = 0;
+        long totalHands = 0;
+        double sum = 0.0;
+        double sumSquares = 0.0;
+        for (SessionResult result: results) {
+            double change = result.finalBankroll() - this.initialBankroll;
+            sum += change;
+            sumSquares += change * change;
+            totalHands += result.handsPlayed();
+            if (result.ruined()) {
+                numRuined++;
+            }
+        }
+        double mean = sum / numSessions;
+        double stdDev = Math.sqrt(Math.max(0.0, sumSquares / numSessions - mean * mean));
+        double evPerHand = totalHands == 0 ? 0.0 : sum / totalHands;
+        return new SessionSummary(numSessions, (double) numRuined / numSessions, mean, stdDev,
+                evPerHand, evPerHand * handsPerHour);
+    }
+
+    /**
+     * Plays one session from a freshly shuffled shoe.
+     *
+     * @param random the source of randomness for the shuffles
+     * @return the outcome of the session
+     */
+    public SessionResult simulateSession(Random random) {
+        int cutCard = Math.max(minCardsPerHand,
+                (int) Math.round((1.0 - this.penetration) * Deck.CARDS_PER_DECK * this.numDecks));
+        Deck shoe = Deck.shuffledShoe(this.numDecks, random);
+        double bankroll = this.initialBankroll;
+        double totalWagered = 0.0;
+
+        for (int hand = 0; hand < this.handsPerSession; hand++) {
+            if (shoe.size() < cutCard) {
+                shoe = Deck.shuffledShoe(this.numDecks, random);
+            }
+
+            // Size the bet from the cards seen so far, never betting more than the bankroll.
+            double bet = Math.min(bankroll, this.betSpreadPolicy.getBet(shoe.getTrueCount()));
+            totalWagered += bet;
+
+            double earnings = Table.dealFrom(shoe).play(1, this.playerStrategy);
+            bankroll += bet * earnings;
+
+            if (bankroll <= 0) {
+                return new SessionResult(bankroll, hand + 1, totalWagered, true);
+            }
+        }
+        return new SessionResult(bankroll, this.handsPerSession, totalWagered, false);
+    }
+
+}
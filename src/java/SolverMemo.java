@@ -0,0 +1,685 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent, memory-bounded memo of solved positions for IdealStrategy:
+ * an open-addressing hash table from a position's two-long PositionKey to its
+ * expected earnings and best decision, kept off the heap in one
+ * MemorySegment allocated up front to fit a memory budget, so it never grows
+ * past that budget and the garbage collector never has to scan it, however
+ * large it is. The segment can also be mapped from a file, so that a memo
+ * larger than the machine's memory is paged in and out by the operating
+ * system.
+ *
+ * Each slot is SLOT_BYTES bytes of the segment: the two key words, the
+ * earnings as a double, the state as an int (since a segment's atomic
+ * operations work on ints and longs, not bytes), the decision's ordinal, and
+ * the cost of solving the position. After the slots, the segment holds a byte of the
+ * filter of evicted positions for each slot, so each slot costs
+ * BYTES_PER_SLOT bytes in all. Slots are claimed with
+ * a compare-and-set on the state int, so the memo never locks. The thread
+ * that claims a position's slot owns solving it, and any other thread asking
+ * for that position waits for the owner to complete the slot rather than
+ * solving it again. Since a position only ever depends on positions with
+ * more cards drawn, no two threads can end up waiting on each other.
+ *
+ * A position is stored in one of the PROBE_LIMIT slots following its hash.
+ * Once all of them are taken, a new position evicts the solved position among
+ * them which was cheapest to solve, measured in the number of positions its
+ * solver had to solve, so cheap leaves near the end of a hand are evicted
+ * before the deep subtrees near its start. If all of them are still being
+ * solved, the new position isn't stored at all, and its solver solves it
+ * without the memo.
+ */
+public class SolverMemo {
+
+    /**
+     * The decision stored for a position where the player has no decision to
+     * make, such as when only the dealer has cards left to draw.
+     */
+    public static final byte NO_DECISION = -1;
+
+    /**
+     * Returned by claim() when there's no room for the position, in which case
+     * the caller solves it without storing it.
+     */
+    public static final int UNCACHED = Integer.MIN_VALUE;
+
+    /**
+     * The number of bytes of each slot in the segment, rounded up so that its
+     * longs and double stay aligned.
+     */
+    private static final int SLOT_BYTES = 32;
+
+    /**
+     * The offsets of the fields of a slot within its SLOT_BYTES bytes.
+     */
+    private static final long CARDS_OFFSET = 0, HANDS_OFFSET = 8, EARNINGS_OFFSET = 16,
+            STATE_OFFSET = 24, DECISION_OFFSET = 28, COST_OFFSET = 29;
+
+    /**
+     * The number of bytes each slot costs in the segment, including its byte
+     * of the evicted filter.
+     */
+    public static final int BYTES_PER_SLOT = SLOT_BYTES + 1;
+
+    /**
+     * The number of slots, following its hash, in which a position may be stored.
+     */
+    public static final int PROBE_LIMIT = 16;
+
+    /**
+     * The most slots a memo can have.
+     */
+    private static final int MAX_SLOTS = 1 << 30;
+
+    /**
+     * The states of a slot: free, having its key written by the thread that
+     * claimed it, being solved by that thread, solved, or given up on by that
+     * thread, in which case the next thread to ask for it takes it over.
+     */
+    private static final byte EMPTY = 0, CLAIMING = 1, IN_PROGRESS = 2, DONE = 3, ABANDONED = 4;
+
+    /**
+     * Gives atomic access to the states of the slots, by the index of the int
+     * holding each state.
+     */
+    private static final VarHandle STATES = ValueLayout.JAVA_INT.arrayElementVarHandle();
+
+    /**
+     * Gives atomic access to the words of the evicted filter, by index.
+     */
+    private static final VarHandle FILTER_WORDS = ValueLayout.JAVA_LONG.arrayElementVarHandle();
+
+    /**
+     * The number of times a waiting thread spins before it starts yielding.
+     */
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    /**
+     * The slots, SLOT_BYTES bytes each.
+     */
+    private final MemorySegment slots;
+
+    /**
+     * A bit set with eight bits per slot, in which a bit is set for the hash
+     * of each evicted position, so that solving a position again can be told
+     * apart from solving it for the first time.
+     */
+    private final MemorySegment evictedFilter;
+
+    /**
+     * The mask which reduces a hash to a slot index.
+     */
+    private final int mask;
+
+    /**
+     * Counts the slots which have ever been claimed, none of which become free again.
+     */
+    private final LongAdder numEntries = new LongAdder();
+
+    /**
+     * Counts the claims of positions which were already solved.
+     */
+    private final LongAdder numHits = new LongAdder();
+
+    /**
+     * Counts the claims of positions which weren't solved yet.
+     */
+    private final LongAdder numMisses = new LongAdder();
+
+    /**
+     * Counts the solved positions evicted to make room for others.
+     */
+    private final LongAdder numEvictions = new LongAdder();
+
+    /**
+     * Counts the claims of positions which the evicted filter says were
+     * evicted, which overcounts slightly as the filter fills up.
+     */
+    private final LongAdder numRecomputations = new LongAdder();
+
+    /**
+     * Counts the claims of positions for which there was no room.
+     */
+    private final LongAdder numUncached = new LongAdder();
+
+    /**
+     * A snapshot of a memo's statistics.
+     *
+     * @param entries the number of slots in use
+     * @param capacity the number of slots
+     * @param bytes the number of bytes allocated for the slots
+     * @param hits the number of claims of positions which were already solved
+     * @param misses the number of claims of positions which weren't solved yet
+     * @param evictions the number of solved positions evicted to make room for others
+     * @param recomputations the estimated number of misses of positions which had been evicted
+     * @param uncached the number of positions solved without the memo for lack of room
+     */
+    public record Stats(long entries, long capacity, long bytes, long hits, long misses,
+                        long evictions, long recomputations, long uncached) {
+
+        /**
+         * Returns the fraction of claims which found their position already solved.
+         *
+         * @return the hit rate, or 0 if nothing has been claimed
+         */
+        public double hitRate() {
+            long lookups = this.hits + this.misses;
+            return (lookups == 0) ? 0.0 : (double) this.hits / lookups;
+        }
+    }
+
+    /**
+     * Visits a solved position.
+     */
+    @FunctionalInterface
+    public interface SolvedVisitor {
+
+        /**
+         * Visits a solved position.
+         *
+         * @param cards the cards word of the position's key
+         * @param hands the hands word of the position's key
+         * @param expectedEarnings the expected earnings of the position
+         * @param decision the ordinal of the best decision, or NO_DECISION
+         */
+        void visit(long cards, long hands, double expectedEarnings, byte decision);
+    }
+
+    /**
+     * Constructs an empty memo using at most the input number of bytes, off
+     * the heap.
+     *
+     * The memo has the largest power-of-two number of slots which fits the
+     * budget, up to 2^30 slots.
+     *
+     * @param maxBytes the memory budget of the memo
+     * @throws IllegalArgumentException if the budget is too small for PROBE_LIMIT slots
+     */
+    public SolverMemo(long maxBytes) {
+        this(Arena.ofAuto().allocate(numSlots(maxBytes) * BYTES_PER_SLOT, Long.BYTES));
+    }
+
+    /**
+     * Constructs an empty memo using at most the input number of bytes of the
+     * input file, which is mapped into memory. Any contents of the file are
+     * discarded, and the file is only written as slots are claimed, so a
+     * large budget costs little disk until it fills up.
+     *
+     * @param maxBytes the memory budget of the memo, and the size of the file
+     * @param file the file to map, which is created if it doesn't exist
+     * @throws IllegalArgumentException if the budget is too small for PROBE_LIMIT slots
+     * @throws IOException if the file can't be created or mapped
+     */
+    public SolverMemo(long maxBytes, Path file) throws IOException {
+        this(mapFile(file, numSlots(maxBytes) * BYTES_PER_SLOT));
+    }
+
+    /**
+     * Constructs an empty memo in the input zeroed segment, which holds
+     * SLOT_BYTES bytes for each slot, then a byte of the evicted filter for
+     * each slot.
+     *
+     * @param segment the zeroed segment, whose size is a power of two times BYTES_PER_SLOT
+     */
+    private SolverMemo(MemorySegment segment) {
+        int numSlots = (int) (segment.byteSize() / BYTES_PER_SLOT);
+        this.slots = segment.asSlice(0, (long) numSlots * SLOT_BYTES);
+        this.evictedFilter = segment.asSlice((long) numSlots * SLOT_BYTES, numSlots);
+        this.mask = numSlots - 1;
+    }
+
+    /**
+     * Returns the number of slots of a memo with the input memory budget: the
+     * largest power of two which fits the budget, up to MAX_SLOTS.
+     *
+     * @param maxBytes the memory budget of the memo
+     * @return the number of slots
+     * @throws IllegalArgumentException if the budget is too small for PROBE_LIMIT slots
+     */
+    private static long numSlots(long maxBytes) {
+        long maxSlots = Math.min(MAX_SLOTS, maxBytes / BYTES_PER_SLOT);
+        if (maxSlots < PROBE_LIMIT) {
+            throw new IllegalArgumentException("The memory budget must be at least "
+                    + (PROBE_LIMIT * BYTES_PER_SLOT) + " bytes: " + maxBytes);
+        }
+        return Long.highestOneBit(maxSlots);
+    }
+
+    /**
+     * Maps the input number of zeroed bytes of the input file into memory,
+     * truncating the file first. The mapping outlives the file's channel,
+     * and is released once the memo is no longer reachable.
+     *
+     * @param file the file to map, which is created if it doesn't exist
+     * @param numBytes the number of bytes to map
+     * @return the mapped segment
+     * @throws IOException if the file can't be created or mapped
+     */
+    private static MemorySegment mapFile(Path file, long numBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, numBytes, Arena.ofAuto());
+        }
+    }
+
+    /**
+     * Finds the slot of the input position, claiming a slot for it if it has
+     * none. If the position is being solved by another thread, this waits
+     * until it's solved.
+     *
+     * The caller owns solving a claimed slot, and must call complete() once
+     * it's solved, or abandon() if it can't be solved. A solved slot can be
+     * evicted at any time, so its earnings must be read with getEarnings(),
+     * which checks that the slot still holds the position.
+     *
+     * @param key the key of the position
+     * @return the slot index if the caller claimed the slot, -(slot index) - 1
+     *           if the position is already solved, or UNCACHED if there's no
+     *           room for the position
+     */
+    public int claim(PositionKey key) {
+        long cards = key.cards();
+        long hands = key.hands();
+        int home = this.firstSlot(cards, hands);
+        claiming:
+        while (true) {
+            int victim = -1;
+            byte victimState = EMPTY;
+            int victimCost = Integer.MAX_VALUE;
+            for (int probe = 0; probe < PROBE_LIMIT; probe++) {
+                int slot = (home + probe) & this.mask;
+                byte state = this.state(slot);
+                if (state == EMPTY) {
+                    if (this.casState(slot, EMPTY, CLAIMING)) {
+                        this.numEntries.increment();
+                        return this.claimed(slot, cards, hands);
+                    }
+                    state = this.state(slot); // another thread claimed it first
+                }
+                state = this.awaitKey(slot, state);
+                if (!this.hasKey(slot, cards, hands)) {
+                    // Keep track of the cheapest slot to evict, preferring slots given up on.
+                    int cost = (state == ABANDONED) ? -1 : (state == DONE) ? this.cost(slot) : Integer.MAX_VALUE;
+                    if (cost < victimCost) {
+                        victim = slot;
+                        victimState = state;
+                        victimCost = cost;
+                    }
+                    continue;
+                }
+                state = this.awaitSolved(slot, cards, hands);
+                if (state == DONE && this.hasKey(slot, cards, hands)) {
+                    this.numHits.increment();
+                    return -slot - 1;
+                } else if (state == ABANDONED && this.casState(slot, ABANDONED, CLAIMING)) {
+                    return this.claimed(slot, cards, hands);
+                }
+                continue claiming; // the slot was evicted or taken over while waiting
+            }
+            if (victim < 0) {
+                this.numUncached.increment();
+                return UNCACHED;
+            }
+            if (this.casState(victim, victimState, CLAIMING)) {
+                if (victimState == DONE) {
+                    this.numEvictions.increment();
+                    this.markEvicted(this.slots.get(ValueLayout.JAVA_LONG, offset(victim) + CARDS_OFFSET),
+                            this.slots.get(ValueLayout.JAVA_LONG, offset(victim) + HANDS_OFFSET));
+                }
+                return this.claimed(victim, cards, hands);
+            }
+        }
+    }
+
+    /**
+     * Returns the best decision of the input position if it's solved, without
+     * waiting or claiming anything.
+     *
+     * @param key the key of the position
+     * @return the best decision in the position, or null if the position isn't
+     *           solved or there's no decision to make
+     */
+    public Decision getDecision(PositionKey key) {
+        long cards = key.cards();
+        long hands = key.hands();
+        int home = this.firstSlot(cards, hands);
+        for (int probe = 0; probe < PROBE_LIMIT; probe++) {
+            int slot = (home + probe) & this.mask;
+            byte state = this.state(slot);
+            if (state == EMPTY) {
+                return null;
+            }
+            if (state == DONE && this.hasKey(slot, cards, hands)) {
+                byte decision = this.slots.get(ValueLayout.JAVA_BYTE, offset(slot) + DECISION_OFFSET);
+                if (!this.holds(slot, cards, hands)) {
+                    return null;
+                }
+                return (decision == NO_DECISION) ? null : Decision.values()[decision];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the expected earnings of the input position if it's solved,
+     * without waiting or claiming anything.
+     *
+     * @param key the key of the position
+     * @return the expected earnings of the position, or NaN if it isn't solved
+     */
+    public double getEarnings(PositionKey key) {
+        long cards = key.cards();
+        long hands = key.hands();
+        int home = this.firstSlot(cards, hands);
+        for (int probe = 0; probe < PROBE_LIMIT; probe++) {
+            int slot = (home + probe) & this.mask;
+            byte state = this.state(slot);
+            if (state == EMPTY) {
+                return Double.NaN;
+            }
+            if (state == DONE && this.hasKey(slot, cards, hands)) {
+                return this.getEarnings(slot, key);
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Stores the solution of a slot claimed by the caller, and releases any
+     * threads waiting for it.
+     *
+     * @param slot the index of a slot claimed by the caller
+     * @param expectedEarnings the expected earnings of the position
+     * @param decision the ordinal of the best decision, or NO_DECISION
+     * @param numSolved the number of positions solved to solve this one, including itself
+     */
+    public void complete(int slot, double expectedEarnings, byte decision, long numSolved) {
+        long offset = offset(slot);
+        this.slots.set(ValueLayout.JAVA_DOUBLE, offset + EARNINGS_OFFSET, expectedEarnings);
+        this.slots.set(ValueLayout.JAVA_BYTE, offset + DECISION_OFFSET, decision);
+        this.slots.set(ValueLayout.JAVA_BYTE, offset + COST_OFFSET, (byte) (Long.SIZE - Long.numberOfLeadingZeros(numSolved)));
+        this.setState(slot, DONE);
+    }
+
+    /**
+     * Gives up a slot claimed by the caller without solving it, such as when
+     * solving it was interrupted. The next thread to ask for the position
+     * claims it instead.
+     *
+     * @param slot the index of a slot claimed by the caller
+     */
+    public void abandon(int slot) {
+        this.setState(slot, ABANDONED);
+    }
+
+    /**
+     * Returns the expected earnings of a solved slot, provided it still holds
+     * the input position.
+     *
+     * @param slot the index of a slot returned as solved by claim()
+     * @param key the key of the position claimed
+     * @return the expected earnings of the position, or NaN if it's been evicted
+     */
+    public double getEarnings(int slot, PositionKey key) {
+        double expectedEarnings = this.slots.get(ValueLayout.JAVA_DOUBLE, offset(slot) + EARNINGS_OFFSET);
+        return this.holds(slot, key.cards(), key.hands()) ? expectedEarnings : Double.NaN;
+    }
+
+    /**
+     * Visits every position solved so far. Positions solved or evicted while
+     * the slots are scanned may or may not be visited.
+     *
+     * @param visitor visits each solved position
+     */
+    public void forEachSolved(SolvedVisitor visitor) {
+        for (int slot = 0; slot <= this.mask; slot++) {
+            if (this.state(slot) != DONE) {
+                continue;
+            }
+            long offset = offset(slot);
+            long cards = this.slots.get(ValueLayout.JAVA_LONG, offset + CARDS_OFFSET);
+            long hands = this.slots.get(ValueLayout.JAVA_LONG, offset + HANDS_OFFSET);
+            double expectedEarnings = this.slots.get(ValueLayout.JAVA_DOUBLE, offset + EARNINGS_OFFSET);
+            byte decision = this.slots.get(ValueLayout.JAVA_BYTE, offset + DECISION_OFFSET);
+            if (this.holds(slot, cards, hands)) {
+                visitor.visit(cards, hands, expectedEarnings, decision);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of slots, which is the most positions the memo can hold.
+     *
+     * @return the number of slots
+     */
+    public int capacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * Returns a snapshot of the memo's statistics, which may be slightly out
+     * of date while other threads are solving.
+     *
+     * @return the memo's statistics
+     */
+    public Stats stats() {
+        return new Stats(this.numEntries.sum(), this.capacity(), (long) this.capacity() * BYTES_PER_SLOT,
+                this.numHits.sum(), this.numMisses.sum(), this.numEvictions.sum(),
+                this.numRecomputations.sum(), this.numUncached.sum());
+    }
+
+    /**
+     * Writes the key of a slot the caller just claimed, and marks it as being solved.
+     *
+     * @param slot the index of the slot, whose state the caller set to CLAIMING
+     * @param cards the cards word of the key
+     * @param hands the hands word of the key
+     * @return the index of the slot
+     */
+    private int claimed(int slot, long cards, long hands) {
+        this.numMisses.increment();
+        if (this.wasEvicted(cards, hands)) {
+            this.numRecomputations.increment();
+        }
+        this.slots.set(ValueLayout.JAVA_LONG, offset(slot) + CARDS_OFFSET, cards);
+        this.slots.set(ValueLayout.JAVA_LONG, offset(slot) + HANDS_OFFSET, hands);
+        this.setState(slot, IN_PROGRESS);
+        return slot;
+    }
+
+    /**
+     * Returns whether the input slot is still solved and holds the input key,
+     * after the caller has read the slot's solution. If so, the solution read
+     * belongs to the key, since a slot which was evicted and then solved for
+     * the same key again holds the same solution.
+     *
+     * @param slot the index of the slot
+     * @param cards the cards word of the key
+     * @param hands the hands word of the key
+     * @return true if the slot is solved and holds the key
+     */
+    private boolean holds(int slot, long cards, long hands) {
+        VarHandle.acquireFence();
+        return this.state(slot) == DONE && this.hasKey(slot, cards, hands);
+    }
+
+    /**
+     * Returns whether the input slot's key is the input key.
+     *
+     * @param slot the index of the slot
+     * @param cards the cards word of the key
+     * @param hands the hands word of the key
+     * @return true if the slot's key is the input key
+     */
+    private boolean hasKey(int slot, long cards, long hands) {
+        long offset = offset(slot);
+        return this.slots.get(ValueLayout.JAVA_LONG, offset + CARDS_OFFSET) == cards
+                && this.slots.get(ValueLayout.JAVA_LONG, offset + HANDS_OFFSET) == hands;
+    }
+
+    /**
+     * Returns the slot at which the probe for the input key starts.
+     *
+     * @param cards the cards word of the key
+     * @param hands the hands word of the key
+     * @return the index of the first slot to probe
+     */
+    private int firstSlot(long cards, long hands) {
+        return (int) PositionKey.mix(cards ^ PositionKey.mix(hands)) & this.mask;
+    }
+
+    /**
+     * Returns the index of the input key's bit in the evicted filter, which is
+     * hashed differently from firstSlot() so that keys sharing slots don't
+     * share bits.
+     *
+     * @param cards the cards word of the key
+     * @param hands the hands word of the key
+     * @return the index of the key's bit
+     */
+    private long filterBit(long cards, long hands) {
+        return PositionKey.mix(hands ^ PositionKey.mix(cards)) & (this.evictedFilter.byteSize() * Byte.SIZE - 1);
+    }
+
+    /**
+     * Records the eviction of the input key in the evicted filter.
+     *
+     * @param cards the cards word of the key
+     * @param hands the hands word of the key
+     */
+    private void markEvicted(long cards, long hands) {
+        long bit = this.filterBit(cards, hands);
+        FILTER_WORDS.getAndBitwiseOr(this.evictedFilter, bit >>> 6, 1L << bit);
+    }
+
+    /**
+     * Returns whether the evicted filter says the input key was evicted.
+     *
+     * @param cards the cards word of the key
+     * @param hands the hands word of the key
+     * @return true if the key was probably evicted, and false if it definitely wasn't
+     */
+    private boolean wasEvicted(long cards, long hands) {
+        long bit = this.filterBit(cards, hands);
+        return ((long) FILTER_WORDS.getAcquire(this.evictedFilter, bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Returns the byte offset of the input slot in the segment.
+     *
+     * @param slot the index of the slot
+     * @return the offset of the slot
+     */
+    private static long offset(int slot) {
+        return (long) slot * SLOT_BYTES;
+    }
+
+    /**
+     * Returns the index of the int holding the input slot's state.
+     *
+     * @param slot the index of the slot
+     * @return the index of the state as an int
+     */
+    private static long stateIndex(int slot) {
+        return (offset(slot) + STATE_OFFSET) / Integer.BYTES;
+    }
+
+    /**
+     * Reads the state of the input slot, with acquire semantics.
+     *
+     * @param slot the index of the slot
+     * @return the state of the slot
+     */
+    private byte state(int slot) {
+        return (byte) (int) STATES.getAcquire(this.slots, stateIndex(slot));
+    }
+
+    /**
+     * Sets the state of the input slot, with release semantics.
+     *
+     * @param slot the index of the slot
+     * @param state the new state of the slot
+     */
+    private void setState(int slot, byte state) {
+        STATES.setRelease(this.slots, stateIndex(slot), (int) state);
+    }
+
+    /**
+     * Atomically sets the state of the input slot if it's the expected state.
+     *
+     * @param slot the index of the slot
+     * @param expected the state the slot must be in
+     * @param state the new state of the slot
+     * @return true if the state was set
+     */
+    private boolean casState(int slot, byte expected, byte state) {
+        return STATES.compareAndSet(this.slots, stateIndex(slot), (int) expected, (int) state);
+    }
+
+    /**
+     * Returns the cost of solving the input solved slot's position.
+     *
+     * @param slot the index of the slot
+     * @return the bit length of the number of positions its solver solved
+     */
+    private int cost(int slot) {
+        return this.slots.get(ValueLayout.JAVA_BYTE, offset(slot) + COST_OFFSET);
+    }
+
+    /**
+     * Waits until the key of the input slot has been written.
+     *
+     * @param slot the index of a slot which isn't empty
+     * @param state the last state read from the slot
+     * @return the state of the slot once its key is written
+     */
+    private byte awaitKey(int slot, byte state) {
+        for (int spins = 0; state == CLAIMING; spins++) {
+            this.pause(spins);
+            state = this.state(slot);
+        }
+        return state;
+    }
+
+    /**
+     * Waits until the input slot is no longer solving the input key. The slot
+     * may be evicted and claimed for another key as soon as it's solved, so
+     * the caller must check its key again.
+     *
+     * @param slot the index of a slot with the key
+     * @param cards the cards word of the key
+     * @param hands the hands word of the key
+     * @return the state of the slot once it isn't solving the key
+     */
+    private byte awaitSolved(int slot, long cards, long hands) {
+        byte state = this.state(slot);
+        for (int spins = 0; state == IN_PROGRESS && this.hasKey(slot, cards, hands); spins++) {
+            this.pause(spins);
+            state = this.state(slot);
+        }
+        return state;
+    }
+
+    /**
+     * Pauses a waiting thread, spinning at first and then yielding the processor.
+     *
+     * @param spins the number of times the thread has paused so far
+     */
+    private void pause(int spins) {
+        if (spins < SPINS_BEFORE_YIELD) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+
+}
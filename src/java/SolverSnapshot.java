@@ -0,0 +1,356 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only file of positions solved by IdealStrategy, written from its
+ * memo so that a later run can start from the positions an earlier run
+ * solved instead of solving them again.
+ *
+ * The file is an open-addressing hash table, laid out like the memo's slots,
+ * so it's looked up in place: opening it reads only the header and maps the
+ * rest, and each lookup pages in only the entries it probes. The header
+ * consists of little-endian fields: the magic number and the format version
+ * as ints, then the fingerprint of the rules the positions were solved
+ * under, the number of entries, the number of slots, and a check of the
+ * header as longs, padded to HEADER_BYTES bytes. Each slot is ENTRY_BYTES
+ * bytes: the two key words, the earnings as a double, and a word holding the
+ * decision's ordinal in its low byte and a check of the entry above it. A
+ * slot whose hands word is 0 is empty, since every position holds a hand.
+ *
+ * A file whose header doesn't check out, whose size doesn't match its
+ * header, or whose rules differ from the caller's is rejected when it's
+ * opened. An entry which doesn't check out is found when it's looked up, at
+ * which point the whole snapshot is rejected and no more positions are
+ * looked up in it.
+ */
+public class SolverSnapshot {
+
+    /**
+     * The magic number at the start of the file: "BJSN".
+     */
+    static final int MAGIC = 0x424A534E;
+
+    /**
+     * The version of the file format, which must change whenever the layout
+     * of the file or of PositionKey does.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * The number of bytes of the header.
+     */
+    private static final int HEADER_BYTES = 64;
+
+    /**
+     * The offsets of the fields of the header.
+     */
+    private static final long MAGIC_OFFSET = 0, VERSION_OFFSET = 4, RULES_OFFSET = 8, ENTRIES_OFFSET = 16,
+            SLOTS_OFFSET = 24, HEADER_CHECK_OFFSET = 32;
+
+    /**
+     * The number of bytes of each slot.
+     */
+    private static final int ENTRY_BYTES = 32;
+
+    /**
+     * The offsets of the fields of a slot within its ENTRY_BYTES bytes.
+     */
+    private static final long CARDS_OFFSET = 0, HANDS_OFFSET = 8, EARNINGS_OFFSET = 16, META_OFFSET = 24;
+
+    /**
+     * The largest fraction of the slots which hold entries, which keeps probes short.
+     */
+    private static final double MAX_LOAD = 0.75;
+
+    /**
+     * The layouts of the fields of the file, which is little-endian on every machine.
+     */
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The slots, ENTRY_BYTES bytes each, mapped from the file.
+     */
+    private final MemorySegment slots;
+
+    /**
+     * The mask which reduces a hash to a slot index.
+     */
+    private final long mask;
+
+    /**
+     * The number of entries in the file.
+     */
+    private final long numEntries;
+
+    /**
+     * Set once an entry is found not to check out, after which every lookup misses.
+     */
+    private volatile boolean corrupted;
+
+    /**
+     * Opens the input snapshot and checks its header, mapping its slots
+     * without reading them.
+     *
+     * @param path a file written by write()
+     * @param rulesFingerprint the fingerprint of the rules the caller solves positions under
+     * @throws IOException if the file can't be read, is corrupted, or was solved under other rules
+     */
+    public SolverSnapshot(Path path, long rulesFingerprint) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException(path + " is not a solver snapshot");
+            }
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize, Arena.ofAuto());
+            if (file.get(INT, MAGIC_OFFSET) != MAGIC) {
+                throw new IOException(path + " is not a solver snapshot");
+            }
+            int version = file.get(INT, VERSION_OFFSET);
+            if (version != VERSION) {
+                throw new IOException(path + " has unsupported format version " + version);
+            }
+            long rules = file.get(LONG, RULES_OFFSET);
+            long numEntries = file.get(LONG, ENTRIES_OFFSET);
+            long numSlots = file.get(LONG, SLOTS_OFFSET);
+            if (file.get(LONG, HEADER_CHECK_OFFSET) != headerCheck(version, rules, numEntries, numSlots)
+                    || Long.bitCount(numSlots) != 1 || numEntries > numSlots
+                    || fileSize != HEADER_BYTES + numSlots * ENTRY_BYTES) {
+                throw new IOException(path + " is corrupted");
+            }
+            if (rules != rulesFingerprint) {
+                throw new IOException(path + " was solved under other rules");
+            }
+            this.slots = file.asSlice(HEADER_BYTES);
+            this.mask = numSlots - 1;
+            this.numEntries = numEntries;
+        }
+    }
+
+    /**
+     * Writes the solved positions of the input memo, and the entries of the
+     * input snapshot which the memo doesn't hold, to the input file. The file
+     * is written beside its path and then moved over it, so a run which stops
+     * partway leaves any earlier snapshot whole, and a snapshot mapped from
+     * the same path can still be read while it's replaced. Positions solved
+     * while the memo is being written may be left out.
+     *
+     * @param path the file to write, which is replaced if it exists
+     * @param rulesFingerprint the fingerprint of the rules the positions were solved under
+     * @param memo the memo whose solved positions are written
+     * @param previous a snapshot of the same rules whose entries are kept, or null
+     * @return the number of entries written
+     * @throws IOException if the file can't be written
+     */
+    public static long write(Path path, long rulesFingerprint, SolverMemo memo, SolverSnapshot previous) throws IOException {
+        long[] numSolved = {0};
+        memo.forEachSolved((cards, hands, earnings, decision) -> numSolved[0]++);
+        long maxEntries = numSolved[0] + ((previous == null) ? 0 : previous.size());
+        long numSlots = Math.max(16, Long.highestOneBit((long) (maxEntries / MAX_LOAD)) << 1);
+
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        long numEntries;
+        try (Arena arena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + numSlots * ENTRY_BYTES, arena);
+            file.fill((byte) 0);
+            MemorySegment slots = file.asSlice(HEADER_BYTES);
+            long mask = numSlots - 1;
+            long[] added = {0};
+            memo.forEachSolved((cards, hands, earnings, decision) -> {
+                if (added[0] < maxEntries && put(slots, mask, cards, hands, earnings, decision)) {
+                    added[0]++;
+                }
+            });
+            if (previous != null && !previous.corrupted) {
+                for (long slot = 0; slot <= previous.mask; slot++) {
+                    long offset = slot * ENTRY_BYTES;
+                    long hands = previous.slots.get(LONG, offset + HANDS_OFFSET);
+                    if (hands != 0 && added[0] < maxEntries && previous.checks(offset)
+                            && put(slots, mask, previous.slots.get(LONG, offset + CARDS_OFFSET), hands,
+                                    previous.slots.get(DOUBLE, offset + EARNINGS_OFFSET),
+                                    (byte) previous.slots.get(LONG, offset + META_OFFSET))) {
+                        added[0]++;
+                    }
+                }
+            }
+            numEntries = added[0];
+
+            file.set(INT, MAGIC_OFFSET, MAGIC);
+            file.set(INT, VERSION_OFFSET, VERSION);
+            file.set(LONG, RULES_OFFSET, rulesFingerprint);
+            file.set(LONG, ENTRIES_OFFSET, numEntries);
+            file.set(LONG, SLOTS_OFFSET, numSlots);
+            file.set(LONG, HEADER_CHECK_OFFSET, headerCheck(VERSION, rulesFingerprint, numEntries, numSlots));
+            file.force();
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return numEntries;
+    }
+
+    /**
+     * Returns the index of the slot holding the input position, or -1 if the
+     * snapshot doesn't hold it or has been found to be corrupted.
+     *
+     * @param key the key of the position
+     * @return the index of the position's slot, or -1
+     */
+    public long find(PositionKey key) {
+        if (this.corrupted) {
+            return -1;
+        }
+        long cards = key.cards();
+        long hands = key.hands();
+        long home = firstSlot(cards, hands, this.mask);
+        for (long probe = 0; probe <= this.mask; probe++) {
+            long slot = (home + probe) & this.mask;
+            long offset = slot * ENTRY_BYTES;
+            long slotHands = this.slots.get(LONG, offset + HANDS_OFFSET);
+            if (slotHands == 0) {
+                return -1;
+            }
+            if (slotHands == hands && this.slots.get(LONG, offset + CARDS_OFFSET) == cards) {
+                if (!this.checks(offset)) {
+                    this.corrupted = true;
+                    return -1;
+                }
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the expected earnings of the position in the input slot.
+     *
+     * @param slot the index of a slot returned by find()
+     * @return the expected earnings of the position
+     */
+    public double getEarnings(long slot) {
+        return this.slots.get(DOUBLE, slot * ENTRY_BYTES + EARNINGS_OFFSET);
+    }
+
+    /**
+     * Returns the best decision in the position in the input slot.
+     *
+     * @param slot the index of a slot returned by find()
+     * @return the best decision, or null if there's no decision to make
+     */
+    public Decision getDecision(long slot) {
+        byte decision = (byte) this.slots.get(LONG, slot * ENTRY_BYTES + META_OFFSET);
+        return (decision == SolverMemo.NO_DECISION) ? null : Decision.values()[decision];
+    }
+
+    /**
+     * Returns the number of positions in the snapshot.
+     *
+     * @return the number of entries
+     */
+    public long size() {
+        return this.numEntries;
+    }
+
+    /**
+     * Returns whether an entry has been found not to check out, in which case
+     * the snapshot is no longer used.
+     *
+     * @return true iff the snapshot has been rejected as corrupted
+     */
+    public boolean isCorrupted() {
+        return this.corrupted;
+    }
+
+    /**
+     * Stores an entry in the first free slot from its hash, unless its key is
+     * already stored.
+     *
+     * @param slots the slots of the file being written
+     * @param mask the mask which reduces a hash to a slot index
+     * @param cards the cards word of the key
+     * @param hands the hands word of the key
+     * @param earnings the expected earnings of the position
+     * @param decision the ordinal of the best decision, or SolverMemo.NO_DECISION
+     * @return true if the entry was stored
+     */
+    private static boolean put(MemorySegment slots, long mask, long cards, long hands, double earnings, byte decision) {
+        for (long slot = firstSlot(cards, hands, mask); ; slot = (slot + 1) & mask) {
+            long offset = slot * ENTRY_BYTES;
+            long slotHands = slots.get(LONG, offset + HANDS_OFFSET);
+            if (slotHands == 0) {
+                slots.set(LONG, offset + CARDS_OFFSET, cards);
+                slots.set(LONG, offset + HANDS_OFFSET, hands);
+                slots.set(DOUBLE, offset + EARNINGS_OFFSET, earnings);
+                slots.set(LONG, offset + META_OFFSET, entryCheck(cards, hands, earnings, decision) << Byte.SIZE
+                        | (decision & 0xFF));
+                return true;
+            } else if (slotHands == hands && slots.get(LONG, offset + CARDS_OFFSET) == cards) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the entry at the input offset checks out.
+     *
+     * @param offset the offset of a slot which isn't empty
+     * @return true iff the entry's check matches its contents
+     */
+    private boolean checks(long offset) {
+        long meta = this.slots.get(LONG, offset + META_OFFSET);
+        long check = entryCheck(this.slots.get(LONG, offset + CARDS_OFFSET), this.slots.get(LONG, offset + HANDS_OFFSET),
+                this.slots.get(DOUBLE, offset + EARNINGS_OFFSET), (byte) meta);
+        return meta >>> Byte.SIZE == (check & (-1L >>> Byte.SIZE));
+    }
+
+    /**
+     * Returns the check of an entry, of which the low 56 bits are stored.
+     *
+     * @param cards the cards word of the key
+     * @param hands the hands word of the key
+     * @param earnings the expected earnings of the position
+     * @param decision the ordinal of the best decision, or SolverMemo.NO_DECISION
+     * @return the check of the entry
+     */
+    private static long entryCheck(long cards, long hands, double earnings, byte decision) {
+        return PositionKey.mix(PositionKey.mix(cards ^ PositionKey.mix(hands)) ^ Double.doubleToRawLongBits(earnings)
+                ^ decision);
+    }
+
+    /**
+     * Returns the check of a header.
+     *
+     * @param version the format version
+     * @param rulesFingerprint the fingerprint of the rules
+     * @param numEntries the number of entries
+     * @param numSlots the number of slots
+     * @return the check of the header
+     */
+    private static long headerCheck(int version, long rulesFingerprint, long numEntries, long numSlots) {
+        return PositionKey.mix(PositionKey.mix(PositionKey.mix(PositionKey.mix(MAGIC ^ (long) version << 32)
+                ^ rulesFingerprint) ^ numEntries) ^ numSlots);
+    }
+
+    /**
+     * Returns the slot at which the probe for the input key starts.
+     *
+     * @param cards the cards word of the key
+     * @param hands the hands word of the key
+     * @param mask the mask which reduces a hash to a slot index
+     * @return the index of the first slot to probe
+     */
+    private static long firstSlot(long cards, long hands, long mask) {
+        return PositionKey.mix(cards ^ PositionKey.mix(hands)) & mask;
+    }
+
+}
@@ -0,0 +1,586 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A file of IdealStrategy's solutions of every starting position within a
+ * range of deck compositions, written once by build() so that those
+ * positions are answered without running the solver.
+ *
+ * A starting position is the dealer's upcard, player 1's two-card hand, and
+ * the cards removed from the full shoe besides those three, such as the
+ * other players' cards. Cards are grouped into NUM_CLASSES value classes, so
+ * ten-valued cards are one class, and the database covers every removal of
+ * at most maxRemoved cards. Each position has an entry at an index computed
+ * directly from it: the rank of the removed cards among all removals of at
+ * most maxRemoved cards, then the upcard's class, then the hand's index
+ * among the NUM_HANDS two-card hands. A pair of ten-valued cards of one rank
+ * is solved as a pair of TENs, with the removed ten-valued cards spread
+ * evenly over the ranks. The solver counts the cards of a ten-valued pair's
+ * rank apart from the other ten-valued cards, since only they can re-split
+ * it, so such a pair is only answered from the database when the position
+ * looked up is keyed the same as the position it was solved as.
+ *
+ * The database covers a shoe of up to PositionKey.MAX_DECKS decks, the most
+ * the solver can key.
+ *
+ * The header consists of little-endian fields: the magic number and the
+ * format version as ints, the fingerprint of the rules the positions were
+ * solved under as a long, the number of decks and maxRemoved as ints, and
+ * the number of entries and a check of the header as longs, padded to
+ * HEADER_BYTES bytes. Each entry is ENTRY_BYTES bytes: the expected earnings
+ * of each decision as doubles, indexed by the decision's ordinal with NaN
+ * for decisions which aren't possible, then the best decision's ordinal, or
+ * SolverMemo.NO_DECISION for positions which can't be dealt or where
+ * player 1 has no decision to make.
+ */
+public class StrategyDatabase {
+
+    /**
+     * The magic number at the start of the file: "BJSD".
+     */
+    static final int MAGIC = 0x424A5344;
+
+    /**
+     * The version of the file format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The number of value classes of cards: ACE through NINE, then ten-valued cards.
+     */
+    static final int NUM_CLASSES = 10;
+
+    /**
+     * The number of two-card hands: each unordered pair of value classes,
+     * then two ten-valued cards of different ranks, which can't be split.
+     */
+    static final int NUM_HANDS = NUM_CLASSES * (NUM_CLASSES + 1) / 2 + 1;
+
+    /**
+     * The most cards a database can cover the removal of.
+     */
+    public static final int MAX_REMOVED = 20;
+
+    /**
+     * The value class of ten-valued cards.
+     */
+    private static final int TEN_CLASS = NUM_CLASSES - 1;
+
+    /**
+     * The index of the hand of two ten-valued cards of different ranks.
+     */
+    private static final int UNLIKE_TENS = NUM_HANDS - 1;
+
+    /**
+     * The number of bytes of the header.
+     */
+    private static final int HEADER_BYTES = 64;
+
+    /**
+     * The offsets of the fields of the header.
+     */
+    private static final long MAGIC_OFFSET = 0, VERSION_OFFSET = 4, RULES_OFFSET = 8, DECKS_OFFSET = 16,
+            MAX_REMOVED_OFFSET = 20, ENTRIES_OFFSET = 24, HEADER_CHECK_OFFSET = 32;
+
+    /**
+     * The number of decisions, each of which has its earnings in an entry.
+     */
+    private static final int NUM_DECISIONS = Decision.values().length;
+
+    /**
+     * The offset of the best decision's ordinal within an entry.
+     */
+    private static final long DECISION_OFFSET = (long) NUM_DECISIONS * Double.BYTES;
+
+    /**
+     * The number of bytes of each entry, rounded up so that its doubles stay aligned.
+     */
+    private static final int ENTRY_BYTES = (int) ((DECISION_OFFSET + 1 + 7) & ~7);
+
+    /**
+     * The layouts of the fields of the file, which is little-endian on every machine.
+     */
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The binomial coefficients n choose k, indexed by n and then k, as far
+     * as ranking the removals of up to MAX_REMOVED cards needs.
+     */
+    private static final long[][] binomials = binomials(MAX_REMOVED + NUM_CLASSES + 1);
+
+    /**
+     * The value classes of the lower and higher card of each two-card hand, indexed by the hand's index.
+     */
+    private static final int[] handLowClasses = new int[NUM_HANDS], handHighClasses = new int[NUM_HANDS];
+
+    static {
+        for (int high = 0; high < NUM_CLASSES; high++) {
+            for (int low = 0; low <= high; low++) {
+                handLowClasses[handIndex(low, high)] = low;
+                handHighClasses[handIndex(low, high)] = high;
+            }
+        }
+        handLowClasses[UNLIKE_TENS] = TEN_CLASS;
+        handHighClasses[UNLIKE_TENS] = TEN_CLASS;
+    }
+
+    /**
+     * The entries, ENTRY_BYTES bytes each, mapped from the file.
+     */
+    private final MemorySegment entries;
+
+    /**
+     * The number of standard decks in the shoe the positions were dealt from.
+     */
+    private final int numDecks;
+
+    /**
+     * The most cards removed from the shoe in a position the database covers.
+     */
+    private final int maxRemoved;
+
+    /**
+     * Opens the input database and checks its header, mapping its entries
+     * without reading them.
+     *
+     * @param path a file written by build()
+     * @param solver the strategy which answers the positions the database doesn't cover
+     * @throws IOException if the file can't be read, is corrupted, or was
+     *           solved under other rules than the solver's
+     */
+    public StrategyDatabase(Path path, IdealStrategy solver) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException(path + " is not a strategy database");
+            }
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize, Arena.ofAuto());
+            if (file.get(INT, MAGIC_OFFSET) != MAGIC) {
+                throw new IOException(path + " is not a strategy database");
+            }
+            int version = file.get(INT, VERSION_OFFSET);
+            if (version != VERSION) {
+                throw new IOException(path + " has unsupported format version " + version);
+            }
+            long rules = file.get(LONG, RULES_OFFSET);
+            int numDecks = file.get(INT, DECKS_OFFSET);
+            int maxRemoved = file.get(INT, MAX_REMOVED_OFFSET);
+            long numEntries = file.get(LONG, ENTRIES_OFFSET);
+            if (file.get(LONG, HEADER_CHECK_OFFSET) != headerCheck(version, rules, numDecks, maxRemoved, numEntries)
+                    || maxRemoved < 0 || maxRemoved > MAX_REMOVED || numEntries != numEntries(maxRemoved)
+                    || fileSize != HEADER_BYTES + numEntries * ENTRY_BYTES) {
+                throw new IOException(path + " is corrupted");
+            }
+            if (rules != solver.rulesFingerprint()) {
+                throw new IOException(path + " was solved under other rules");
+            }
+            this.entries = file.asSlice(HEADER_BYTES);
+            this.numDecks = numDecks;
+            this.maxRemoved = maxRemoved;
+        }
+    }
+
+    /**
+     * Solves every starting position dealt from a shoe of the input number of
+     * decks with at most maxRemoved other cards removed, and writes them to
+     * the input file. The file is written beside its path and then moved over
+     * it, so a build which stops partway leaves any earlier database whole.
+     *
+     * @param path the file to write, which is replaced if it exists
+     * @param solver the strategy which solves the positions
+     * @param numDecks the number of standard decks in the shoe
+     * @param maxRemoved the most cards removed from the shoe in a position covered
+     * @return the number of positions solved
+     * @throws IllegalArgumentException if the number of decks or maxRemoved is out of range
+     * @throws IOException if the file can't be written
+     */
+    public static long build(Path path, IdealStrategy solver, int numDecks, int maxRemoved) throws IOException {
+        if (numDecks < 1 || numDecks > PositionKey.MAX_DECKS) {
+            throw new IllegalArgumentException("StrategyDatabase.build() FAILED: " + numDecks
+                    + " decks, but PositionKey can only key the positions of 1 to " + PositionKey.MAX_DECKS);
+        }
+        if (maxRemoved < 0 || maxRemoved > MAX_REMOVED) {
+            throw new IllegalArgumentException("StrategyDatabase.build() FAILED: " + maxRemoved + " cards removed");
+        }
+        long numEntries = numEntries(maxRemoved);
+        List<int[]> removals = new ArrayList<>();
+        addRemovals(new int[NUM_CLASSES], 0, maxRemoved, removals);
+
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        long numSolved = 0;
+        try (Arena arena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + numEntries * ENTRY_BYTES, arena);
+            MemorySegment entries = file.asSlice(HEADER_BYTES);
+            for (int[] removed: removals) {
+                long compositionIndex = compositionIndex(removed, maxRemoved);
+                for (int upcard = 0; upcard < NUM_CLASSES; upcard++) {
+                    for (int hand = 0; hand < NUM_HANDS; hand++) {
+                        long offset = entryIndex(compositionIndex, upcard, hand) * ENTRY_BYTES;
+                        Table table = startingTable(numDecks, removed, upcard, hand);
+                        double[] decisionEarnings = new double[NUM_DECISIONS];
+                        Arrays.fill(decisionEarnings, Double.NaN);
+                        Decision bestDecision = null;
+                        if (table != null) {
+                            decisionEarnings = solver.getDecisionEarnings(table);
+                            bestDecision = bestDecision(decisionEarnings);
+                            numSolved++;
+                        }
+                        for (int decision = 0; decision < NUM_DECISIONS; decision++) {
+                            entries.set(DOUBLE, offset + (long) decision * Double.BYTES, decisionEarnings[decision]);
+                        }
+                        entries.set(ValueLayout.JAVA_BYTE, offset + DECISION_OFFSET,
+                                (bestDecision == null) ? SolverMemo.NO_DECISION : (byte) bestDecision.ordinal());
+                    }
+                }
+            }
+
+            long rules = solver.rulesFingerprint();
+            file.set(INT, MAGIC_OFFSET, MAGIC);
+            file.set(INT, VERSION_OFFSET, VERSION);
+            file.set(LONG, RULES_OFFSET, rules);
+            file.set(INT, DECKS_OFFSET, numDecks);
+            file.set(INT, MAX_REMOVED_OFFSET, maxRemoved);
+            file.set(LONG, ENTRIES_OFFSET, numEntries);
+            file.set(LONG, HEADER_CHECK_OFFSET, headerCheck(VERSION, rules, numDecks, maxRemoved, numEntries));
+            file.force();
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return numSolved;
+    }
+
+    /**
+     * Returns the index of the entry of the input position, or -1 if the
+     * database doesn't cover it: player 1 must be playing the two cards they
+     * were dealt against the dealer's upcard, from a shoe of the database's
+     * number of decks with at most maxRemoved other cards removed. A pair of
+     * ten-valued cards is only covered if it's keyed the same as the pair of
+     * TENs it was solved as, with as many cards of its rank left.
+     *
+     * @param table holds the deck, player hands, and dealer hand
+     * @param handInPlay the hand being played
+     * @return the index of the position's entry, or -1
+     */
+    public long indexOf(Table table, PlayerHand handInPlay) {
+        List<PlayerHand> hands = table.getHandList(1);
+        DealerHand dealerHand = table.getDealerHand();
+        Deck deck = table.getDeck();
+        if (hands.size() != 1 || hands.get(0) != handInPlay || handInPlay.handSize() != 2
+                || dealerHand.handSize() != 1 || deck.getNumDecks() != this.numDecks) {
+            return -1;
+        }
+
+        int[] removed = fullShoe(this.numDecks);
+        int[] rankCounts = deck.rankCounts();
+        for (int rank = 0; rank < rankCounts.length; rank++) {
+            removed[valueClass(rank)] -= rankCounts[rank];
+        }
+        Card first = handInPlay.getCards().get(0);
+        Card second = handInPlay.getCards().get(1);
+        int upcard = valueClass(dealerHand.getCards().get(0).getRank().ordinal());
+        removed[valueClass(first.getRank().ordinal())]--;
+        removed[valueClass(second.getRank().ordinal())]--;
+        removed[upcard]--;
+        int numRemoved = 0;
+        for (int count: removed) {
+            if (count < 0) {
+                return -1;
+            }
+            numRemoved += count;
+        }
+        if (numRemoved > this.maxRemoved) {
+            return -1;
+        }
+        int hand = handIndex(first, second);
+        if (first.getRank() == second.getRank() && valueClass(first.getRank().ordinal()) == TEN_CLASS) {
+            Table solvedTable = startingTable(this.numDecks, removed, upcard, hand);
+            if (solvedTable == null || !PositionKey.of(solvedTable).equals(PositionKey.of(table))) {
+                return -1;
+            }
+        }
+        return entryIndex(compositionIndex(removed, this.maxRemoved), upcard, hand);
+    }
+
+    /**
+     * Returns the best decision in the position of the input entry.
+     *
+     * @param entry the index of an entry returned by indexOf()
+     * @return the best decision, or null if the position can't be dealt or
+     *           player 1 has no decision to make
+     */
+    public Decision getDecision(long entry) {
+        byte decision = this.entries.get(ValueLayout.JAVA_BYTE, entry * ENTRY_BYTES + DECISION_OFFSET);
+        return (decision == SolverMemo.NO_DECISION) ? null : Decision.values()[decision];
+    }
+
+    /**
+     * Returns the expected earnings of the input decision in the position of
+     * the input entry.
+     *
+     * @param entry the index of an entry returned by indexOf()
+     * @param decision the decision
+     * @return the expected earnings of the decision, or NaN if it isn't possible
+     */
+    public double getEarnings(long entry, Decision decision) {
+        return this.entries.get(DOUBLE, entry * ENTRY_BYTES + (long) decision.ordinal() * Double.BYTES);
+    }
+
+    /**
+     * Returns the number of standard decks in the shoe the positions were dealt from.
+     *
+     * @return the number of decks
+     */
+    public int getNumDecks() {
+        return this.numDecks;
+    }
+
+    /**
+     * Returns the most cards removed from the shoe in a position the database covers.
+     *
+     * @return the most cards removed
+     */
+    public int getMaxRemoved() {
+        return this.maxRemoved;
+    }
+
+    /**
+     * Returns the number of entries of a database covering the removal of up
+     * to the input number of cards.
+     *
+     * @param maxRemoved the most cards removed
+     * @return the number of entries
+     */
+    private static long numEntries(int maxRemoved) {
+        return binomials[maxRemoved + NUM_CLASSES][NUM_CLASSES] * NUM_CLASSES * NUM_HANDS;
+    }
+
+    /**
+     * Returns the index of the entry of a position.
+     *
+     * @param compositionIndex the rank of the removed cards, from compositionIndex()
+     * @param upcard the value class of the dealer's upcard
+     * @param hand the index of player 1's hand
+     * @return the index of the entry
+     */
+    private static long entryIndex(long compositionIndex, int upcard, int hand) {
+        return (compositionIndex * NUM_CLASSES + upcard) * NUM_HANDS + hand;
+    }
+
+    /**
+     * Returns the rank of the input removal of cards in the lexicographic
+     * order of all removals of at most maxRemoved cards. The removals before
+     * it are counted class by class: those which remove fewer cards of the
+     * class and the same number of each class before it.
+     *
+     * @param removed the number of cards of each value class removed, which sum to at most maxRemoved
+     * @param maxRemoved the most cards removed
+     * @return the rank of the removal
+     */
+    static long compositionIndex(int[] removed, int maxRemoved) {
+        long index = 0;
+        int budget = maxRemoved;
+        for (int valueClass = 0; valueClass < NUM_CLASSES; valueClass++) {
+            // There are C(b + m, m) ways to remove at most b cards of the m classes after this one.
+            int m = NUM_CLASSES - 1 - valueClass;
+            index += binomials[budget + m + 1][m + 1] - binomials[budget - removed[valueClass] + m + 1][m + 1];
+            budget -= removed[valueClass];
+        }
+        return index;
+    }
+
+    /**
+     * Adds every removal of at most the input number of cards from the value
+     * classes from the input one on, in lexicographic order.
+     *
+     * @param removed the number of cards of each value class removed so far, which is restored before returning
+     * @param valueClass the first value class to remove cards from
+     * @param budget the most cards left to remove
+     * @param removals the list to add copies of the removals to
+     */
+    private static void addRemovals(int[] removed, int valueClass, int budget, List<int[]> removals) {
+        if (valueClass == NUM_CLASSES) {
+            removals.add(removed.clone());
+            return;
+        }
+        for (int count = 0; count <= budget; count++) {
+            removed[valueClass] = count;
+            addRemovals(removed, valueClass + 1, budget - count, removals);
+        }
+        removed[valueClass] = 0;
+    }
+
+    /**
+     * Returns the table of a starting position, or null if it can't be dealt
+     * from the shoe or player 1's hand is already final.
+     *
+     * @param numDecks the number of standard decks in the shoe
+     * @param removed the number of cards of each value class removed from the shoe
+     * @param upcard the value class of the dealer's upcard
+     * @param hand the index of player 1's hand
+     * @return the table, or null
+     */
+    private static Table startingTable(int numDecks, int[] removed, int upcard, int hand) {
+        int[] rankCounts = new int[Rank.values().length];
+        Arrays.fill(rankCounts, numDecks * Deck.CARDS_PER_DECK / rankCounts.length);
+        Rank lowRank = classRank(handLowClasses[hand]);
+        Rank highRank = (hand == UNLIKE_TENS) ? Rank.JACK : classRank(handHighClasses[hand]);
+        Rank upcardRank = classRank(upcard);
+        rankCounts[lowRank.ordinal()]--;
+        rankCounts[highRank.ordinal()]--;
+        rankCounts[upcardRank.ordinal()]--;
+        for (int valueClass = 0; valueClass < TEN_CLASS; valueClass++) {
+            rankCounts[valueClass] -= removed[valueClass];
+        }
+        for (int i = 0; i < removed[TEN_CLASS]; i++) {
+            // Remove ten-valued cards from the rank with the most left, sparing TEN on ties.
+            int most = Rank.KING.ordinal();
+            for (int rank = Rank.KING.ordinal() - 1; rank >= Rank.TEN.ordinal(); rank--) {
+                if (rankCounts[rank] > rankCounts[most]) {
+                    most = rank;
+                }
+            }
+            rankCounts[most]--;
+        }
+        if (Arrays.stream(rankCounts).anyMatch(count -> count < 0)) {
+            return null;
+        }
+
+        Suit[] suits = Suit.values();
+        List<List<PlayerHand>> playerHands = new ArrayList<>();
+        playerHands.add(new ArrayList<>(List.of(new PlayerHand(new Card(suits[0], lowRank), new Card(suits[1], highRank)))));
+        for (int i = 0; i < 3; i++) {
+            playerHands.add(new ArrayList<>());
+        }
+        Table table = new Table(Deck.withComposition(numDecks, rankCounts),
+                new DealerHand(new Card(suits[2], upcardRank)), playerHands);
+        return (IdealStrategy.firstHandInPlay(table) == 1) ? null : table;
+    }
+
+    /**
+     * Returns the best decision given the expected earnings of each, with
+     * ties going to the decision first in IdealStrategy.decisionOrder, as the
+     * solver's do.
+     *
+     * @param decisionEarnings the expected earnings of each decision, indexed by ordinal, NaN if not possible
+     * @return the best decision
+     */
+    private static Decision bestDecision(double[] decisionEarnings) {
+        Decision bestDecision = null;
+        for (Decision decision: IdealStrategy.decisionOrder) {
+            double earnings = decisionEarnings[decision.ordinal()];
+            if (!Double.isNaN(earnings) && (bestDecision == null || earnings > decisionEarnings[bestDecision.ordinal()])) {
+                bestDecision = decision;
+            }
+        }
+        return bestDecision;
+    }
+
+    /**
+     * Returns the number of cards of each value class in a full shoe.
+     *
+     * @param numDecks the number of standard decks in the shoe
+     * @return the number of cards of each value class
+     */
+    private static int[] fullShoe(int numDecks) {
+        int[] classCounts = new int[NUM_CLASSES];
+        for (int rank = 0; rank < Rank.values().length; rank++) {
+            classCounts[valueClass(rank)] += numDecks * Deck.CARDS_PER_DECK / Rank.values().length;
+        }
+        return classCounts;
+    }
+
+    /**
+     * Returns the index of the two-card hand of the input cards.
+     *
+     * @param first one card of the hand
+     * @param second the other card of the hand
+     * @return the index of the hand
+     */
+    private static int handIndex(Card first, Card second) {
+        int firstClass = valueClass(first.getRank().ordinal());
+        int secondClass = valueClass(second.getRank().ordinal());
+        if (firstClass == TEN_CLASS && secondClass == TEN_CLASS && first.getRank() != second.getRank()) {
+            return UNLIKE_TENS;
+        }
+        return handIndex(Math.min(firstClass, secondClass), Math.max(firstClass, secondClass));
+    }
+
+    /**
+     * Returns the index of the two-card hand of the input value classes.
+     *
+     * @param low the lower value class
+     * @param high the higher value class
+     * @return the index of the hand
+     */
+    private static int handIndex(int low, int high) {
+        return high * (high + 1) / 2 + low;
+    }
+
+    /**
+     * Returns the value class of the input rank.
+     *
+     * @param rank the ordinal of the rank
+     * @return the value class of the rank
+     */
+    private static int valueClass(int rank) {
+        return Math.min(rank, TEN_CLASS);
+    }
+
+    /**
+     * Returns the rank dealt for a card of the input value class.
+     *
+     * @param valueClass the value class
+     * @return the rank of the class, or TEN for ten-valued cards
+     */
+    private static Rank classRank(int valueClass) {
+        return Rank.values()[valueClass];
+    }
+
+    /**
+     * Returns the binomial coefficients n choose k for n and k below the input bound.
+     *
+     * @param size the bound on n
+     * @return the binomial coefficients, indexed by n and then k
+     */
+    private static long[][] binomials(int size) {
+        long[][] binomials = new long[size][size];
+        for (int n = 0; n < size; n++) {
+            binomials[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+            }
+        }
+        return binomials;
+    }
+
+    /**
+     * Returns the check of a header.
+     *
+     * @param version the format version
+     * @param rulesFingerprint the fingerprint of the rules
+     * @param numDecks the number of decks
+     * @param maxRemoved the most cards removed
+     * @param numEntries the number of entries
+     * @return the check of the header
+     */
+    private static long headerCheck(int version, long rulesFingerprint, int numDecks, int maxRemoved, long numEntries) {
+        return PositionKey.mix(PositionKey.mix(PositionKey.mix(MAGIC ^ (long) version << 32) ^ rulesFingerprint)
+                ^ ((long) numDecks << 32 | maxRemoved) ^ PositionKey.mix(numEntries));
+    }
+
+}
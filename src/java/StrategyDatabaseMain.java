@@ -0,0 +1,33 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Builds the database of IdealStrategy's solutions of every single-deck
+ * starting position with up to a few other cards removed, which
+ * DatabaseStrategy looks positions up in. Splits are solved independently,
+ * since solving every pair's splits exactly would take hours, so a
+ * DatabaseStrategy over the database must fall back to an IdealStrategy of
+ * the same split mode.
+ */
+public class StrategyDatabaseMain {
+
+    private static final int numDecks = 1;
+
+    private static final int maxRemoved = 1;
+
+    private static final SplitMode splitMode = SplitMode.INDEPENDENT;
+
+    private static final long memoBytes = 256L << 20;
+
+    private static final int parallelDepth = 2;
+
+    private static final Path outputFile = Path.of("strategy_database_1deck.bin");
+
+    public static void main(String[] args) throws IOException {
+        IdealStrategy solver = new IdealStrategy(memoBytes, parallelDepth, splitMode);
+        long start = System.nanoTime();
+        long numSolved = StrategyDatabase.build(outputFile, solver, numDecks, maxRemoved);
+        System.out.println("Solved " + numSolved + " starting positions in "
+                + (System.nanoTime() - start) / 1_000_000_000 + " s, written to " + outputFile);
+    }
+}
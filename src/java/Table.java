@@ -28,6 +28,17 @@ public class Table {
      */
     private final List<List<PlayerHand>> playerHands;
 
+    /**
+     * The decisions made on the table so far, packed three bits per decision
+     * in the order they were made (see getDecisionCode()).
+     */
+    private long decisionCode;
+
+    /**
+     * The number of decisions made on the table so far.
+     */
+    private int numDecisions;
+
     /**
      * Initializes the list of player hands to an empty list.
      */
@@ -44,8 +55,22 @@ public class Table {
      * @return
      */
     public static Table randomTable() {
+        return dealFrom(Deck.shuffledDeck());
+    }
+
+    /**
+     * Creates a table which deals from the input deck, then deals one
+     * card to the dealer and two cards to player 1. (The other players
+     * aren't dealt any cards in this method.) The deck is used as is
+     * rather than copied, so every card dealt or drawn while playing the
+     * table is taken out of it; this lets a shoe persist across hands.
+     *
+     * @param deck the deck (or shoe) to deal from
+     * @return a table dealt from the deck
+     */
+    public static Table dealFrom(Deck deck) {
         Table table = new Table();
-        table.deck = Deck.shuffledDeck();
+        table.deck = deck;
 
         // Give the dealer one card.
         table.dealerHand = new DealerHand(table.deck.draw());
@@ -72,6 +97,8 @@ public class Table {
         Table copyTable = new Table();
         copyTable.deck = this.deck.copy();
         copyTable.dealerHand = this.dealerHand.copy();
+        copyTable.decisionCode = this.decisionCode;
+        copyTable.numDecisions = this.numDecisions;
         for (List<PlayerHand> handList: this.playerHands) {
             List<PlayerHand> copyHandList = new ArrayList<>(1);
             for (PlayerHand hand: handList) {
@@ -91,6 +118,34 @@ public class Table {
      *                          of csv
      */
     public Table(String csvLine, int numOtherPlayers) {
+        this(csvLine, numOtherPlayers, Deck.shuffledDeck());
+    }
+
+    /**
+     * Constructs each hand from a line of csv, shuffling the rest of
+     * the deck with the input random number generator.
+     *
+     * @param csvLine a line of csv
+     * @param numOtherPlayers the number of other players (excluding the dealer
+     *                          and player 1) with which to interpret the line
+     *                          of csv
+     * @param random the source of randomness for shuffling the deck
+     */
+    public Table(String csvLine, int numOtherPlayers, Random random) {
+        this(csvLine, numOtherPlayers, Deck.shuffledDeck(random));
+    }
+
+    /**
+     * Constructs each hand from a line of csv, and removes the cards
+     * on the table from the input shuffled deck of 52 cards.
+     *
+     * @param csvLine a line of csv
+     * @param numOtherPlayers the number of other players (excluding the dealer
+     *                          and player 1) with which to interpret the line
+     *                          of csv
+     * @param shuffledDeck a shuffled deck of 52 cards
+     */
+    private Table(String csvLine, int numOtherPlayers, Deck shuffledDeck) {
 
         int handStartIdx = 1;
         int handEndIdx = findCommaAfter(1, csvLine);
@@ -123,8 +178,8 @@ public class Table {
         // Swap the order so that player 1 is at index 0, player 2 is at index 1,...
         Collections.reverse(this.playerHands);
 
-        // Create a shuffled deck of 52 cards.
-        this.deck = Deck.shuffledDeck();
+        // Start from a shuffled deck of 52 cards.
+        this.deck = shuffledDeck;
         // Remove the cards on the table from the deck.
         this.deck.removeAll(this.countCardsOnTable());
     }
@@ -144,6 +199,18 @@ public class Table {
         return this.deck;
     }
 
+    /**
+     * Returns the sequence of decisions made on this table so far, packed
+     * into a long. The i-th decision (starting from 0) occupies bits 3i to
+     * 3i + 2 and is stored as its ordinal plus one, so unused slots are 0.
+     * Only the first 21 decisions fit; if more were made, the top bit is set.
+     *
+     * @return the packed sequence of decisions made on this table
+     */
+    public long getDecisionCode() {
+        return this.decisionCode;
+    }
+
     /**
      * Return the input player's list of split hands.
      *
@@ -190,41 +257,74 @@ public class Table {
     }
 
     /**
-     * Returns a map from each rank appearing in the deck to its
-     * probability of being drawn from the deck.
+     * Returns a map from each value class appearing in the deck to its
+     * probability of being drawn from the deck. The value classes are ACE to
+     * NINE and the ten-valued cards, whose ranks only differ in whether they
+     * make a pair, and each class is keyed by one of its ranks left in the deck.
      *
-     * @return a map from each rank appearing in the deck to its
-     *           probability of being drawn
+     * @return a map from a rank of each value class appearing in the deck to
+     *           the class's probability of being drawn
      */
     public Map<Rank, Double> deckProbabilities() {
-        int total = 52;
-        Map<Rank, Double> frequencyMap = new HashMap<>();
-        frequencyMap.put(Rank.ACE, 4.0);
-        frequencyMap.put(Rank.TWO, 4.0);
-        frequencyMap.put(Rank.THREE, 4.0);
-        frequencyMap.put(Rank.FOUR, 4.0);
-        frequencyMap.put(Rank.FIVE, 4.0);
-        frequencyMap.put(Rank.SIX, 4.0);
-        frequencyMap.put(Rank.SEVEN, 4.0);
-        frequencyMap.put(Rank.EIGHT, 4.0);
-        frequencyMap.put(Rank.NINE, 4.0);
-        frequencyMap.put(Rank.TEN, 4.0);
-        frequencyMap.put(Rank.JACK, 4.0);
-        frequencyMap.put(Rank.QUEEN, 4.0);
-        frequencyMap.put(Rank.KING, 4.0);
-        for (Card cardOnTable: this.countCardsOnTable()) {
-            frequencyMap.put(cardOnTable.getRank(), frequencyMap.get(cardOnTable.getRank()) - 1);
-            total--;
+        return this.deckProbabilities(null);
+    }
+
+    /**
+     * Returns a map from each value class appearing in the deck to its
+     * probability of being drawn from the deck, where cards of the input
+     * ten-valued rank are kept apart from the other ten-valued cards, since a
+     * split hand of that rank only makes a pair again with that rank. Each
+     * class is keyed by one of its ranks left in the deck.
+     *
+     * @param pairRank a ten-valued rank which is its own value class, or null
+     * @return a map from a rank of each value class appearing in the deck to
+     *           the class's probability of being drawn
+     */
+    public Map<Rank, Double> deckProbabilities(Rank pairRank) {
+        // Count the deck itself, which is also missing any cards drawn but not yet on the table.
+        int[] rankCounts = this.deck.rankCounts();
+        int total = Arrays.stream(rankCounts).sum();
+
+        // Count each value class under the first of its ranks left in the deck.
+        Map<Rank, Integer> classCounts = new EnumMap<>(Rank.class);
+        Rank tenValuedRank = null;
+        for (Rank rank: Rank.values()) {
+            int count = rankCounts[rank.ordinal()];
+            if (count == 0) {
+                continue;
+            }
+            if (Card.hardValues.get(rank) == 10 && rank != pairRank) {
+                if (tenValuedRank == null) {
+                    tenValuedRank = rank;
+                }
+                classCounts.merge(tenValuedRank, count, Integer::sum);
+            } else {
+                classCounts.put(rank, count);
+            }
         }
-        for (Map.Entry<Rank, Double> entry : frequencyMap.entrySet()) {
-            entry.setValue(entry.getValue() / total);
+
+        Map<Rank, Double> probabilityMap = new EnumMap<>(Rank.class);
+        for (Map.Entry<Rank, Integer> entry: classCounts.entrySet()) {
+            probabilityMap.put(entry.getKey(), (double) entry.getValue() / total);
         }
-        for (Map.Entry<Rank, Double> entry: (new HashMap<>(frequencyMap)).entrySet()) {
-            if (entry.getValue() == 0.0) {
-                frequencyMap.remove(entry.getKey());
+        return probabilityMap;
+    }
+
+    /**
+     * Returns the rank of a pair of ten-valued cards among the input player's
+     * hands in play, which is the only ten-valued rank a split hand can still
+     * pair with. The other ten-valued ranks are interchangeable.
+     *
+     * @param playerNumber the number of the player
+     * @return the rank of a ten-valued pair in play, or null if there isn't one
+     */
+    public Rank tenValuedPairRank(int playerNumber) {
+        for (PlayerHand playerHand: this.getHandList(playerNumber)) {
+            if (!playerHand.isFinal() && playerHand.isPair() && playerHand.getCards().get(0).hardValue() == 10) {
+                return playerHand.getCards().get(0).getRank();
             }
         }
-        return frequencyMap;
+        return null;
     }
 
     /**
@@ -253,6 +353,35 @@ public class Table {
         return earnings;
     }
 
+    /**
+     * Continues the game from the middle of the input player's turn: makes the
+     * input decision with the input hand, then plays the rest of that hand and
+     * every other hand of the player's that isn't final yet using the input
+     * strategy. After that, the dealer's hand is played, and the player's total
+     * earnings are computed.
+     *
+     * @param playerNumber the number of the player to play
+     * @param handInPlay the player's hand to make the decision with
+     * @param decision the decision to make with the hand in play
+     * @param playerStrategy the strategy to be used for every later decision
+     * @return the total earnings of the player after playing the dealer
+     */
+    public double playFrom(int playerNumber, PlayerHand handInPlay, Decision decision, IPlayerStrategy playerStrategy) {
+        if (!this.makeDecision(playerNumber, playerStrategy, handInPlay, decision) && !handInPlay.isFinal()) {
+            this.playPlayerHand(playerNumber, playerStrategy, handInPlay);
+        }
+
+        // Play the player's hands which are still waiting for their turn, such as earlier split hands.
+        for (PlayerHand playerHand: new ArrayList<>(this.getHandList(playerNumber))) {
+            if (!playerHand.isFinal()) {
+                this.playPlayerHand(playerNumber, playerStrategy, playerHand);
+            }
+        }
+
+        this.playDealerHand();
+        return this.calculateEarnings(playerNumber);
+    }
+
     public double calculateEarnings(int playerNumber) {
 
         // Sum the player's earnings from each of their split hands against the dealer.
@@ -306,31 +435,65 @@ public class Table {
         debugln("Playing hand: " + playerHand);
         do {
             Decision decision = playerStrategy.getDecision(this, playerHand);
-            if (decision == Decision.SPLIT) {
-                List<PlayerHand> splitHands = this.split(playerNumber, playerHand, this.deck.draw(), this.deck.draw());
-
-                debugln("Decided to SPLIT. Updated table:\n" + this);
-
-                // Recursively play both of the split hands using the same strategy.
-                this.playPlayerHand(playerNumber, playerStrategy, splitHands.get(0));
-                this.playPlayerHand(playerNumber, playerStrategy, splitHands.get(1));
+            if (this.makeDecision(playerNumber, playerStrategy, playerHand, decision)) {
                 return; // done playing both split hands
-            } else if (decision == Decision.HIT) {
-                this.hit(playerHand, this.deck.draw());
-                debugln("Decided to HIT. Updated table:\n" + this);
-            } else if (decision == Decision.DOUBLE) {
-                this.doubleMove(playerHand, this.deck.draw());
-                debugln("Decided to DOUBLE. Updated table:\n" + this);
-            } else if (decision == Decision.SURRENDER) {
-                this.surrender(playerHand);
-                debugln("Decided to SURRENDER.");
-            } else {
-                this.stay(playerHand);
-                debugln("Decided to STAY.");
             }
         } while (!playerHand.isFinal());
     }
 
+    /**
+     * Makes the input decision with the input player hand. If the decision is to
+     * split, both of the split hands are then played completely.
+     *
+     * @param playerNumber the player that owns the input hand
+     * @param playerStrategy the strategy to be used when playing any split hands
+     * @param playerHand the hand to make the decision with
+     * @param decision the decision to make (null is treated as STAY)
+     * @return true iff the hand was split
+     */
+    private boolean makeDecision(int playerNumber, IPlayerStrategy playerStrategy, PlayerHand playerHand, Decision decision) {
+        this.recordDecision(decision);
+        if (decision == Decision.SPLIT) {
+            List<PlayerHand> splitHands = this.split(playerNumber, playerHand, this.deck.draw(), this.deck.draw());
+
+            debugln("Decided to SPLIT. Updated table:\n" + this);
+
+            // Recursively play both of the split hands using the same strategy.
+            this.playPlayerHand(playerNumber, playerStrategy, splitHands.get(0));
+            this.playPlayerHand(playerNumber, playerStrategy, splitHands.get(1));
+            return true;
+        } else if (decision == Decision.HIT) {
+            this.hit(playerHand, this.deck.draw());
+            debugln("Decided to HIT. Updated table:\n" + this);
+        } else if (decision == Decision.DOUBLE) {
+            this.doubleMove(playerHand, this.deck.draw());
+            debugln("Decided to DOUBLE. Updated table:\n" + this);
+        } else if (decision == Decision.SURRENDER) {
+            this.surrender(playerHand);
+            debugln("Decided to SURRENDER.");
+        } else {
+            this.stay(playerHand);
+            debugln("Decided to STAY.");
+        }
+        return false;
+    }
+
+    /**
+     * Appends the input decision to the packed sequence of decisions made
+     * on this table.
+     *
+     * @param decision the decision that was made
+     */
+    private void recordDecision(Decision decision) {
+        if (this.numDecisions < 21) {
+            long slot = decision == null ? Decision.STAY.ordinal() + 1 : decision.ordinal() + 1;
+            this.decisionCode |= slot << (3 * this.numDecisions);
+            this.numDecisions++;
+        } else {
+            this.decisionCode |= Long.MIN_VALUE;
+        }
+    }
+
     /**
      * Plays the dealer's hand.
      */
@@ -34,6 +34,11 @@ public class WikiStrategy implements IPlayerStrategy {
      */
     public static final Map<Rank, Map<Integer, String>> hardMap;
 
+    /**
+     * The three tables compiled into dense arrays, which is what decisions are looked up in.
+     */
+    private static final DecisionChart chart;
+
     /**
      * The singleton instance of this class, since only one instance
      * is ever needed.
@@ -65,6 +70,7 @@ public class WikiStrategy implements IPlayerStrategy {
             pairMap = makePairMap();
             softMap = makeSoftMap();
             hardMap = makeHardMap();
+            chart = new DecisionChart(pairMap, softMap, hardMap);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -80,28 +86,20 @@ public class WikiStrategy implements IPlayerStrategy {
      */
     @Override
     public Decision getDecision(Table table, PlayerHand handInPlay) {
-        Card dealerCard = table.getDealerHand().getCards().get(0);
-        Rank dealerRank = dealerCard.getRank();
-
-        String decision;
-
-        if (handInPlay.isPair()) {     //if hand is pair use pair sheet
-            decision = pairMap.get(dealerRank).get(handInPlay.getCards().get(0).getRank());
-        } else if (handInPlay.isSoft()) {      //if hand is soft (contains ace) use soft sheet
-            decision = softMap.get(dealerRank).get(handInPlay.getSoft() - 11);
-        } else {        //otherwise use hard sheet
-            decision = hardMap.get(dealerRank).get(handInPlay.getHard());
-        }
-
-        // Testing for alternate outputs dependent on hand size
-        if (decision.contains("/")) {
-            String option1 = decision.substring(0, decision.indexOf('/'));
-            String option2 = decision.substring(decision.indexOf('/') + 1);
-            decision = (handInPlay.handSize() == 2) ? option1 : option2;
-        }
+        Rank dealerRank = table.getDealerHand().getCards().get(0).getRank();
+        return chart.getDecision(dealerRank, handInPlay);
+    }
 
-        // Convert the string to an enum.
-        return Enum.valueOf(Decision.class, decision);
+    /**
+     * Fills in the decision for every query in the input batch
+     * based on the Wikipedia blackjack tables.
+     *
+     * @param batch the queries, each holding a table and the hand being played on it
+     * @param decisions the array to fill, which must hold at least batch.size() decisions
+     */
+    @Override
+    public void getDecisions(DecisionBatch batch, Decision[] decisions) {
+        chart.getDecisions(batch, decisions);
     }
 
     /**
@@ -227,6 +225,21 @@ public class WikiStrategy implements IPlayerStrategy {
         return hardDecisionMap;
     }
 
+    /**
+     * Returns a copy of the input table of decisions, such as one of the
+     * Wikipedia tables, which can be changed without changing the input table.
+     *
+     * @param table a table of decisions, by upcard and then by hand
+     * @return a copy of the table
+     */
+    static <K> Map<Rank, Map<K, String>> copyTable(Map<Rank, Map<K, String>> table) {
+        Map<Rank, Map<K, String>> copy = new HashMap<>();
+        for (Map.Entry<Rank, Map<K, String>> column: table.entrySet()) {
+            copy.put(column.getKey(), new HashMap<>(column.getValue()));
+        }
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "Wiki";